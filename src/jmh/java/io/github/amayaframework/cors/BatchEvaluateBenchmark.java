@@ -0,0 +1,80 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decisions per second of {@link CorsBatch} over a batch of logged requests mixing exact,
+ * regex-matched and rejected origins with simple and preflight requests, from 1 thread up to all cores.
+ * <p>
+ * Each operation is a single decision.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(BatchEvaluateBenchmark.COUNT)
+public class BatchEvaluateBenchmark {
+    static final int COUNT = 1 << 20;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private ForkJoinPool pool;
+    private CorsBatch batch;
+    private String[] origins;
+    private String[] methods;
+    private String[] requestedMethods;
+    private String[] requestedHeaders;
+    private int[] codes;
+
+    @Setup
+    public void setup() {
+        var builder = new CorsConfigBuilder();
+        for (var i = 0; i < 1000; ++i) {
+            builder.allowedOrigins().allow(ExactOriginBenchmark.origin(i));
+        }
+        builder.allowedOrigins().addRegex("https://([a-z0-9-]+\\.)?partner\\.example\\.org");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT);
+        builder.allowedHeaders().allow("Content-Type", "X-Request-Id", "Authorization");
+        pool = new ForkJoinPool(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+        batch = new CorsBatch(new CorsEngine(builder.build()), pool, CorsBatch.DEFAULT_CHUNK);
+        origins = new String[COUNT];
+        methods = new String[COUNT];
+        requestedMethods = new String[COUNT];
+        requestedHeaders = new String[COUNT];
+        codes = new int[COUNT];
+        var random = new Random(42);
+        var partners = new String[]{"https://a.partner.example.org", "https://b.partner.example.org"};
+        for (var i = 0; i < COUNT; ++i) {
+            var kind = random.nextInt(10);
+            origins[i] = kind < 7
+                    ? ExactOriginBenchmark.origin(random.nextInt(1200))
+                    : kind < 9 ? partners[random.nextInt(2)] : null;
+            if (random.nextBoolean()) {
+                methods[i] = "OPTIONS";
+                requestedMethods[i] = random.nextInt(8) == 0 ? "DELETE" : "PUT";
+                requestedHeaders[i] = random.nextBoolean() ? "Content-Type, x-request-id" : null;
+            } else {
+                methods[i] = "GET";
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public int[] evaluate() {
+        batch.evaluate(origins, methods, requestedMethods, requestedHeaders, codes, COUNT);
+        return codes;
+    }
+}
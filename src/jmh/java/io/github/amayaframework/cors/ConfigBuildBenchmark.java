@@ -0,0 +1,83 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the startup cost of filling a {@link CorsConfigBuilder} with a large number of
+ * origins and origin regexes and building a {@link CorsConfig} from it.
+ * <p>
+ * Each invocation is a single cold build, as it happens once at application startup.
+ * Allocation per build is reported by the GC profiler, and the peak heap by
+ * {@link PeakHeapProfiler}:
+ * <pre>
+ * ./gradlew jmh -Pjmh.includes=ConfigBuildBenchmark -Pjmh.args="-prof io.github.amayaframework.cors.PeakHeapProfiler"
+ * </pre>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigBuildBenchmark {
+
+    @Param({"1000", "100000", "500000"})
+    public int origins;
+
+    @Param({"10", "1000"})
+    public int regexes;
+
+    // Mixed case origins take the copying normalization path, lowercase ones are used as is
+    @Param({"false", "true"})
+    public boolean mixedCase;
+
+    private List<String> originList;
+    private List<String> regexList;
+
+    @Setup
+    public void setup() {
+        originList = new ArrayList<>(origins);
+        for (var i = 0; i < origins; ++i) {
+            var origin = "https://app-" + i + ".example.com";
+            originList.add(mixedCase && (i & 1) == 0 ? origin.toUpperCase() : origin);
+        }
+        regexList = new ArrayList<>(regexes);
+        for (var i = 0; i < regexes; ++i) {
+            regexList.add(RegexOriginBenchmark.regex(i));
+        }
+    }
+
+    List<String> originList() {
+        return originList;
+    }
+
+    List<String> regexList() {
+        return regexList;
+    }
+
+    @Benchmark
+    public CorsConfig build() {
+        var builder = new CorsConfigBuilder();
+        var allowed = builder.allowedOrigins();
+        allowed.allow(originList);
+        for (var regex : regexList) {
+            allowed.addRegex(regex);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public CorsConfig ingest() {
+        var builder = new CorsConfigBuilder();
+        var allowed = builder.allowedOrigins();
+        allowed.ingest(originList);
+        for (var regex : regexList) {
+            allowed.addRegex(regex);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,314 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Multi-threaded synthetic load harness showing how {@link CorsTask} throughput scales with threads.
+ * <p>
+ * Every thread drives its own request stream built from fixed-seed generators: origins are drawn
+ * from a Zipf distribution, a configurable share of requests are preflights, and preflights carry
+ * requested header lists of several shapes. For each thread count the harness reports throughput,
+ * latency percentiles (merged and the worst thread) and allocated bytes per operation.
+ * <p>
+ * Arguments are {@code key=value} pairs, for example:
+ * <pre>
+ * threads=1,2,4,8,16,32,64 mode=run origins=10000 allowed=0.9 regexes=10 zipf=1.1
+ * preflight=0.2 shapes=0,3,10 credentials=false warmup=2 duration=5 seed=42 verbose=false
+ * </pre>
+ */
+public final class CorsLoadHarness {
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("threads", "1,2,4,8,16,32,64"),
+            Map.entry("mode", "run"),
+            Map.entry("origins", "10000"),
+            Map.entry("allowed", "0.9"),
+            Map.entry("regexes", "10"),
+            Map.entry("zipf", "1.1"),
+            Map.entry("preflight", "0.2"),
+            Map.entry("shapes", "0,3,10"),
+            Map.entry("credentials", "false"),
+            Map.entry("warmup", "2"),
+            Map.entry("duration", "5"),
+            Map.entry("seed", "42"),
+            Map.entry("verbose", "false")
+    );
+
+    private final Map<String, String> options;
+    private final String[] origins;
+    private final String[] shapes;
+    private final ZipfGenerator zipf;
+    private final CorsTask task;
+    private final boolean async;
+    private final double preflight;
+
+    private CorsLoadHarness(Map<String, String> options) {
+        this.options = options;
+        var count = integer("origins");
+        var seed = Long.parseLong(options.get("seed"));
+        var random = new SplittableRandom(seed);
+        // Universe of origins, some of which are not allowed
+        this.origins = new String[count];
+        var builder = new CorsConfigBuilder();
+        var allowed = Double.parseDouble(options.get("allowed"));
+        var regexes = integer("regexes");
+        for (var i = 0; i < count; ++i) {
+            var origin = "https://app-" + i + ".example.com";
+            origins[i] = origin;
+            if (random.nextDouble() < allowed) {
+                builder.allowedOrigins().allow(origin);
+            }
+        }
+        for (var i = 0; i < regexes; ++i) {
+            builder.allowedOrigins().addRegex("https://([a-z0-9-]+\\.)?partner-" + i + "\\.example\\.org");
+        }
+        // Headers
+        var shapes = options.get("shapes").split(",");
+        var max = 0;
+        this.shapes = new String[shapes.length];
+        for (var i = 0; i < shapes.length; ++i) {
+            var size = Integer.parseInt(shapes[i].strip());
+            max = Math.max(max, size);
+            this.shapes[i] = PreflightBenchmark.requestedHeaders(size);
+        }
+        for (var i = 0; i < max; ++i) {
+            builder.allowedHeaders().allow(PreflightBenchmark.header(i));
+        }
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT);
+        builder.allowCredentials(Boolean.parseBoolean(options.get("credentials")));
+        this.task = new CorsTask(builder.build());
+        this.zipf = new ZipfGenerator(count, Double.parseDouble(options.get("zipf")));
+        this.async = "async".equals(options.get("mode"));
+        this.preflight = Double.parseDouble(options.get("preflight"));
+    }
+
+    private int integer(String key) {
+        return Integer.parseInt(options.get(key));
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        var ret = new HashMap<>(DEFAULTS);
+        for (var arg : args) {
+            var index = arg.indexOf('=');
+            if (index < 0 || !DEFAULTS.containsKey(arg.substring(0, index))) {
+                throw new IllegalArgumentException("Unknown argument: " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+            ret.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        return ret;
+    }
+
+    private static long allocatedBytes(long threadId) {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(threadId);
+        }
+        return -1;
+    }
+
+    private Worker[] start(int threads, int round) {
+        var workers = new Worker[threads];
+        var seed = Long.parseLong(options.get("seed"));
+        for (var i = 0; i < threads; ++i) {
+            workers[i] = new Worker(new SplittableRandom(seed * 31 + round * 1009L + i));
+        }
+        return workers;
+    }
+
+    private Result[] measure(int threads, int round) throws InterruptedException {
+        var workers = start(threads, round);
+        var ready = new CountDownLatch(threads);
+        var go = new CountDownLatch(1);
+        var warm = new AtomicBoolean();
+        var stop = new AtomicBoolean();
+        var started = new ArrayList<Thread>(threads);
+        for (var worker : workers) {
+            var thread = new Thread(() -> worker.loop(ready, go, warm, stop), "cors-load-" + started.size());
+            thread.setDaemon(true);
+            thread.start();
+            started.add(thread);
+        }
+        ready.await();
+        go.countDown();
+        Thread.sleep(integer("warmup") * 1000L);
+        warm.set(true);
+        Thread.sleep(integer("duration") * 1000L);
+        stop.set(true);
+        for (var thread : started) {
+            thread.join();
+        }
+        // Check for failed workers, whose results are missing
+        IllegalStateException failure = null;
+        for (var worker : workers) {
+            if (worker.error == null) {
+                continue;
+            }
+            if (failure == null) {
+                failure = new IllegalStateException("Load worker failed", worker.error);
+            } else {
+                failure.addSuppressed(worker.error);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        var ret = new Result[threads];
+        for (var i = 0; i < threads; ++i) {
+            ret[i] = workers[i].result;
+        }
+        return ret;
+    }
+
+    private void report(int threads, Result[] results) {
+        var ops = 0L;
+        var nanos = 0L;
+        var bytes = 0L;
+        var merged = new long[LatencyHistogram.LENGTH];
+        var worst = 0L;
+        for (var result : results) {
+            ops += result.ops;
+            nanos = Math.max(nanos, result.nanos);
+            bytes += result.bytes;
+            result.histogram.addTo(merged);
+            worst = Math.max(worst, new LatencySnapshot(result.buckets()).getValueAtPercentile(99));
+        }
+        var snapshot = new LatencySnapshot(merged);
+        System.out.printf(
+                "%7d %14.0f %9d %9d %9d %12d %12.1f%n",
+                threads,
+                ops * 1e9 / nanos,
+                snapshot.getValueAtPercentile(50),
+                snapshot.getValueAtPercentile(99),
+                snapshot.getValueAtPercentile(99.9),
+                worst,
+                bytes < 0 ? Double.NaN : (double) bytes / ops
+        );
+        if (Boolean.parseBoolean(options.get("verbose"))) {
+            for (var i = 0; i < results.length; ++i) {
+                var thread = new LatencySnapshot(results[i].buckets());
+                System.out.printf(
+                        "        thread %-3d %12d ops   p50=%d p99=%d p999=%d ns%n",
+                        i,
+                        results[i].ops,
+                        thread.getValueAtPercentile(50),
+                        thread.getValueAtPercentile(99),
+                        thread.getValueAtPercentile(99.9)
+                );
+            }
+        }
+    }
+
+    private void run() throws InterruptedException {
+        var counts = new ArrayList<Integer>();
+        for (var count : options.get("threads").split(",")) {
+            counts.add(Integer.parseInt(count.strip()));
+        }
+        System.out.println("# " + new TreeMap<>(options));
+        System.out.println("# cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.printf(
+                "%7s %14s %9s %9s %9s %12s %12s%n",
+                "threads", "ops/s", "p50(ns)", "p99(ns)", "p999(ns)", "worstP99(ns)", "alloc(B/op)"
+        );
+        var round = 0;
+        for (var threads : counts) {
+            report(threads, measure(threads, round++));
+        }
+    }
+
+    /**
+     * Runs the harness.
+     *
+     * @param args {@code key=value} arguments
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void main(String[] args) throws InterruptedException {
+        new CorsLoadHarness(parse(args)).run();
+    }
+
+    private static final class Result {
+        final LatencyHistogram histogram;
+        final long ops;
+        final long nanos;
+        final long bytes;
+
+        Result(LatencyHistogram histogram, long ops, long nanos, long bytes) {
+            this.histogram = histogram;
+            this.ops = ops;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+
+        long[] buckets() {
+            var ret = new long[LatencyHistogram.LENGTH];
+            histogram.addTo(ret);
+            return ret;
+        }
+    }
+
+    private final class Worker {
+        private final SplittableRandom random;
+        private final FakeHttp http;
+        private Result result;
+        private Throwable error;
+
+        Worker(SplittableRandom random) {
+            this.random = random;
+            this.http = new FakeHttp();
+        }
+
+        private void next() {
+            var origin = origins[zipf.next(random)];
+            if (random.nextDouble() < preflight) {
+                var headers = shapes[random.nextInt(shapes.length)];
+                http.prepare(HttpMethod.OPTIONS, origin, "PUT", headers);
+            } else {
+                http.prepare(HttpMethod.GET, origin, null, null);
+            }
+        }
+
+        private void execute() throws Throwable {
+            if (async) {
+                task.runAsync(http.context(), Next.INSTANCE);
+            } else {
+                task.run(http.context(), Next.INSTANCE);
+            }
+        }
+
+        void loop(CountDownLatch ready, CountDownLatch go, AtomicBoolean warm, AtomicBoolean stop) {
+            try {
+                ready.countDown();
+                go.await();
+                while (!warm.get()) {
+                    next();
+                    execute();
+                }
+                var histogram = new LatencyHistogram();
+                var id = Thread.currentThread().getId();
+                var bytes = allocatedBytes(id);
+                var ops = 0L;
+                var begin = System.nanoTime();
+                while (!stop.get()) {
+                    next();
+                    var start = System.nanoTime();
+                    execute();
+                    histogram.record(System.nanoTime() - start);
+                    ++ops;
+                }
+                var nanos = System.nanoTime() - begin;
+                // The histogram is created before the measurement and not counted
+                bytes = bytes < 0 ? -1 : allocatedBytes(id) - bytes;
+                result = new Result(histogram, ops, nanos, bytes);
+            } catch (Throwable e) {
+                error = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,483 @@
+package io.github.amayaframework.cors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Replays an access log through two policy versions, reporting the replay throughput and every
+ * request tuple whose decision differs between them, aggregated by origin.
+ * <p>
+ * The log has one request per line, with tab-separated {@code Origin}, method,
+ * {@code Access-Control-Request-Method} and {@code Access-Control-Request-Headers} fields;
+ * missing trailing fields, empty fields and {@code -} stand for absent headers, and lines
+ * starting with {@code #} are skipped. Policies are {@link CorsSnapshot} files.
+ * <p>
+ * The log is split into one newline-aligned segment per thread, and each thread maps its segment
+ * window by window and slices lines and fields directly from the mapped bytes. Field values are
+ * resolved to strings through a per-thread table keyed by their bytes, so recurring values are
+ * decoded once and replaying a line allocates nothing. Tuples are evaluated with
+ * {@link CorsEngine#decide(CharSequence, CharSequence, CharSequence, CharSequence)}.
+ * <p>
+ * Arguments are {@code key=value} pairs, for example:
+ * <pre>
+ * log=access.log base=current.snapshot candidate=next.snapshot threads=8 window=256 origins=100
+ * </pre>
+ * where {@code window} is the size of a mapped window in MiB and {@code origins} limits the number
+ * of reported origins, {@code 0} reporting all of them.
+ */
+public final class CorsReplayTool {
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+            Map.entry("log", ""),
+            Map.entry("base", ""),
+            Map.entry("candidate", ""),
+            Map.entry("threads", Integer.toString(Runtime.getRuntime().availableProcessors())),
+            Map.entry("window", "256"),
+            Map.entry("origins", "0")
+    );
+    private static final int FIELDS = 4;
+
+    private final CorsEngine base;
+    private final CorsEngine candidate;
+    private final long window;
+
+    /*
+     * Creates a replay of the given policy versions, mapping the log by windows of the given size in bytes.
+     */
+    CorsReplayTool(CorsEngine base, CorsEngine candidate, long window) {
+        this.base = Objects.requireNonNull(base);
+        this.candidate = Objects.requireNonNull(candidate);
+        this.window = window;
+    }
+
+    private static Path path(Map<String, String> options, String key) {
+        var value = options.get(key);
+        if (value.isEmpty()) {
+            throw new IllegalArgumentException("Missing argument: " + key);
+        }
+        return Path.of(value);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        var ret = new HashMap<>(DEFAULTS);
+        for (var arg : args) {
+            var index = arg.indexOf('=');
+            if (index < 0 || !DEFAULTS.containsKey(arg.substring(0, index))) {
+                throw new IllegalArgumentException("Unknown argument: " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+            ret.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        return ret;
+    }
+
+    /**
+     * Splits the file into segments starting right after a newline, so every line belongs to one segment.
+     */
+    private static long[] segments(FileChannel channel, int count) throws IOException {
+        var size = channel.size();
+        var ret = new long[count + 1];
+        var buffer = ByteBuffer.allocate(4096);
+        for (var i = 1; i < count; ++i) {
+            var position = Math.max(ret[i - 1], size * i / count);
+            while (position < size && (position == 0 || !endsLine(channel, buffer, position))) {
+                ++position;
+            }
+            ret[i] = position;
+        }
+        ret[count] = size;
+        return ret;
+    }
+
+    private static boolean endsLine(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear().limit(1);
+        channel.read(buffer, position - 1);
+        return buffer.get(0) == '\n';
+    }
+
+    static String describe(int code) {
+        if (code == CorsEngine.NONE) {
+            return "NONE";
+        }
+        var ret = CorsEngine.isPreflight(code) ? "PREFLIGHT " : "";
+        var rejection = CorsEngine.rejection(code);
+        return ret + (rejection == null ? "ALLOWED" : "REJECTED_" + rejection);
+    }
+
+    /*
+     * Replays the log with the given number of threads, rethrowing the first failure of a worker.
+     */
+    Result replay(Path log, int threads) throws IOException, InterruptedException {
+        try (var channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            var begin = System.nanoTime();
+            var bounds = segments(channel, threads);
+            var workers = new Worker[threads];
+            var started = new Thread[threads];
+            for (var i = 0; i < threads; ++i) {
+                var worker = new Worker(channel, bounds[i], bounds[i + 1]);
+                workers[i] = worker;
+                started[i] = new Thread(worker, "cors-replay-" + i);
+                started[i].start();
+            }
+            for (var thread : started) {
+                thread.join();
+            }
+            var ret = new Result(channel.size(), System.nanoTime() - begin);
+            for (var worker : workers) {
+                var error = worker.error;
+                if (error instanceof IOException) {
+                    throw (IOException) error;
+                }
+                if (error != null) {
+                    throw (RuntimeException) error;
+                }
+                ret.lines += worker.lines;
+                ret.allowedBase += worker.allowedBase;
+                ret.allowedCandidate += worker.allowedCandidate;
+                worker.drifts.forEach(
+                        (drift, count) -> ret.drifts.computeIfAbsent(drift, key -> new long[1])[0] += count[0]
+                );
+            }
+            return ret;
+        }
+    }
+
+    private static void report(Result result, int limit) {
+        var lines = result.lines;
+        var bytes = result.bytes;
+        var merged = result.drifts;
+        var seconds = result.nanos / 1e9;
+        System.out.printf(
+                "lines: %d, time: %.3f s, throughput: %.0f lines/s, %.1f MiB/s%n",
+                lines, seconds, lines / seconds, bytes / seconds / (1 << 20)
+        );
+        System.out.printf("allowed: %d base, %d candidate%n", result.allowedBase, result.allowedCandidate);
+        // Group drifted tuples by origin, most drifted origins and tuples first
+        var byOrigin = new HashMap<String, List<Map.Entry<Drift, long[]>>>();
+        var totals = new HashMap<String, Long>();
+        var drifted = 0L;
+        for (var entry : merged.entrySet()) {
+            var origin = entry.getKey().origin;
+            byOrigin.computeIfAbsent(origin, key -> new ArrayList<>()).add(entry);
+            totals.merge(origin, entry.getValue()[0], Long::sum);
+            drifted += entry.getValue()[0];
+        }
+        System.out.printf(
+                "drifted: %d requests, %d tuples, %d origins%n", drifted, merged.size(), byOrigin.size()
+        );
+        var origins = new ArrayList<>(byOrigin.keySet());
+        origins.sort(Comparator.comparing((String origin) -> totals.get(origin)).reversed()
+                .thenComparing(Comparator.naturalOrder()));
+        if (limit > 0 && origins.size() > limit) {
+            origins.subList(limit, origins.size()).clear();
+        }
+        for (var origin : origins) {
+            System.out.printf("%n%s  drifted=%d%n", origin, totals.get(origin));
+            var entries = byOrigin.get(origin);
+            entries.sort(Comparator.comparingLong((Map.Entry<Drift, long[]> entry) -> entry.getValue()[0]).reversed());
+            for (var entry : entries) {
+                var drift = entry.getKey();
+                System.out.printf(
+                        "    %10d  %-8s %-8s %-40s %s -> %s%n",
+                        entry.getValue()[0],
+                        Objects.toString(drift.method, "-"),
+                        Objects.toString(drift.requestedMethod, "-"),
+                        Objects.toString(drift.requestedHeaders, "-"),
+                        describe(drift.base),
+                        describe(drift.candidate)
+                );
+            }
+        }
+    }
+
+    /**
+     * Runs the replay.
+     *
+     * @param args {@code key=value} arguments
+     * @throws IOException          if the log or a policy cannot be read
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var options = parse(args);
+        var base = new CorsEngine(CorsSnapshot.read(path(options, "base")));
+        var candidate = new CorsEngine(CorsSnapshot.read(path(options, "candidate")));
+        var window = Math.min(Integer.MAX_VALUE, Long.parseLong(options.get("window")) << 20);
+        var threads = Integer.parseInt(options.get("threads"));
+        System.out.println("# " + new TreeMap<>(options));
+        System.out.println("# cores: " + Runtime.getRuntime().availableProcessors());
+        var result = new CorsReplayTool(base, candidate, window).replay(path(options, "log"), threads);
+        report(result, Integer.parseInt(options.get("origins")));
+    }
+
+    /*
+     * Totals of a replay and its drifted tuples with their counts.
+     */
+    static final class Result {
+        final long bytes;
+        final long nanos;
+        final HashMap<Drift, long[]> drifts;
+        long lines;
+        long allowedBase;
+        long allowedCandidate;
+
+        Result(long bytes, long nanos) {
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.drifts = new HashMap<>();
+        }
+    }
+
+    /*
+     * A drifted tuple with both decisions. The worker probe is mutated and only copied
+     * when the tuple drifts for the first time.
+     */
+    static final class Drift {
+        String origin;
+        String method;
+        String requestedMethod;
+        String requestedHeaders;
+        int base;
+        int candidate;
+        int hash;
+
+        Drift set(String origin,
+                  String method,
+                  String requestedMethod,
+                  String requestedHeaders,
+                  int base,
+                  int candidate) {
+            this.origin = origin;
+            this.method = method;
+            this.requestedMethod = requestedMethod;
+            this.requestedHeaders = requestedHeaders;
+            this.base = base;
+            this.candidate = candidate;
+            this.hash = Objects.hash(origin, method, requestedMethod, requestedHeaders) * 31 * 31 + base * 31 + candidate;
+            return this;
+        }
+
+        Drift copy() {
+            return new Drift().set(origin, method, requestedMethod, requestedHeaders, base, candidate);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Drift)) {
+                return false;
+            }
+            var drift = (Drift) object;
+            return hash == drift.hash
+                    && base == drift.base
+                    && candidate == drift.candidate
+                    && Objects.equals(origin, drift.origin)
+                    && Objects.equals(method, drift.method)
+                    && Objects.equals(requestedMethod, drift.requestedMethod)
+                    && Objects.equals(requestedHeaders, drift.requestedHeaders);
+        }
+    }
+
+    /*
+     * Open-addressing table from field bytes to their decoded strings. ASCII fields, the common case,
+     * are compared with their strings char by char; others are compared by their UTF-8 encoding.
+     * The table is dropped once half full, bounding its memory on high-cardinality logs.
+     */
+    private static final class Interner {
+        private static final int CAPACITY = 1 << 20;
+
+        private final String[] keys = new String[CAPACITY];
+        private final int[] hashes = new int[CAPACITY];
+        private byte[] scratch = new byte[256];
+        private int size;
+
+        private static boolean same(String key, ByteBuffer buffer, int from, int to, boolean ascii) {
+            var length = to - from;
+            if (ascii) {
+                if (key.length() != length) {
+                    return false;
+                }
+                for (var i = 0; i < length; ++i) {
+                    if (key.charAt(i) != buffer.get(from + i)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            var bytes = key.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length != length) {
+                return false;
+            }
+            for (var i = 0; i < length; ++i) {
+                if (bytes[i] != buffer.get(from + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String get(ByteBuffer buffer, int from, int to) {
+            var hash = 0;
+            var ascii = true;
+            for (var i = from; i < to; ++i) {
+                var b = buffer.get(i);
+                ascii &= b >= 0;
+                hash = 31 * hash + b;
+            }
+            var mask = CAPACITY - 1;
+            var slot = (hash ^ (hash >>> 16)) & mask;
+            String key;
+            while ((key = keys[slot]) != null) {
+                if (hashes[slot] == hash && same(key, buffer, from, to, ascii)) {
+                    return key;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size >= CAPACITY / 2) {
+                Arrays.fill(keys, null);
+                size = 0;
+                slot = (hash ^ (hash >>> 16)) & mask;
+            }
+            var length = to - from;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            for (var i = 0; i < length; ++i) {
+                scratch[i] = buffer.get(from + i);
+            }
+            key = new String(scratch, 0, length, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            keys[slot] = key;
+            hashes[slot] = hash;
+            ++size;
+            return key;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        private final FileChannel channel;
+        private final long from;
+        private final long to;
+        private final Interner interner;
+        private final HashMap<Drift, long[]> drifts;
+        private final Drift probe;
+        private final int[] bounds;
+        private long lines;
+        private long allowedBase;
+        private long allowedCandidate;
+        private Exception error;
+
+        Worker(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.from = from;
+            this.to = to;
+            this.interner = new Interner();
+            this.drifts = new HashMap<>();
+            this.probe = new Drift();
+            this.bounds = new int[FIELDS * 2];
+        }
+
+        @Override
+        public void run() {
+            try {
+                var position = from;
+                while (position < to) {
+                    var size = Math.min(window, to - position);
+                    var buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                    var end = (int) size;
+                    if (position + size < to) {
+                        // Stop the window at its last complete line
+                        while (end > 0 && buffer.get(end - 1) != '\n') {
+                            --end;
+                        }
+                        if (end == 0) {
+                            throw new IOException("Line longer than the window at offset " + position);
+                        }
+                    }
+                    replay(buffer, end);
+                    position += end;
+                }
+            } catch (IOException | RuntimeException e) {
+                // Rethrown by the replay once all workers have finished
+                error = e;
+            }
+        }
+
+        private String field(MappedByteBuffer buffer, int index) {
+            var start = bounds[index * 2];
+            var end = bounds[index * 2 + 1];
+            if (start < 0 || start == end || (end - start == 1 && buffer.get(start) == '-')) {
+                return null;
+            }
+            return interner.get(buffer, start, end);
+        }
+
+        private void replay(MappedByteBuffer buffer, int limit) {
+            var start = 0;
+            while (start < limit) {
+                var end = start;
+                while (end < limit && buffer.get(end) != '\n') {
+                    ++end;
+                }
+                var next = end + 1;
+                if (end > start && buffer.get(end - 1) == '\r') {
+                    --end;
+                }
+                if (end > start && buffer.get(start) != '#') {
+                    replay(buffer, start, end);
+                }
+                start = next;
+            }
+        }
+
+        private void replay(MappedByteBuffer buffer, int start, int end) {
+            Arrays.fill(bounds, -1);
+            var field = 0;
+            var begin = start;
+            for (var i = start; i <= end && field < FIELDS; ++i) {
+                if (i == end || buffer.get(i) == '\t') {
+                    bounds[field * 2] = begin;
+                    bounds[field * 2 + 1] = i;
+                    ++field;
+                    begin = i + 1;
+                }
+            }
+            var origin = field(buffer, 0);
+            var method = field(buffer, 1);
+            var requestedMethod = field(buffer, 2);
+            var requestedHeaders = field(buffer, 3);
+            var baseCode = base.decide(origin, method, requestedMethod, requestedHeaders);
+            var candidateCode = candidate.decide(origin, method, requestedMethod, requestedHeaders);
+            ++lines;
+            if (CorsEngine.isAllowed(baseCode)) {
+                ++allowedBase;
+            }
+            if (CorsEngine.isAllowed(candidateCode)) {
+                ++allowedCandidate;
+            }
+            if (baseCode == candidateCode) {
+                return;
+            }
+            probe.set(origin, method, requestedMethod, requestedHeaders, baseCode, candidateCode);
+            var count = drifts.get(probe);
+            if (count == null) {
+                drifts.put(probe.copy(), new long[]{1});
+            } else {
+                ++count[0];
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.amayaframework.cors;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class CorsReplayToolTests {
+    private static final int BLOCKS = 20;
+    // Small enough for many lines to cross a window
+    private static final int WINDOW = 64;
+
+    private static CorsEngine base() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com", "https://пример.рф");
+        return new CorsEngine(builder.build());
+    }
+
+    private static CorsEngine candidate() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com", "https://b.com", "https://пример.рф");
+        builder.allowedHeaders().allow("x-other");
+        return new CorsEngine(builder.build());
+    }
+
+    private static Path log() throws IOException {
+        var builder = new StringBuilder();
+        for (var i = 0; i < BLOCKS; ++i) {
+            builder.append("# policy drift sample\r\n")
+                    .append("https://a.com\r\n")
+                    .append("https://b.com\tGET\n")
+                    .append("https://пример.рф\tPOST\t-\t-\r\n")
+                    .append("https://b.com\tOPTIONS\tPUT\tx-token\n")
+                    .append('\n')
+                    .append("https://a.com\tOPTIONS\tGET\r\n")
+                    .append("#https://b.com\tGET\n");
+        }
+        // The last line has no newline
+        builder.append("https://b.com\tGET");
+        var ret = Files.createTempFile("cors", ".log");
+        Files.write(ret, builder.toString().getBytes(StandardCharsets.UTF_8));
+        return ret;
+    }
+
+    private static long count(CorsReplayTool.Result result,
+                              String origin,
+                              String method,
+                              String requestedMethod,
+                              String requestedHeaders,
+                              int base,
+                              int candidate) {
+        var drift = new CorsReplayTool.Drift().set(origin, method, requestedMethod, requestedHeaders, base, candidate);
+        var ret = result.drifts.get(drift);
+        return ret == null ? 0 : ret[0];
+    }
+
+    @Test
+    public void corsReplayToolReportsDrift() throws Exception {
+        var log = log();
+        try {
+            for (var threads = 1; threads <= 3; ++threads) {
+                var result = new CorsReplayTool(base(), candidate(), WINDOW).replay(log, threads);
+                assertEquals(5 * BLOCKS + 1, result.lines);
+                // CRLF endings and non-ASCII origins are decoded like the other lines
+                assertEquals(3 * BLOCKS, result.allowedBase);
+                assertEquals(4 * BLOCKS + 1, result.allowedCandidate);
+                assertEquals(2, result.drifts.size());
+                assertEquals(BLOCKS + 1, count(
+                        result, "https://b.com", "GET", null, null, CorsEngine.REJECTED_ORIGIN, CorsEngine.ALLOWED
+                ));
+                assertEquals(BLOCKS, count(
+                        result, "https://b.com", "OPTIONS", "PUT", "x-token",
+                        CorsEngine.PREFLIGHT | CorsEngine.REJECTED_ORIGIN,
+                        CorsEngine.PREFLIGHT | CorsEngine.REJECTED_HEADERS
+                ));
+            }
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+
+    @Test
+    public void corsReplayToolRethrowsWorkerFailures() throws Exception {
+        var log = log();
+        try {
+            var failing = new CorsEngine(candidate()) {
+                @Override
+                protected boolean checkOrigin(String origin) {
+                    throw new IllegalStateException("Broken policy");
+                }
+            };
+            var tool = new CorsReplayTool(base(), failing, WINDOW);
+            var thrown = assertThrows(IllegalStateException.class, () -> tool.replay(log, 2));
+            assertEquals("Broken policy", thrown.getMessage());
+            // Lines longer than a window are reported instead of being split
+            var narrow = new CorsReplayTool(base(), candidate(), 16);
+            assertThrows(IOException.class, () -> narrow.replay(log, 1));
+        } finally {
+            Files.deleteIfExists(log);
+        }
+    }
+}
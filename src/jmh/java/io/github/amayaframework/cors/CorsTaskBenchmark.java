@@ -0,0 +1,85 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the plain request paths of {@link CorsTask}: requests without an origin,
+ * requests from an allowed origin and requests from a denied origin.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CorsTaskBenchmark {
+    static final String ALLOWED = "https://allowed.example.com";
+    static final String DENIED = "https://denied.example.com";
+
+    @Param({"false", "true"})
+    public boolean credentials;
+
+    private CorsTask task;
+    private FakeHttp noOrigin;
+    private FakeHttp allowed;
+    private FakeHttp denied;
+
+    @Setup
+    public void setup() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow(ALLOWED);
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST);
+        builder.allowedHeaders().allow("Content-Type", "Authorization");
+        builder.exposedHeaders().allow("X-Request-Id");
+        builder.allowCredentials(credentials);
+        task = new CorsTask(builder.build());
+        noOrigin = new FakeHttp().prepare(HttpMethod.GET, null, null, null);
+        allowed = new FakeHttp().prepare(HttpMethod.GET, ALLOWED, null, null);
+        denied = new FakeHttp().prepare(HttpMethod.GET, DENIED, null, null);
+    }
+
+    private int run(FakeHttp http) throws Throwable {
+        http.clear();
+        task.run(http.context(), Next.INSTANCE);
+        return http.headerCount();
+    }
+
+    private int runAsync(FakeHttp http) {
+        http.clear();
+        task.runAsync(http.context(), Next.INSTANCE);
+        return http.headerCount();
+    }
+
+    @Benchmark
+    public int noOrigin() throws Throwable {
+        return run(noOrigin);
+    }
+
+    @Benchmark
+    public int plainAllowed() throws Throwable {
+        return run(allowed);
+    }
+
+    @Benchmark
+    public int plainDenied() throws Throwable {
+        return run(denied);
+    }
+
+    @Benchmark
+    public int noOriginAsync() {
+        return runAsync(noOrigin);
+    }
+
+    @Benchmark
+    public int plainAllowedAsync() {
+        return runAsync(allowed);
+    }
+
+    @Benchmark
+    public int plainDeniedAsync() {
+        return runAsync(denied);
+    }
+}
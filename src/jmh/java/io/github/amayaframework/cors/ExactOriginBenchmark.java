@@ -0,0 +1,76 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching of request origins against a growing set of exact origins,
+ * held either in the heap or in a {@link MappedOriginStore}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExactOriginBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int origins;
+
+    @Param({"heap", "mapped"})
+    public String store;
+
+    private Path file;
+    private CorsTask task;
+    private String hit;
+    private String miss;
+
+    static String origin(int index) {
+        return "https://tenant-" + index + ".example.com";
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        var builder = new CorsConfigBuilder();
+        if (store.equals("mapped")) {
+            var values = new ArrayList<String>(origins);
+            for (var i = 0; i < origins; ++i) {
+                values.add(origin(i));
+            }
+            file = Files.createTempFile("cors", ".origins");
+            MappedOriginStore.write(values, file);
+            builder.allowedOrigins().matcher(MappedOriginStore.open(file));
+        } else {
+            for (var i = 0; i < origins; ++i) {
+                builder.allowedOrigins().allow(origin(i));
+            }
+        }
+        task = new CorsTask(builder.build());
+        // Copy to make sure the lookup cannot short-circuit on identity
+        hit = new String(origin(origins / 2));
+        miss = origin(origins);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (file != null) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public boolean hit() {
+        return task.checkOrigin(hit);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        return task.checkOrigin(miss);
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the HPACK-encoded size of CORS response headers with and without
+ * {@link CorsConfig#setStableHeaders(boolean) stable headers}.
+ * <p>
+ * Each operation replays one HTTP/2 connection: a Zipf-distributed origin sending a burst of simple
+ * and preflight requests, whose {@code :status} and CORS headers are encoded with a fresh
+ * connection-scoped dynamic table. Header names are lowercased as HTTP/2 requires in both modes.
+ * The encoded bytes per response are reported by {@link WireBytesProfiler}, enabled with
+ * {@code -prof io.github.amayaframework.cors.WireBytesProfiler}; the primary score is the time
+ * to render and encode a connection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HpackBenchmark {
+    static final int CONNECTIONS = 4096;
+    static final int REQUESTS = 16;
+    static final String[] REQUESTED_HEADERS = {
+            "content-type,x-request-id",
+            "Content-Type, X-Request-Id",
+            "authorization,content-type",
+            "Authorization, Content-Type"
+    };
+
+    static long wireBytes;
+    static long responses;
+
+    private static final HeaderSink<HpackEncoder> SINK = new HeaderSink<>() {
+        @Override
+        public void set(HpackEncoder target, String name, String value) {
+            target.encode(name.toLowerCase(Locale.ENGLISH), value);
+        }
+
+        @Override
+        public void add(HpackEncoder target, String name, String value) {
+            target.encode(name.toLowerCase(Locale.ENGLISH), value);
+        }
+    };
+
+    @Param({"false", "true"})
+    public boolean stable;
+
+    @Param({"false", "true"})
+    public boolean credentials;
+
+    private CorsEngine engine;
+    private String[] origins;
+    private String[][] methods;
+    private String[][] requestedHeaders;
+    private int next;
+
+    @Setup
+    public void setup() {
+        var builder = new CorsConfigBuilder();
+        for (var i = 0; i < 1000; ++i) {
+            builder.allowedOrigins().allow(ExactOriginBenchmark.origin(i));
+        }
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT);
+        builder.exposedHeaders().allow("X-Request-Id");
+        builder.maxAge(600).allowCredentials(credentials).stableHeaders(stable);
+        engine = new CorsEngine(builder.build());
+        origins = new String[CONNECTIONS];
+        methods = new String[CONNECTIONS][REQUESTS];
+        requestedHeaders = new String[CONNECTIONS][REQUESTS];
+        var random = new SplittableRandom(42);
+        var zipf = new ZipfGenerator(1000, 1.1);
+        for (var i = 0; i < CONNECTIONS; ++i) {
+            origins[i] = ExactOriginBenchmark.origin(zipf.next(random));
+            // A connection keeps the request header style of its client
+            var style = random.nextInt(2);
+            for (var j = 0; j < REQUESTS; ++j) {
+                if (random.nextInt(10) < 3) {
+                    methods[i][j] = "PUT";
+                    requestedHeaders[i][j] = REQUESTED_HEADERS[random.nextInt(2) * 2 + style];
+                } else {
+                    methods[i][j] = random.nextBoolean() ? "GET" : "POST";
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public long connection() {
+        var index = next;
+        next = (index + 1) % CONNECTIONS;
+        var encoder = new HpackEncoder();
+        var origin = origins[index];
+        for (var i = 0; i < REQUESTS; ++i) {
+            var method = methods[index][i];
+            if (requestedHeaders[index][i] == null) {
+                encoder.encode(":status", "200");
+                engine.process(origin, method, null, null, SINK, encoder);
+            } else {
+                encoder.encode(":status", "204");
+                engine.process(origin, "OPTIONS", method, requestedHeaders[index][i], SINK, encoder);
+            }
+        }
+        var ret = encoder.bytes();
+        wireBytes += ret;
+        responses += REQUESTS;
+        return ret;
+    }
+}
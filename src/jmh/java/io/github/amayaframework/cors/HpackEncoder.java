@@ -0,0 +1,139 @@
+package io.github.amayaframework.cors;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Minimal HPACK (RFC 7541) encoder counting the bytes of encoded header blocks of one connection.
+ * Fields fully found in the static or dynamic table are indexed; other fields are literals with
+ * incremental indexing, using an indexed name when there is one. String literals are counted
+ * without Huffman coding, which overstates literals alike for all rendering modes.
+ */
+final class HpackEncoder {
+    private static final String[][] STATIC_TABLE = {
+            {":authority", ""}, {":method", "GET"}, {":method", "POST"}, {":path", "/"},
+            {":path", "/index.html"}, {":scheme", "http"}, {":scheme", "https"}, {":status", "200"},
+            {":status", "204"}, {":status", "206"}, {":status", "304"}, {":status", "400"},
+            {":status", "404"}, {":status", "500"}, {"accept-charset", ""}, {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""}, {"accept-ranges", ""}, {"accept", ""}, {"access-control-allow-origin", ""},
+            {"age", ""}, {"allow", ""}, {"authorization", ""}, {"cache-control", ""},
+            {"content-disposition", ""}, {"content-encoding", ""}, {"content-language", ""}, {"content-length", ""},
+            {"content-location", ""}, {"content-range", ""}, {"content-type", ""}, {"cookie", ""},
+            {"date", ""}, {"etag", ""}, {"expect", ""}, {"expires", ""},
+            {"from", ""}, {"host", ""}, {"if-match", ""}, {"if-modified-since", ""},
+            {"if-none-match", ""}, {"if-range", ""}, {"if-unmodified-since", ""}, {"last-modified", ""},
+            {"link", ""}, {"location", ""}, {"max-forwards", ""}, {"proxy-authenticate", ""},
+            {"proxy-authorization", ""}, {"range", ""}, {"referer", ""}, {"refresh", ""},
+            {"retry-after", ""}, {"server", ""}, {"set-cookie", ""}, {"strict-transport-security", ""},
+            {"transfer-encoding", ""}, {"user-agent", ""}, {"vary", ""}, {"via", ""},
+            {"www-authenticate", ""}
+    };
+    private static final Map<String, Integer> STATIC_NAMES = new HashMap<>();
+    private static final Map<String, Integer> STATIC_FIELDS = new HashMap<>();
+    private static final int ENTRY_OVERHEAD = 32;
+
+    static {
+        for (var i = STATIC_TABLE.length - 1; i >= 0; --i) {
+            var entry = STATIC_TABLE[i];
+            STATIC_NAMES.put(entry[0], i + 1);
+            STATIC_FIELDS.put(entry[0] + '\n' + entry[1], i + 1);
+        }
+    }
+
+    private final int capacity;
+    // Newest entries first, each entry is {name, value}
+    private final ArrayDeque<String[]> dynamic;
+    private int size;
+    private long bytes;
+
+    HpackEncoder(int capacity) {
+        this.capacity = capacity;
+        this.dynamic = new ArrayDeque<>();
+    }
+
+    HpackEncoder() {
+        this(4096);
+    }
+
+    private static int integerSize(int value, int prefix) {
+        var max = (1 << prefix) - 1;
+        if (value < max) {
+            return 1;
+        }
+        var ret = 1;
+        value -= max;
+        while (value >= 128) {
+            value >>>= 7;
+            ++ret;
+        }
+        return ret + 1;
+    }
+
+    private static int stringSize(String value) {
+        var length = value.getBytes(StandardCharsets.UTF_8).length;
+        return integerSize(length, 7) + length;
+    }
+
+    private static int entrySize(String name, String value) {
+        return name.getBytes(StandardCharsets.UTF_8).length
+                + value.getBytes(StandardCharsets.UTF_8).length
+                + ENTRY_OVERHEAD;
+    }
+
+    private int findDynamic(String name, String value) {
+        var index = STATIC_TABLE.length + 1;
+        for (var entry : dynamic) {
+            if (entry[0].equals(name) && (value == null || entry[1].equals(value))) {
+                return index;
+            }
+            ++index;
+        }
+        return -1;
+    }
+
+    private void insert(String name, String value) {
+        var entry = entrySize(name, value);
+        while (!dynamic.isEmpty() && size + entry > capacity) {
+            var evicted = dynamic.removeLast();
+            size -= entrySize(evicted[0], evicted[1]);
+        }
+        if (entry <= capacity) {
+            dynamic.addFirst(new String[]{name, value});
+            size += entry;
+        }
+    }
+
+    /*
+     * Encodes a header field and returns its encoded size in bytes.
+     */
+    int encode(String name, String value) {
+        int ret;
+        var index = STATIC_FIELDS.get(name + '\n' + value);
+        if (index == null) {
+            var found = findDynamic(name, value);
+            index = found < 0 ? null : found;
+        }
+        if (index != null) {
+            // Indexed header field
+            ret = integerSize(index, 7);
+        } else {
+            // Literal header field with incremental indexing
+            var nameIndex = STATIC_NAMES.get(name);
+            if (nameIndex == null) {
+                var found = findDynamic(name, null);
+                nameIndex = found < 0 ? null : found;
+            }
+            ret = nameIndex == null ? 1 + stringSize(name) : integerSize(nameIndex, 6);
+            ret += stringSize(value);
+            insert(name, value);
+        }
+        bytes += ret;
+        return ret;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares applying a one-origin delta to a {@link LiveOriginSet} with rebuilding
+ * the whole {@link CorsConfig} and {@link CorsTask}, and measures live set lookups.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LiveOriginSetBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int origins;
+
+    private List<String> originList;
+    private LiveOriginSet live;
+    private String hit;
+    private int index;
+
+    @Setup
+    public void setup() {
+        originList = new ArrayList<>(origins);
+        for (var i = 0; i < origins; ++i) {
+            originList.add(ExactOriginBenchmark.origin(i));
+        }
+        live = new LiveOriginSet(originList);
+        hit = new String(ExactOriginBenchmark.origin(origins / 2));
+    }
+
+    @Benchmark
+    public long delta() {
+        // Adds and removes a fresh origin, so the set size stays the same
+        var origin = ExactOriginBenchmark.origin(origins + (index++ & 1023));
+        live.add(origin);
+        return live.remove(origin);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public CorsTask rebuild() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().ingest(originList);
+        return new CorsTask(builder.build());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean lookup() {
+        return live.matches(hit);
+    }
+}
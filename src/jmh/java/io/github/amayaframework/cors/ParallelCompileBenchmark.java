@@ -0,0 +1,54 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how building a large {@link CorsConfig} scales with the compilation parallelism
+ * of {@link CorsConfigBuilder}, with eager and lazy origin regex compilation.
+ * <p>
+ * Parallelism values above the number of available cores only add scheduling overhead.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelCompileBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean lazy;
+
+    @Param({"500000"})
+    public int origins;
+
+    @Param({"1000"})
+    public int regexes;
+
+    private ConfigBuildBenchmark source;
+
+    @Setup
+    public void setup() {
+        source = new ConfigBuildBenchmark();
+        source.origins = origins;
+        source.regexes = regexes;
+        source.mixedCase = true;
+        source.setup();
+    }
+
+    @Benchmark
+    public CorsConfig build() {
+        var builder = new CorsConfigBuilder().parallelism(parallelism).lazyRegexes(lazy);
+        var allowed = builder.allowedOrigins();
+        allowed.allow(source.originList());
+        for (var regex : source.regexList()) {
+            allowed.addRegex(regex);
+        }
+        return builder.build();
+    }
+}
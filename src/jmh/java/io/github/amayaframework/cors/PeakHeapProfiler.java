@@ -0,0 +1,83 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JMH profiler reporting the peak heap usage reached during each iteration.
+ * <p>
+ * Before an iteration the heap is collected and the peak usage of all heap memory pools is reset,
+ * so {@code heap.peak} is the sum of the pool peaks observed while the benchmark ran and
+ * {@code heap.baseline} is the heap retained by the benchmark state. The pool peaks may be reached
+ * at different moments, so the sum is an upper bound of the real peak.
+ * <p>
+ * Enabled with {@code -prof io.github.amayaframework.cors.PeakHeapProfiler}.
+ */
+public final class PeakHeapProfiler implements InternalProfiler {
+    private static final double MB = 1024 * 1024;
+
+    private final List<MemoryPoolMXBean> pools;
+    private long baseline;
+
+    public PeakHeapProfiler() {
+        pools = ManagementFactory.getMemoryPoolMXBeans();
+    }
+
+    private long used() {
+        var ret = 0L;
+        for (var pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                ret += pool.getUsage().getUsed();
+            }
+        }
+        return ret;
+    }
+
+    private long peak() {
+        var ret = 0L;
+        for (var pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                ret += pool.getPeakUsage().getUsed();
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Peak heap usage per iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        System.gc();
+        baseline = used();
+        for (var pool : pools) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+                                                       IterationParams iterationParams,
+                                                       IterationResult result) {
+        var peak = peak();
+        return List.of(
+                new ScalarResult("heap.peak", peak / MB, "MB", AggregationPolicy.MAX),
+                new ScalarResult("heap.baseline", baseline / MB, "MB", AggregationPolicy.AVG)
+        );
+    }
+}
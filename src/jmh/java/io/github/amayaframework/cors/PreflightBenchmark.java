@@ -0,0 +1,79 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures allowed preflight requests of {@link CorsTask} with a growing list of requested headers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PreflightBenchmark {
+    static final int MAX_HEADERS = 20;
+
+    @Param({"0", "5", "20"})
+    public int headers;
+
+    @Param({"false", "true"})
+    public boolean credentials;
+
+    private CorsTask task;
+    private FakeHttp preflight;
+
+    static String header(int index) {
+        return "X-Header-" + index;
+    }
+
+    static String requestedHeaders(int count) {
+        if (count == 0) {
+            return null;
+        }
+        var builder = new StringBuilder();
+        for (var i = 0; i < count; ++i) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            // Mix the case the way browsers and clients do
+            builder.append(i % 2 == 0 ? header(i).toLowerCase() : header(i));
+        }
+        return builder.toString();
+    }
+
+    @Setup
+    public void setup() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow(CorsTaskBenchmark.ALLOWED);
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT);
+        for (var i = 0; i < MAX_HEADERS; ++i) {
+            builder.allowedHeaders().allow(header(i));
+        }
+        builder.allowCredentials(credentials).maxAge(600);
+        task = new CorsTask(builder.build());
+        preflight = new FakeHttp().prepare(
+                HttpMethod.OPTIONS,
+                CorsTaskBenchmark.ALLOWED,
+                "PUT",
+                requestedHeaders(headers)
+        );
+    }
+
+    @Benchmark
+    public int preflight() throws Throwable {
+        preflight.clear();
+        task.run(preflight.context(), Next.INSTANCE);
+        return preflight.headerCount();
+    }
+
+    @Benchmark
+    public int preflightAsync() {
+        preflight.clear();
+        task.runAsync(preflight.context(), Next.INSTANCE);
+        return preflight.headerCount();
+    }
+}
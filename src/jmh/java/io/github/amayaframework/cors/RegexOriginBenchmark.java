@@ -0,0 +1,60 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching of request origins against a growing list of origin regexes,
+ * both for origins served from the regex verdict cache and for origins that always miss it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RegexOriginBenchmark {
+    // Twice the cache capacity, so rotating over these origins always misses the cache
+    static final int UNCACHED = OriginCache.DEFAULT_CAPACITY * 2;
+
+    @Param({"1", "50", "500"})
+    public int regexes;
+
+    private CorsTask task;
+    private String cached;
+    private String[] uncached;
+    private int index;
+
+    static String regex(int index) {
+        return "https://([a-z0-9-]+\\.)?tenant-" + index + "\\.example\\.com";
+    }
+
+    @Setup
+    public void setup() {
+        var builder = new CorsConfigBuilder();
+        for (var i = 0; i < regexes; ++i) {
+            builder.allowedOrigins().addRegex(regex(i));
+        }
+        task = new CorsTask(builder.build());
+        // Matches only the last regex, which is the worst case for the linear scan
+        var last = regexes - 1;
+        cached = "https://app.tenant-" + last + ".example.com";
+        uncached = new String[UNCACHED];
+        for (var i = 0; i < UNCACHED; ++i) {
+            uncached[i] = "https://app-" + i + ".tenant-" + last + ".example.com";
+        }
+    }
+
+    @Benchmark
+    public boolean cached() {
+        return task.checkOrigin(cached);
+    }
+
+    @Benchmark
+    public boolean uncached() {
+        var origin = uncached[index];
+        index = (index + 1) % UNCACHED;
+        return task.checkOrigin(origin);
+    }
+}
@@ -0,0 +1,169 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the request throughput of an embedded Tomcat on loopback with and without {@link CorsFilter}.
+ * <p>
+ * Every benchmark thread keeps its own HTTP/1.1 keep-alive connection and sends plain and preflight
+ * requests with a minimal hand-written client, so the client adds as little as possible to the cost.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ServletCorsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"none", "cors"})
+        public String filter;
+
+        Tomcat tomcat;
+        int port;
+
+        @Setup
+        public void setup() throws Exception {
+            tomcat = new Tomcat();
+            tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+            tomcat.setPort(0);
+            var context = tomcat.addContext("", null);
+            var servlet = Tomcat.addServlet(context, "ok", new OkServlet());
+            servlet.setAsyncSupported(true);
+            context.addServletMappingDecoded("/*", "ok");
+            if (filter.equals("cors")) {
+                var builder = new CorsConfigBuilder();
+                builder.allowedOrigins().allow("https://a.example.com");
+                builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT);
+                builder.allowedHeaders().allow("content-type", "x-request-id");
+                var def = new FilterDef();
+                def.setFilterName("cors");
+                def.setFilter(new CorsFilter(builder.build()));
+                def.setAsyncSupported("true");
+                context.addFilterDef(def);
+                var map = new FilterMap();
+                map.setFilterName("cors");
+                map.addURLPattern("/*");
+                context.addFilterMap(map);
+            }
+            var connector = tomcat.getConnector();
+            // Keep connections alive for the whole run
+            connector.setProperty("maxKeepAliveRequests", "-1");
+            connector.setProperty("keepAliveTimeout", "-1");
+            tomcat.start();
+            port = tomcat.getConnector().getLocalPort();
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private static final byte[] PLAIN = ("GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Origin: https://a.example.com\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] PREFLIGHT = ("OPTIONS / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Origin: https://a.example.com\r\n" +
+                "Access-Control-Request-Method: PUT\r\n" +
+                "Access-Control-Request-Headers: content-type,x-request-id\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        private final byte[] buffer = new byte[8192];
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+
+        @Setup
+        public void setup(Server server) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.port);
+            socket.setTcpNoDelay(true);
+            in = socket.getInputStream();
+            out = socket.getOutputStream();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            socket.close();
+        }
+
+        private static int contentLength(byte[] buffer, int end) {
+            var headers = new String(buffer, 0, end, StandardCharsets.US_ASCII).toLowerCase();
+            var index = headers.indexOf("content-length:");
+            if (index < 0) {
+                return 0;
+            }
+            var from = index + "content-length:".length();
+            var to = headers.indexOf('\r', from);
+            return Integer.parseInt(headers.substring(from, to).trim());
+        }
+
+        // Sends the request and reads one response, returning its status code
+        int exchange(byte[] request) throws IOException {
+            out.write(request);
+            out.flush();
+            var length = 0;
+            var end = -1;
+            while (end < 0) {
+                var read = in.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    throw new IOException("Connection closed");
+                }
+                length += read;
+                for (var i = Math.max(3, length - read); i < length; ++i) {
+                    if (buffer[i] == '\n' && buffer[i - 1] == '\r' && buffer[i - 2] == '\n' && buffer[i - 3] == '\r') {
+                        end = i + 1;
+                        break;
+                    }
+                }
+            }
+            var remaining = contentLength(buffer, end) - (length - end);
+            while (remaining > 0) {
+                var read = in.read(buffer, 0, Math.min(remaining, buffer.length));
+                if (read < 0) {
+                    throw new IOException("Connection closed");
+                }
+                remaining -= read;
+            }
+            return (buffer[9] - '0') * 100 + (buffer[10] - '0') * 10 + (buffer[11] - '0');
+        }
+    }
+
+    public static final class OkServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+            resp.setContentLength(0);
+        }
+    }
+
+    @Benchmark
+    public int plain(Client client) throws IOException {
+        return client.exchange(Client.PLAIN);
+    }
+
+    @Benchmark
+    public int preflight(Client client) throws IOException {
+        return client.exchange(Client.PREFLIGHT);
+    }
+}
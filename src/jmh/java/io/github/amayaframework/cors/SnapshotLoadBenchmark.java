@@ -0,0 +1,58 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the startup cost of loading a {@link CorsSnapshot} file with building
+ * the same {@link CorsConfig} through {@link CorsConfigBuilder}.
+ * <p>
+ * Peak heap is reported when run with {@code -prof io.github.amayaframework.cors.PeakHeapProfiler}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class SnapshotLoadBenchmark {
+
+    @Param({"1000", "100000", "500000"})
+    public int origins;
+
+    @Param({"10", "1000"})
+    public int regexes;
+
+    private ConfigBuildBenchmark builder;
+    private Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        builder = new ConfigBuildBenchmark();
+        builder.origins = origins;
+        builder.regexes = regexes;
+        builder.mixedCase = true;
+        builder.setup();
+        snapshot = Files.createTempFile("cors", ".snapshot");
+        CorsSnapshot.write(builder.build(), snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public CorsConfig build() {
+        return builder.build();
+    }
+
+    @Benchmark
+    public CorsConfig load() throws IOException {
+        return CorsSnapshot.read(snapshot);
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the startup-versus-latency tradeoff of {@link CorsWarmup}: the mean latency of the first
+ * requests served by a fresh {@link CorsTask} in a fresh JVM, after a warm-up with the given budget
+ * in milliseconds, {@code 0} disabling it.
+ * <p>
+ * Each fork runs one burst of requests mixing exact, regex-matched and rejected origins with simple
+ * and preflight requests; the warm-up itself is excluded from the measurement and costs its budget
+ * at most, so the startup cost of each setting is its budget.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@State(Scope.Benchmark)
+@OperationsPerInvocation(WarmupBenchmark.COUNT)
+public class WarmupBenchmark {
+    static final int COUNT = 5000;
+
+    @Param({"0", "100", "500", "2000"})
+    public int budget;
+
+    private CorsTask task;
+    private FakeHttp[] requests;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var builder = new CorsConfigBuilder();
+        for (var i = 0; i < 1000; ++i) {
+            builder.allowedOrigins().allow(ExactOriginBenchmark.origin(i));
+        }
+        builder.allowedOrigins().addRegex("https://([a-z0-9-]+\\.)?partner\\.example\\.org");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT);
+        builder.allowedHeaders().allow("Content-Type", "X-Request-Id", "Authorization");
+        var engine = new CorsEngine(builder.build());
+        if (budget > 0) {
+            new CorsWarmup(CorsWarmup.twin(engine)).run(Duration.ofMillis(budget));
+        }
+        task = new CorsTask(engine);
+        requests = new FakeHttp[COUNT];
+        var random = new Random(42);
+        for (var i = 0; i < COUNT; ++i) {
+            var kind = random.nextInt(10);
+            var origin = kind < 7
+                    ? ExactOriginBenchmark.origin(random.nextInt(1200))
+                    : kind < 9 ? "https://n" + random.nextInt(50) + ".partner.example.org" : null;
+            requests[i] = random.nextBoolean()
+                    ? new FakeHttp().prepare(HttpMethod.OPTIONS, origin, "PUT", "content-type, x-request-id")
+                    : new FakeHttp().prepare(HttpMethod.GET, origin, null, null);
+        }
+    }
+
+    @Benchmark
+    public int firstRequests() throws Throwable {
+        var ret = 0;
+        for (var http : requests) {
+            task.run(http.context(), Next.INSTANCE);
+            ret += http.headerCount();
+        }
+        return ret;
+    }
+}
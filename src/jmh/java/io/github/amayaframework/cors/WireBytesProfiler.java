@@ -0,0 +1,41 @@
+package io.github.amayaframework.cors;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JMH profiler reporting the HPACK-encoded bytes per response counted by {@link HpackBenchmark}
+ * during each iteration, as {@code wire.bytes}.
+ * <p>
+ * Enabled with {@code -prof io.github.amayaframework.cors.WireBytesProfiler}.
+ */
+public final class WireBytesProfiler implements InternalProfiler {
+
+    @Override
+    public String getDescription() {
+        return "HPACK-encoded bytes per response";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        HpackBenchmark.wireBytes = 0;
+        HpackBenchmark.responses = 0;
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+                                                       IterationParams iterationParams,
+                                                       IterationResult result) {
+        var responses = HpackBenchmark.responses;
+        var bytes = responses == 0 ? Double.NaN : (double) HpackBenchmark.wireBytes / responses;
+        return List.of(new ScalarResult("wire.bytes", bytes, "B/response", AggregationPolicy.AVG));
+    }
+}
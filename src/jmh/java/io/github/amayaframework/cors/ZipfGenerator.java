@@ -0,0 +1,33 @@
+package io.github.amayaframework.cors;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks in {@code [0, n)} following a Zipf distribution with the given exponent,
+ * where rank {@code 0} is the most frequent one.
+ */
+final class ZipfGenerator {
+    private final double[] cdf;
+
+    ZipfGenerator(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("Invalid number of elements: " + n);
+        }
+        this.cdf = new double[n];
+        var sum = 0D;
+        for (var i = 0; i < n; ++i) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (var i = 0; i < n; ++i) {
+            cdf[i] /= sum;
+        }
+        cdf[n - 1] = 1;
+    }
+
+    int next(SplittableRandom random) {
+        var index = Arrays.binarySearch(cdf, random.nextDouble());
+        return index < 0 ? -index - 1 : index;
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.amayaframework.cors;
 
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
@@ -35,6 +36,21 @@ public abstract class AbstractAccessConfigurer<V, C extends AccessConfigurer<V>>
         return true;
     }
 
+    /**
+     * Ensures that the internal {@link #allowed} set is initialized,
+     * presizing a newly created set for the given number of values.
+     *
+     * @param expected the expected number of values
+     * @return {@code true} if the set was already initialized, {@code false} if it was created
+     */
+    protected boolean ensure(int expected) {
+        if (allowed == null) {
+            allowed = new HashSet<>(Util.capacity(expected));
+            return false;
+        }
+        return true;
+    }
+
     /**
      * Ensures that the internal {@link #allowed} set is empty.
      * <p>
@@ -81,7 +97,7 @@ public abstract class AbstractAccessConfigurer<V, C extends AccessConfigurer<V>>
     @Override
     @SuppressWarnings("unchecked")
     public C allow(V... values) {
-        ensure();
+        ensure(values == null ? 0 : values.length);
         Util.allow(allowed, values);
         return (C) this;
     }
@@ -89,7 +105,11 @@ public abstract class AbstractAccessConfigurer<V, C extends AccessConfigurer<V>>
     @Override
     @SuppressWarnings("unchecked")
     public C allow(Iterable<V> values) {
-        ensure();
+        if (values instanceof Collection) {
+            ensure(((Collection<V>) values).size());
+        } else {
+            ensure();
+        }
         Util.allow(allowed, values);
         return (C) this;
     }
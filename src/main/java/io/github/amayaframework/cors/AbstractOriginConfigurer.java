@@ -1,8 +1,15 @@
 package io.github.amayaframework.cors;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Base implementation for {@link OriginConfigurer} providing common functionality
@@ -18,10 +25,16 @@ public abstract class AbstractOriginConfigurer<O extends OriginConfigurer>
      */
     protected Set<String> regexes;
 
+    /**
+     * Matcher consulted for origins that are not allowed explicitly.
+     */
+    protected OriginMatcher matcher;
+
     @Override
     public void reset() {
         allowed = null;
         regexes = null;
+        matcher = null;
     }
 
     @Override
@@ -29,6 +42,55 @@ public abstract class AbstractOriginConfigurer<O extends OriginConfigurer>
     public O allowAny() {
         allowed = null;
         regexes = null;
+        matcher = null;
+        return (O) this;
+    }
+
+    private void add(String origin) {
+        if (origin != null) {
+            allowed.add(origin.toLowerCase(Locale.ENGLISH));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public O ingest(Iterable<String> values) {
+        if (values instanceof Collection) {
+            ensure(((Collection<String>) values).size());
+        } else {
+            ensure();
+        }
+        if (values != null) {
+            for (var value : values) {
+                add(value);
+            }
+        }
+        return (O) this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public O ingest(Stream<String> values) {
+        ensure();
+        if (values != null) {
+            values.forEachOrdered(this::add);
+        }
+        return (O) this;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public O ingest(Path file) throws IOException {
+        ensure();
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty()) {
+                    add(line);
+                }
+            }
+        }
         return (O) this;
     }
 
@@ -55,6 +117,18 @@ public abstract class AbstractOriginConfigurer<O extends OriginConfigurer>
         return (O) this;
     }
 
+    @Override
+    public OriginMatcher matcher() {
+        return matcher;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public O matcher(OriginMatcher matcher) {
+        this.matcher = matcher;
+        return (O) this;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public O removeRegex(String regex) {
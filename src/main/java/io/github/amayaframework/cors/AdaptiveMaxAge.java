@@ -0,0 +1,73 @@
+package io.github.amayaframework.cors;
+
+import java.util.ArrayList;
+
+/*
+ * Adaptive Access-Control-Max-Age values, raised for origins that keep preflighting.
+ * Origins are hashed into a fixed number of slots (origin classes), each holding the
+ * number of allowed preflights seen since the last policy generation, saturated at the
+ * last step of a precomputed table of rendered values. A slot packs the low 24 bits of
+ * the generation with its 8-bit level, so a new generation lowers every origin back to
+ * the first step without touching the slots. Updates are plain racy writes: a lost update
+ * only delays a step, and slots are written only while their level still changes.
+ * Without a configured max-age the first step is the max-age browsers assume for
+ * responses without the header, so adapting never disables preflight caching.
+ */
+final class AdaptiveMaxAge {
+    static final int DEFAULT_SLOTS = 4096;
+    static final int MIN_STEP = 5;
+    static final int DEFAULT_FLOOR = 5;
+
+    private final String[] values;
+    private final int top;
+    private final int[] slots;
+    private final int mask;
+
+    AdaptiveMaxAge(int floor, int ceiling, int slots) {
+        this.values = steps(floor, ceiling);
+        this.top = values.length - 1;
+        var capacity = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    AdaptiveMaxAge(int floor, int ceiling) {
+        this(floor, ceiling, DEFAULT_SLOTS);
+    }
+
+    static String[] steps(int floor, int ceiling) {
+        var ret = new ArrayList<String>();
+        var value = floor < 0 ? DEFAULT_FLOOR : floor;
+        ceiling = Math.max(ceiling, value);
+        ret.add(Integer.toString(value));
+        while (value < ceiling) {
+            value = (int) Math.min(ceiling, Math.max(2L * value, MIN_STEP));
+            ret.add(Integer.toString(value));
+        }
+        return ret.toArray(new String[0]);
+    }
+
+    private int index(String origin) {
+        var hash = origin.hashCode();
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    String next(String origin, long generation) {
+        var index = index(origin);
+        var slot = slots[index];
+        var stamp = (int) generation & 0xFFFFFF;
+        var level = (slot >>> 8) == stamp ? slot & 0xFF : 0;
+        var updated = stamp << 8 | Math.min(level + 1, top);
+        if (updated != slot) {
+            slots[index] = updated;
+        }
+        return values[level];
+    }
+
+    void reset(String origin) {
+        var index = index(origin);
+        if (slots[index] != 0) {
+            slots[index] = 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package io.github.amayaframework.cors;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Each counter is a separate LongAdder. Under contention, LongAdder spreads updates over
+ * @Contended-padded cells, so neither a single hot counter nor neighbouring counters
+ * suffer from false sharing. Preflight tuples are forwarded to an optional heavy hitter tracker.
+ */
+final class AdderCorsMetrics implements CorsMetrics {
+    private static final CorsRejection[] REJECTIONS = CorsRejection.values();
+    private static final MatchStage[] STAGES = MatchStage.values();
+
+    private final LongAdder plainAllowed;
+    private final LongAdder plainRejected;
+    private final LongAdder preflightAllowed;
+    private final LongAdder preflightRejected;
+    private final LongAdder[] rejections;
+    private final LongAdder[] stages;
+    private final PreflightHeavyHitters hitters;
+
+    AdderCorsMetrics(PreflightHeavyHitters hitters) {
+        this.plainAllowed = new LongAdder();
+        this.plainRejected = new LongAdder();
+        this.preflightAllowed = new LongAdder();
+        this.preflightRejected = new LongAdder();
+        this.rejections = create(REJECTIONS.length);
+        this.stages = create(STAGES.length);
+        this.hitters = hitters;
+    }
+
+    AdderCorsMetrics() {
+        this(null);
+    }
+
+    private static LongAdder[] create(int length) {
+        var ret = new LongAdder[length];
+        for (var i = 0; i < length; ++i) {
+            ret[i] = new LongAdder();
+        }
+        return ret;
+    }
+
+    private static long[] sum(LongAdder[] adders) {
+        var length = adders.length;
+        var ret = new long[length];
+        for (var i = 0; i < length; ++i) {
+            ret[i] = adders[i].sum();
+        }
+        return ret;
+    }
+
+    @Override
+    public void onAllowed(boolean preflight) {
+        if (preflight) {
+            preflightAllowed.increment();
+        } else {
+            plainAllowed.increment();
+        }
+    }
+
+    @Override
+    public void onRejected(boolean preflight, CorsRejection reason) {
+        if (preflight) {
+            preflightRejected.increment();
+        } else {
+            plainRejected.increment();
+        }
+        rejections[reason.ordinal()].increment();
+    }
+
+    @Override
+    public void onOriginMatch(MatchStage stage) {
+        stages[stage.ordinal()].increment();
+    }
+
+    @Override
+    public void onPreflight(String origin, String method, String headers) {
+        if (hitters != null) {
+            hitters.record(origin, method, headers);
+        }
+    }
+
+    @Override
+    public CorsMetricsSnapshot snapshot() {
+        return new CorsMetricsSnapshot(
+                plainAllowed.sum(),
+                plainRejected.sum(),
+                preflightAllowed.sum(),
+                preflightRejected.sum(),
+                sum(rejections),
+                sum(stages)
+        );
+    }
+}
@@ -1,6 +1,7 @@
 package io.github.amayaframework.cors;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 
 final class CompileOriginBuilder extends AbstractOriginConfigurer<OriginConfigurer> {
@@ -13,21 +14,77 @@ final class CompileOriginBuilder extends AbstractOriginConfigurer<OriginConfigur
         return ret;
     }
 
+    private static List<Pattern> compileRegexes(Collection<String> regexes, ForkJoinPool pool) {
+        if (pool == null) {
+            return compileRegexes(regexes);
+        }
+        var sources = regexes.toArray(new String[0]);
+        var ret = new Pattern[sources.length];
+        Util.parallelFor(pool, sources.length, i -> ret[i] = Pattern.compile(sources[i]));
+        return Arrays.asList(ret);
+    }
+
     List<Pattern> buildRegexes() {
+        return buildRegexes(null, false);
+    }
+
+    List<Pattern> buildRegexes(ForkJoinPool pool, boolean lazy) {
         if (regexes == null) {
             return null;
         }
         var regexes = this.regexes;
         this.regexes = null;
-        return Collections.unmodifiableList(compileRegexes(regexes));
+        if (lazy) {
+            return new LazyPatternList(regexes.toArray(new String[0]));
+        }
+        return Collections.unmodifiableList(compileRegexes(regexes, pool));
+    }
+
+    // Origins are collected into an origin set, so building the config does not copy them
+
+    @Override
+    protected boolean ensure() {
+        if (allowed == null) {
+            allowed = new OriginSet();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean ensure(int expected) {
+        if (allowed == null) {
+            allowed = new OriginSet(Util.capacity(expected));
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void ensureEmpty() {
+        if (allowed == null || !allowed.isEmpty()) {
+            allowed = new OriginSet();
+        }
+    }
+
+    OriginMatcher buildMatcher() {
+        var matcher = this.matcher;
+        this.matcher = null;
+        return matcher;
     }
 
     Set<String> buildStrict() {
+        return buildStrict(null);
+    }
+
+    Set<String> buildStrict(ForkJoinPool pool) {
         if (allowed == null) {
             return null;
         }
         var allowed = this.allowed;
         this.allowed = null;
-        return Collections.unmodifiableSet(Util.toLowerCase(allowed));
+        var ret = Util.toLowerCase(allowed, pool);
+        // Collected or already normalized origins are kept as they are
+        return (ret instanceof OriginSet ? (OriginSet) ret : new OriginSet(ret)).freeze();
     }
 }
@@ -1,5 +1,6 @@
 package io.github.amayaframework.cors;
 
+import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
@@ -92,4 +93,28 @@ public final class Cors {
         cfg.allowCredentials(CorsDefaults.ALLOW_CREDENTIALS).maxAge(CorsDefaults.MAX_AGE);
         return ret;
     }
+
+    /**
+     * Creates a new {@link CorsMetrics} instance counting events with {@link java.util.concurrent.atomic.LongAdder}s.
+     * <p>
+     * The returned instance is designed for concurrent updates from many request threads
+     * and can be passed to {@link CorsTask} or {@link CorsApplicationConfigurer#setMetrics(CorsMetrics)}.
+     *
+     * @return a new counting {@link CorsMetrics}
+     */
+    public static CorsMetrics metrics() {
+        return new AdderCorsMetrics();
+    }
+
+    /**
+     * Creates a new {@link CorsMetrics} instance counting events with {@link java.util.concurrent.atomic.LongAdder}s
+     * and recording the tuples of all preflight requests into the given tracker.
+     *
+     * @param hitters the tracker of the most frequent preflight tuples
+     * @return a new counting {@link CorsMetrics}
+     */
+    public static CorsMetrics metrics(PreflightHeavyHitters hitters) {
+        Objects.requireNonNull(hitters);
+        return new AdderCorsMetrics(hitters);
+    }
 }
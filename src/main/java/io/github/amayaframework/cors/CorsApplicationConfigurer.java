@@ -8,17 +8,30 @@ import io.github.amayaframework.server.ServerOptions;
 import io.github.amayaframework.web.WebApplication;
 import io.github.amayaframework.web.WebOptions;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
 /**
  * Configures CORS for a {@link WebApplication} using {@link CorsConfigBuilder} and {@link CorsTask}.
  * <p>
  * Reads options from {@link CorsOptions} group if {@code configure} is {@code true}.
- * Builds a {@link CorsConfig} and registers a {@link CorsTask} to the application.
+ * Builds a {@link CorsConfig}, loads it from a {@link CorsSnapshot} if one is set, or takes
+ * the build-time {@link CorsImage} policy, optionally warms it up with a {@link CorsWarmup},
+ * and registers a {@link CorsTask} to the application.
  */
 public final class CorsApplicationConfigurer implements Runnable1<WebApplication> {
     private final CorsConfigBuilder builder;
     private final boolean configure;
     private HttpMethodBuffer buffer;
     private Iterable<HttpMethod> allMethods;
+    private CorsMetrics metrics;
+    private CorsLatency latency;
+    private Path snapshot;
+    private RouteMethods routeMethods;
+    private Duration warmup;
+    private boolean imagePolicy;
 
     /**
      * Creates a new configurer.
@@ -84,20 +97,159 @@ public final class CorsApplicationConfigurer implements Runnable1<WebApplication
         this.allMethods = allMethods;
     }
 
+    /**
+     * Returns the metrics receiving counting events from the registered {@link CorsTask}.
+     *
+     * @return the metrics, or {@code null} if metrics are disabled
+     */
+    public CorsMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics receiving counting events from the registered {@link CorsTask}.
+     *
+     * @param metrics the metrics to use, or {@code null} to disable metrics
+     */
+    public void setMetrics(CorsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the latency histograms the registered {@link CorsTask} records into.
+     *
+     * @return the latency histograms, or {@code null} if latency is not measured
+     */
+    public CorsLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * Sets the latency histograms the registered {@link CorsTask} records into.
+     *
+     * @param latency the latency histograms, or {@code null} to skip timing
+     */
+    public void setLatency(CorsLatency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the path of the {@link CorsSnapshot} the configuration is loaded from.
+     *
+     * @return the snapshot path, or {@code null} if the configuration is built
+     */
+    public Path getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Sets the path of a {@link CorsSnapshot} to load the configuration from
+     * instead of building it with the {@link CorsConfigurer}.
+     *
+     * @param snapshot the snapshot path, or {@code null} to build the configuration
+     */
+    public void setSnapshot(Path snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Returns the function resolving the methods of request paths, used to answer OPTIONS requests.
+     *
+     * @return the route methods, or {@code null} if OPTIONS requests are passed to the application
+     */
+    public RouteMethods getRouteMethods() {
+        return routeMethods;
+    }
+
+    /**
+     * Sets the function resolving the methods of request paths. If set, OPTIONS requests whose path
+     * matches a route are answered by an {@link OptionsResponder} without reaching the application.
+     *
+     * @param routeMethods the route methods, or {@code null} to pass OPTIONS requests to the application
+     */
+    public void setRouteMethods(RouteMethods routeMethods) {
+        this.routeMethods = routeMethods;
+    }
+
+    /**
+     * Returns the time budget of the {@link CorsWarmup} run before the {@link CorsTask} is registered.
+     *
+     * @return the warm-up budget, or {@code null} if the task is not warmed up
+     */
+    public Duration getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * Sets the time budget of the {@link CorsWarmup} run before the {@link CorsTask} is registered.
+     * The warm-up runs against a {@link CorsWarmup#twin(CorsEngine) twin} of the task engine,
+     * so synthetic requests are not reported to the metrics and latency histograms.
+     *
+     * @param warmup the warm-up budget, or {@code null} to skip the warm-up
+     */
+    public void setWarmup(Duration warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     * Checks whether the configuration is the build-time {@link CorsImage} policy.
+     *
+     * @return {@code true} if the image policy is applied, {@code false} otherwise
+     */
+    public boolean isImagePolicy() {
+        return imagePolicy;
+    }
+
+    /**
+     * Sets whether to apply the build-time {@link CorsImage} policy instead of building the configuration
+     * with the {@link CorsConfigurer} or loading the snapshot.
+     *
+     * @param imagePolicy {@code true} to apply the image policy
+     */
+    public void setImagePolicy(boolean imagePolicy) {
+        this.imagePolicy = imagePolicy;
+    }
+
     /**
      * Reads {@link CorsOptions} from the given {@link OptionSet} and applies them
      * to the internal {@link CorsConfigBuilder}.
      *
      * @param options the option set containing CORS configuration
+     * @throws UncheckedIOException if the allowed origins file cannot be read
      */
     public void configure(OptionSet options) {
         if (options.asKey(CorsOptions.ALLOW_CREDENTIALS)) {
             builder.allowCredentials(true);
         }
+        if (options.asKey(CorsOptions.IMAGE_POLICY)) {
+            imagePolicy = true;
+        }
+        var snapshot = options.get(CorsOptions.SNAPSHOT);
+        if (snapshot != null) {
+            this.snapshot = Path.of(snapshot);
+        }
+        var warmup = options.get(CorsOptions.WARMUP_BUDGET);
+        if (warmup != null) {
+            this.warmup = Duration.ofMillis(warmup);
+        }
+        var parallelism = options.get(CorsOptions.COMPILE_PARALLELISM);
+        if (parallelism != null) {
+            builder.parallelism(parallelism);
+        }
+        if (options.asKey(CorsOptions.LAZY_REGEXES)) {
+            builder.lazyRegexes(true);
+        }
+        if (options.asKey(CorsOptions.STABLE_HEADERS)) {
+            builder.stableHeaders(true);
+        }
         var maxAge = options.get(CorsOptions.MAX_AGE);
         if (maxAge != null) {
             builder.maxAge(maxAge);
         }
+        var adaptiveMaxAge = options.get(CorsOptions.ADAPTIVE_MAX_AGE);
+        if (adaptiveMaxAge != null) {
+            builder.adaptiveMaxAge(adaptiveMaxAge);
+        }
         if (options.asKey(CorsOptions.ALLOW_ANY)) {
             builder.allowAny();
             return;
@@ -106,7 +258,11 @@ public final class CorsApplicationConfigurer implements Runnable1<WebApplication
             builder.allowedOrigins().allowAny();
         } else {
             var allowedOrigins = builder.allowedOrigins();
-            allowedOrigins.allow(options.get(CorsOptions.ALLOWED_ORIGINS));
+            allowedOrigins.ingest(options.get(CorsOptions.ALLOWED_ORIGINS));
+            var originsFile = options.get(CorsOptions.ALLOWED_ORIGINS_FILE);
+            if (originsFile != null) {
+                ingest(allowedOrigins, Path.of(originsFile));
+            }
             var regexes = options.get(CorsOptions.ORIGIN_REGEXES);
             if (regexes != null) {
                 for (var regex : regexes) {
@@ -134,14 +290,33 @@ public final class CorsApplicationConfigurer implements Runnable1<WebApplication
         }
     }
 
+    private static void ingest(OriginConfigurer configurer, Path file) {
+        try {
+            configurer.ingest(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read allowed origins from " + file, e);
+        }
+    }
+
+    private static CorsConfig load(Path snapshot) {
+        try {
+            return CorsSnapshot.read(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load cors snapshot " + snapshot, e);
+        }
+    }
+
     /**
      * Applies the configured CORS settings to the given {@link WebApplication}.
      * <p>
      * If {@code configure} is {@code true}, reads {@link CorsOptions} from the application
-     * options and applies them to the builder. Then builds a {@link CorsConfig} and registers
-     * a {@link CorsTask} for handling CORS requests.
+     * options and applies them to the builder. Then builds a {@link CorsConfig}, loads it
+     * from the snapshot if one is set or takes the {@link CorsImage} policy if enabled,
+     * warms it up if a warm-up budget is set, and registers a {@link CorsTask} for handling CORS requests.
      *
      * @param app the web application to configure
+     * @throws UncheckedIOException  if the snapshot cannot be loaded
+     * @throws IllegalStateException if the image policy is enabled but absent
      */
     @Override
     public void run(WebApplication app) {
@@ -153,12 +328,23 @@ public final class CorsApplicationConfigurer implements Runnable1<WebApplication
             }
             buffer = options.get(WebOptions.SERVER_GROUP, ServerOptions.HTTP_METHOD_BUFFER);
         }
-        var config = builder.build();
-        var task = new CorsTask(
+        CorsConfig config;
+        if (imagePolicy) {
+            config = CorsImage.getConfig();
+        } else {
+            config = snapshot == null ? builder.build() : load(snapshot);
+        }
+        var engine = new CorsEngine(
                 config,
                 buffer == null ? HttpMethod::of : buffer,
-                allMethods == null ? HttpMethod.all().values() : allMethods
+                allMethods == null ? HttpMethod.all().values() : allMethods,
+                metrics == null ? CorsMetrics.noop() : metrics,
+                latency,
+                routeMethods == null ? null : new OptionsResponder(routeMethods)
         );
-        app.configurer().add(task);
+        if (warmup != null) {
+            new CorsWarmup(CorsWarmup.twin(engine)).run(warmup);
+        }
+        app.configurer().add(new CorsTask(engine));
     }
 }
@@ -0,0 +1,168 @@
+package io.github.amayaframework.cors;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Evaluates batches of logged requests against the compiled policy of a {@link CorsEngine},
+ * for offline audits of proposed policies.
+ * <p>
+ * Requests are given as parallel arrays of their {@code Origin}, method, {@code Access-Control-Request-Method}
+ * and {@code Access-Control-Request-Headers} values, and their decision codes, as returned by
+ * {@link CorsEngine#decide(CharSequence, CharSequence, CharSequence, CharSequence)}, are written into an
+ * {@code int} array at the same indexes. Batches are split into chunks evaluated on a {@link ForkJoinPool};
+ * evaluating a request allocates nothing. Streams of requests are evaluated by filling the arrays
+ * chunk by chunk and reusing them.
+ */
+public final class CorsBatch {
+    /**
+     * Default number of requests evaluated by a single fork-join task.
+     */
+    public static final int DEFAULT_CHUNK = 16384;
+
+    private final CorsEngine engine;
+    private final ForkJoinPool pool;
+    private final int chunk;
+
+    /**
+     * Creates a new batch evaluator.
+     *
+     * @param engine the engine whose policy is evaluated
+     * @param pool   the pool evaluating the chunks
+     * @param chunk  the number of requests evaluated by a single task
+     */
+    public CorsBatch(CorsEngine engine, ForkJoinPool pool, int chunk) {
+        if (chunk < 1) {
+            throw new IllegalArgumentException("Invalid batch chunk: " + chunk);
+        }
+        this.engine = Objects.requireNonNull(engine);
+        this.pool = Objects.requireNonNull(pool);
+        this.chunk = chunk;
+    }
+
+    /**
+     * Creates a new batch evaluator using the common pool and {@link #DEFAULT_CHUNK} requests per task.
+     *
+     * @param engine the engine whose policy is evaluated
+     */
+    public CorsBatch(CorsEngine engine) {
+        this(engine, ForkJoinPool.commonPool(), DEFAULT_CHUNK);
+    }
+
+    private static void checkLength(String[] values, int count, String name) {
+        if (values != null && values.length < count) {
+            throw new IllegalArgumentException("Not enough " + name + ": " + values.length + " < " + count);
+        }
+    }
+
+    /**
+     * Evaluates the requests at indexes {@code [from, to)} on the calling thread.
+     *
+     * @param origins          the origins, {@code null} elements for requests without an origin
+     * @param methods          the request methods
+     * @param requestedMethods the requested methods, or {@code null} if no request has one
+     * @param requestedHeaders the requested headers, or {@code null} if no request has them
+     * @param codes            the array receiving the decision codes
+     * @param from             the index of the first request, inclusive
+     * @param to               the index of the last request, exclusive
+     */
+    public void evaluate(String[] origins,
+                         String[] methods,
+                         String[] requestedMethods,
+                         String[] requestedHeaders,
+                         int[] codes,
+                         int from,
+                         int to) {
+        Objects.checkFromToIndex(from, to, origins.length);
+        checkLength(methods, to, "methods");
+        checkLength(requestedMethods, to, "requested methods");
+        checkLength(requestedHeaders, to, "requested headers");
+        Objects.checkFromToIndex(from, to, codes.length);
+        var engine = this.engine;
+        for (var i = from; i < to; ++i) {
+            codes[i] = engine.decide(
+                    origins[i],
+                    methods[i],
+                    requestedMethods == null ? null : requestedMethods[i],
+                    requestedHeaders == null ? null : requestedHeaders[i]
+            );
+        }
+    }
+
+    /**
+     * Evaluates the first {@code count} requests in parallel.
+     *
+     * @param origins          the origins, {@code null} elements for requests without an origin
+     * @param methods          the request methods
+     * @param requestedMethods the requested methods, or {@code null} if no request has one
+     * @param requestedHeaders the requested headers, or {@code null} if no request has them
+     * @param codes            the array receiving the decision codes
+     * @param count            the number of requests
+     */
+    public void evaluate(String[] origins,
+                         String[] methods,
+                         String[] requestedMethods,
+                         String[] requestedHeaders,
+                         int[] codes,
+                         int count) {
+        if (count <= chunk) {
+            evaluate(origins, methods, requestedMethods, requestedHeaders, codes, 0, count);
+            return;
+        }
+        Objects.checkFromToIndex(0, count, origins.length);
+        checkLength(methods, count, "methods");
+        checkLength(requestedMethods, count, "requested methods");
+        checkLength(requestedHeaders, count, "requested headers");
+        Objects.checkFromToIndex(0, count, codes.length);
+        var chunk = this.chunk;
+        var chunks = (int) (((long) count + chunk - 1) / chunk);
+        Util.parallelFor(pool, chunks, index -> {
+            var from = index * chunk;
+            var to = (int) Math.min(count, (long) from + chunk);
+            evaluate(origins, methods, requestedMethods, requestedHeaders, codes, from, to);
+        });
+    }
+
+    /**
+     * Evaluates all given requests in parallel.
+     *
+     * @param origins          the origins, {@code null} elements for requests without an origin
+     * @param methods          the request methods
+     * @param requestedMethods the requested methods, or {@code null} if no request has one
+     * @param requestedHeaders the requested headers, or {@code null} if no request has them
+     * @return the decision codes
+     */
+    public int[] evaluate(String[] origins, String[] methods, String[] requestedMethods, String[] requestedHeaders) {
+        var ret = new int[origins.length];
+        evaluate(origins, methods, requestedMethods, requestedHeaders, ret, origins.length);
+        return ret;
+    }
+
+    /**
+     * Counts the decision codes of an evaluated batch by their outcome.
+     * <p>
+     * The returned array is indexed by the outcome of the code, that is {@link CorsEngine#NONE},
+     * {@link CorsEngine#ALLOWED}, {@link CorsEngine#REJECTED_ORIGIN}, {@link CorsEngine#REJECTED_METHOD}
+     * and {@link CorsEngine#REJECTED_HEADERS}, without the preflight flag.
+     *
+     * @param codes the decision codes
+     * @param count the number of codes to count
+     * @return the number of codes of each outcome
+     */
+    public static long[] tally(int[] codes, int count) {
+        var ret = new long[CorsEngine.REJECTED_HEADERS + 1];
+        for (var i = 0; i < count; ++i) {
+            ++ret[codes[i] & CorsEngine.OUTCOME];
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the engine whose policy is evaluated.
+     *
+     * @return the engine
+     */
+    public CorsEngine getEngine() {
+        return engine;
+    }
+}
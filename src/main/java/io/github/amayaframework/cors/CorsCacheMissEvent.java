@@ -0,0 +1,16 @@
+package io.github.amayaframework.cors;
+
+import jdk.jfr.*;
+
+@Name("amaya.cors.CacheMiss")
+@Label("CORS Origin Cache Miss")
+@Category({"Amaya", "CORS"})
+@Description("Origin not found in the regex verdict cache, duration covers regex evaluation")
+@StackTrace(false)
+final class CorsCacheMissEvent extends Event {
+    @Label("Origin")
+    String origin;
+
+    @Label("Matched")
+    boolean matched;
+}
@@ -16,25 +16,32 @@ import java.util.regex.Pattern;
 public final class CorsConfig {
     Set<String> allowedOrigins;
     List<Pattern> allowedRegexes;
+    OriginMatcher originMatcher;
     Set<HttpMethod> allowedMethods;
     Set<String> allowedHeaders;
     Set<String> exposedHeaders;
     boolean allowCredentials;
     int maxAge;
+    int adaptiveMaxAge;
+    boolean stableHeaders;
 
     /**
      * Creates a new {@code CorsConfig} with default values.
      * <p>
      * By default, no origins, methods, or headers are allowed, credentials
-     * are disabled, and {@code maxAge} is set to {@code -1}.
+     * are disabled, headers are rendered as usual, and {@code maxAge} and {@code adaptiveMaxAge}
+     * are set to {@code -1}.
      */
     public CorsConfig() {
         this.allowedOrigins = null;
         this.allowedRegexes = null;
+        this.originMatcher = null;
         this.allowedMethods = null;
         this.allowedHeaders = null;
         this.allowCredentials = false;
         this.maxAge = -1;
+        this.adaptiveMaxAge = -1;
+        this.stableHeaders = false;
     }
 
     /**
@@ -73,6 +80,26 @@ public final class CorsConfig {
         this.allowedRegexes = allowedRegexes;
     }
 
+    /**
+     * Returns the matcher consulted for origins that are not among the exact allowed origins.
+     *
+     * @return the origin matcher, or {@code null} if not configured
+     */
+    public OriginMatcher getOriginMatcher() {
+        return originMatcher;
+    }
+
+    /**
+     * Sets the matcher consulted for origins that are not among the exact allowed origins.
+     * <p>
+     * Once set, origins are restricted even if no exact origins are configured.
+     *
+     * @param originMatcher the origin matcher, or {@code null} to disable it
+     */
+    public void setOriginMatcher(OriginMatcher originMatcher) {
+        this.originMatcher = originMatcher;
+    }
+
     /**
      * Returns the allowed HTTP methods.
      *
@@ -145,6 +172,54 @@ public final class CorsConfig {
         this.maxAge = maxAge;
     }
 
+    /**
+     * Returns the ceiling (in seconds) of the adaptive max-age for caching preflight responses.
+     *
+     * @return the ceiling, or {@code -1} if the max-age is static
+     */
+    public int getAdaptiveMaxAge() {
+        return adaptiveMaxAge;
+    }
+
+    /**
+     * Sets the ceiling (in seconds) of the adaptive max-age for caching preflight responses.
+     * <p>
+     * If set, the advertised max-age starts at {@link #getMaxAge()}, or at the 5 seconds browsers assume
+     * without the header if the max-age is not set, and grows with each repeated preflight of an origin
+     * up to the ceiling. It falls back to the start after a preflight of an allowed origin is rejected for
+     * its method or headers, and for all origins after the {@link OriginMatcher} reports a new
+     * {@link OriginMatcher#generation()}.
+     *
+     * @param adaptiveMaxAge the number of seconds, or {@code -1} to keep the max-age static
+     */
+    public void setAdaptiveMaxAge(int adaptiveMaxAge) {
+        this.adaptiveMaxAge = adaptiveMaxAge;
+    }
+
+    /**
+     * Returns whether response headers are rendered for HTTP/2 and HTTP/3 header compression.
+     *
+     * @return {@code true} if stable headers are rendered, otherwise {@code false}
+     */
+    public boolean isStableHeaders() {
+        return stableHeaders;
+    }
+
+    /**
+     * Sets whether response headers are rendered for HTTP/2 and HTTP/3 header compression.
+     * <p>
+     * If set, header names are lowercase and written in the same alphabetical order on every response,
+     * configured method and header lists are sorted, the same {@code Vary} value is sent by preflight
+     * and simple responses, and echoed requested headers are normalized, so repeated headers hit the HPACK
+     * and QPACK dynamic tables. Values that are per-origin by definition, such as the echoed origin
+     * and the adaptive max-age, still vary.
+     *
+     * @param stableHeaders {@code true} to render stable headers, {@code false} to render them as usual
+     */
+    public void setStableHeaders(boolean stableHeaders) {
+        this.stableHeaders = stableHeaders;
+    }
+
     /**
      * Returns whether credentials are allowed in cross-origin requests.
      *
@@ -172,6 +247,8 @@ public final class CorsConfig {
                 ", exposedHeaders=" + exposedHeaders +
                 ", allowCredentials=" + allowCredentials +
                 ", maxAge=" + maxAge +
+                ", adaptiveMaxAge=" + adaptiveMaxAge +
+                ", stableHeaders=" + stableHeaders +
                 '}';
     }
 }
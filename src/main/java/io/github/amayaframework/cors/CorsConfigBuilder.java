@@ -3,6 +3,8 @@ package io.github.amayaframework.cors;
 import io.github.amayaframework.application.Resettable;
 import io.github.amayaframework.http.HttpMethod;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Builder for {@link CorsConfig} instances.
  * <p>
@@ -17,6 +19,10 @@ public final class CorsConfigBuilder implements CorsConfigurer {
     private StringAccessBuilder exposedBuilder;
     private boolean allowCredentials;
     private int maxAge;
+    private int adaptiveMaxAge;
+    private boolean stableHeaders;
+    private int parallelism;
+    private boolean lazyRegexes;
 
     /**
      * Creates a new {@code CorsConfigBuilder} initialized with default values.
@@ -24,6 +30,9 @@ public final class CorsConfigBuilder implements CorsConfigurer {
     public CorsConfigBuilder() {
         allowCredentials = CorsDefaults.ALLOW_CREDENTIALS;
         maxAge = CorsDefaults.MAX_AGE;
+        adaptiveMaxAge = CorsDefaults.ADAPTIVE_MAX_AGE;
+        stableHeaders = CorsDefaults.STABLE_HEADERS;
+        parallelism = 1;
     }
 
     private static void reset(Resettable resettable) {
@@ -36,7 +45,7 @@ public final class CorsConfigBuilder implements CorsConfigurer {
      * Resets this builder to its default state.
      * <p>
      * Clears all configured origins, methods, headers, exposed headers,
-     * credentials, and max age.
+     * credentials, max age and header rendering. Compilation settings are kept.
      */
     @Override
     public void reset() {
@@ -46,6 +55,59 @@ public final class CorsConfigBuilder implements CorsConfigurer {
         reset(exposedBuilder);
         allowCredentials = CorsDefaults.ALLOW_CREDENTIALS;
         maxAge = CorsDefaults.MAX_AGE;
+        adaptiveMaxAge = CorsDefaults.ADAPTIVE_MAX_AGE;
+        stableHeaders = CorsDefaults.STABLE_HEADERS;
+    }
+
+    /**
+     * Returns the number of threads used to compile the config.
+     *
+     * @return the compilation parallelism, {@code 1} for sequential compilation
+     */
+    public int parallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads used to normalize origins and compile origin regexes.
+     * <p>
+     * The built config does not depend on the parallelism: it contains the same values
+     * in the same iteration order as the sequentially built one.
+     *
+     * @param parallelism the number of threads, {@code 1} for sequential compilation
+     * @return this builder
+     */
+    public CorsConfigBuilder parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Returns whether origin regexes are compiled on their first use.
+     *
+     * @return {@code true} if origin regexes are compiled lazily
+     */
+    public boolean lazyRegexes() {
+        return lazyRegexes;
+    }
+
+    /**
+     * Sets whether origin regexes are compiled on their first use instead of during {@link #build()}.
+     * <p>
+     * Lazy compilation moves the cost of regexes out of startup, but an invalid regex is only reported
+     * when it is first used. An origin matched by an already compiled regex compiles nothing, while
+     * the first origin matched by none of them compiles all the remaining regexes on its request thread;
+     * later verdicts for that origin are served by the origin cache.
+     *
+     * @param lazy {@code true} to compile origin regexes lazily
+     * @return this builder
+     */
+    public CorsConfigBuilder lazyRegexes(boolean lazy) {
+        this.lazyRegexes = lazy;
+        return this;
     }
 
     @Override
@@ -117,14 +179,37 @@ public final class CorsConfigBuilder implements CorsConfigurer {
         return this;
     }
 
+    @Override
+    public int adaptiveMaxAge() {
+        return adaptiveMaxAge;
+    }
+
+    @Override
+    public CorsConfigBuilder adaptiveMaxAge(int ceiling) {
+        adaptiveMaxAge = ceiling;
+        return this;
+    }
+
+    @Override
+    public boolean stableHeaders() {
+        return stableHeaders;
+    }
+
+    @Override
+    public CorsConfigBuilder stableHeaders(boolean stable) {
+        stableHeaders = stable;
+        return this;
+    }
+
     // Private helper methods build individual parts of the config
 
-    private void buildOrigins(CorsConfig config) {
+    private void buildOrigins(CorsConfig config, ForkJoinPool pool) {
         if (originsBuilder == null) {
             return;
         }
-        config.setAllowedOrigins(originsBuilder.buildStrict());
-        config.setAllowedRegexes(originsBuilder.buildRegexes());
+        config.setAllowedOrigins(originsBuilder.buildStrict(pool));
+        config.setAllowedRegexes(originsBuilder.buildRegexes(pool, lazyRegexes));
+        config.setOriginMatcher(originsBuilder.buildMatcher());
     }
 
     private void buildMethods(CorsConfig config) {
@@ -156,16 +241,22 @@ public final class CorsConfigBuilder implements CorsConfigurer {
      * @return a fully constructed {@link CorsConfig} instance
      */
     public CorsConfig build() {
+        var pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
         try {
             var ret = new CorsConfig();
-            buildOrigins(ret);
+            buildOrigins(ret, pool);
             buildMethods(ret);
             buildHeaders(ret);
             buildExposed(ret);
             ret.setAllowCredentials(allowCredentials);
             ret.setMaxAge(maxAge);
+            ret.setAdaptiveMaxAge(adaptiveMaxAge);
+            ret.setStableHeaders(stableHeaders);
             return ret;
         } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
             reset();
         }
     }
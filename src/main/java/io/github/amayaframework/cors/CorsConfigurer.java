@@ -75,4 +75,62 @@ public interface CorsConfigurer extends Resettable {
      * @return this configurer for chaining
      */
     CorsConfigurer maxAge(int seconds);
+
+    /**
+     * Returns the configured ceiling of the adaptive max-age for preflight caching.
+     * <p>
+     * The default implementation supports only a static max-age and returns {@code -1}.
+     *
+     * @return the ceiling in seconds, or {@code -1} if the max-age is static
+     */
+    default int adaptiveMaxAge() {
+        return -1;
+    }
+
+    /**
+     * Enables the adaptive max-age for preflight caching, raising the advertised max-age
+     * of origins that repeat preflights up to the given ceiling.
+     * <p>
+     * The default implementation supports only a static max-age and only accepts {@code -1}.
+     *
+     * @param ceiling the ceiling in seconds, or {@code -1} to keep the max-age static
+     * @return this configurer for chaining
+     * @throws UnsupportedOperationException if a ceiling is given and the configurer does not support it
+     * @see CorsConfig#setAdaptiveMaxAge(int)
+     */
+    default CorsConfigurer adaptiveMaxAge(int ceiling) {
+        if (ceiling >= 0) {
+            throw new UnsupportedOperationException("Adaptive max-age is not supported");
+        }
+        return this;
+    }
+
+    /**
+     * Returns whether response headers are rendered for HTTP/2 and HTTP/3 header compression.
+     * <p>
+     * The default implementation supports only the regular rendering and returns {@code false}.
+     *
+     * @return {@code true} if stable headers are rendered
+     */
+    default boolean stableHeaders() {
+        return false;
+    }
+
+    /**
+     * Sets whether response headers are rendered with lowercase names, in a canonical order
+     * and with values repeated byte for byte, so they compress well with HPACK and QPACK.
+     * <p>
+     * The default implementation supports only the regular rendering and only accepts {@code false}.
+     *
+     * @param stable {@code true} to render stable headers
+     * @return this configurer for chaining
+     * @throws UnsupportedOperationException if stable headers are requested and the configurer does not support them
+     * @see CorsConfig#setStableHeaders(boolean)
+     */
+    default CorsConfigurer stableHeaders(boolean stable) {
+        if (stable) {
+            throw new UnsupportedOperationException("Stable headers are not supported");
+        }
+        return this;
+    }
 }
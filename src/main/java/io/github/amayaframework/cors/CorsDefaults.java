@@ -43,4 +43,14 @@ public final class CorsDefaults {
      * Default max-age in seconds for preflight requests; {@code -1} means not set.
      */
     public static final int MAX_AGE = -1;
+
+    /**
+     * Default ceiling in seconds of the adaptive max-age; {@code -1} means the max-age is static.
+     */
+    public static final int ADAPTIVE_MAX_AGE = -1;
+
+    /**
+     * Default header rendering; {@code false} means headers are not rendered for header compression.
+     */
+    public static final boolean STABLE_HEADERS = false;
 }
@@ -0,0 +1,962 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.context.HttpRequest;
+import io.github.amayaframework.context.HttpResponse;
+import io.github.amayaframework.http.HttpCode;
+import io.github.amayaframework.http.HttpMethod;
+import io.github.amayaframework.server.HttpMethodBuffer;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Framework-agnostic core of the CORS handling, shared by {@link CorsTask}, {@link CorsFilter}
+ * and any other transport.
+ * <p>
+ * The engine takes the {@code Origin}, the request method, the {@code Access-Control-Request-Method}
+ * and the {@code Access-Control-Request-Headers} values as {@link CharSequence}s, writes the resulting
+ * headers to a {@link HeaderSink} and returns a primitive decision code. Deciding and rendering
+ * do not allocate: {@link String} inputs are used as is, other sequences are converted with
+ * {@link CharSequence#toString()} once per request. Answering a preflight request with
+ * {@code 204 No Content} is left to the caller, see {@link #isPreflight(int)}.
+ * <p>
+ * Decisions are reported to the {@link CorsMetrics}, recorded into the {@link CorsLatency}
+ * histograms and emitted as Java Flight Recorder events in the {@code Amaya/CORS} category.
+ * The policy can be customized by overriding {@link #checkOrigin(String)},
+ * {@link #renderOrigin(String)} and {@link #checkHeaders(CharSequence)}.
+ * <p>
+ * If {@link CorsConfig#isStableHeaders()} is set, headers are rendered for HTTP/2 and HTTP/3 header
+ * compression: lowercase names in alphabetical order, a single {@code Vary} value and normalized echoes.
+ */
+public class CorsEngine {
+    /**
+     * The request is not a CORS request, as it has no {@code Origin} header.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * The request is allowed and the CORS headers have been written.
+     */
+    public static final int ALLOWED = 1;
+
+    /**
+     * The request is rejected as its origin is not allowed.
+     */
+    public static final int REJECTED_ORIGIN = 2;
+
+    /**
+     * The preflight request is rejected as the requested method is unknown or not allowed.
+     */
+    public static final int REJECTED_METHOD = 3;
+
+    /**
+     * The preflight request is rejected as at least one of the requested headers is not allowed.
+     */
+    public static final int REJECTED_HEADERS = 4;
+
+    /**
+     * Flag set on the decision code of a preflight request, which must be answered
+     * by the caller without passing it further.
+     */
+    public static final int PREFLIGHT = 8;
+
+    /**
+     * Flag set on the decision code of a non-preflight OPTIONS request answered with the {@code Allow}
+     * header of its route, which must be answered by the caller without passing it further.
+     */
+    public static final int ANSWERED = 16;
+
+    private static final String OPTIONS = "OPTIONS";
+    private static final String ALLOW_CREDENTIALS = lower(CorsHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS);
+    private static final String ALLOW_HEADERS = lower(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS);
+    private static final String ALLOW_METHODS = lower(CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS);
+    private static final String ALLOW_ORIGIN = lower(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN);
+    private static final String EXPOSE_HEADERS = lower(CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS);
+    private static final String MAX_AGE = lower(CorsHeaders.ACCESS_CONTROL_MAX_AGE);
+    private static final String VARY = lower(ProxyHeaders.VARY);
+    private static final String ALLOW = lower(ProxyHeaders.ALLOW);
+    static final int OUTCOME = PREFLIGHT - 1;
+
+    /**
+     * CORS configuration defining allowed origins, methods, headers, and other options.
+     */
+    protected final CorsConfig config;
+
+    /**
+     * Buffer used to resolve {@link HttpMethod} from a string.
+     */
+    protected final HttpMethodBuffer buffer;
+
+    /**
+     * String representation of all supported HTTP methods.
+     */
+    protected final String allMethods;
+
+    /**
+     * String representation of explicitly allowed HTTP methods from {@link CorsConfig}.
+     */
+    protected final String methods;
+
+    /**
+     * String representation of explicitly allowed request headers from {@link CorsConfig}.
+     */
+    protected final String headers;
+
+    /**
+     * String representation of exposed response headers from {@link CorsConfig}.
+     */
+    protected final String exposed;
+
+    /**
+     * String representation of {@code Access-Control-Max-Age} header value,
+     * or {@code null} if not configured.
+     */
+    protected final String maxAge;
+
+    /**
+     * Metrics receiving counting events about processed requests.
+     */
+    protected final CorsMetrics metrics;
+
+    /**
+     * Latency histograms of processing stages, or {@code null} if latency is not measured.
+     */
+    protected final CorsLatency latency;
+
+    /**
+     * Responder answering OPTIONS requests with the methods of their routes,
+     * or {@code null} if OPTIONS requests are passed further.
+     */
+    protected final OptionsResponder responder;
+
+    /**
+     * Cache of regex verdicts for request origins.
+     */
+    final OriginCache cache;
+
+    /**
+     * Lookup table of allowed request headers, or {@code null} if any header is allowed.
+     */
+    final NameTable headerTable;
+
+    /**
+     * Adaptive max-age values, or {@code null} if the max-age is static.
+     */
+    final AdaptiveMaxAge adaptiveMaxAge;
+
+    /**
+     * Creates a new {@code CorsEngine} with the given configuration, instrumentation and OPTIONS responder.
+     *
+     * @param config     the CORS configuration
+     * @param buffer     the HTTP method buffer
+     * @param allMethods iterable of all available HTTP methods
+     * @param metrics    the metrics receiving counting events
+     * @param latency    the latency histograms to record into, or {@code null} to skip timing
+     * @param responder  the responder answering OPTIONS requests, or {@code null} to pass them further
+     */
+    public CorsEngine(CorsConfig config,
+                      HttpMethodBuffer buffer,
+                      Iterable<HttpMethod> allMethods,
+                      CorsMetrics metrics,
+                      CorsLatency latency,
+                      OptionsResponder responder) {
+        this.config = config;
+        this.buffer = buffer;
+        // Stable headers list values in one order on every instance
+        var sorted = config.stableHeaders;
+        this.methods = StringUtil.render(config.allowedMethods, sorted);
+        this.allMethods = StringUtil.render(allMethods, sorted);
+        this.headers = StringUtil.render(config.allowedHeaders, sorted);
+        this.exposed = StringUtil.render(config.exposedHeaders, sorted);
+        this.maxAge = config.maxAge < 0 ? null : Integer.toString(config.maxAge);
+        this.metrics = metrics;
+        this.latency = latency;
+        this.responder = responder;
+        this.cache = new OriginCache(OriginCache.DEFAULT_CAPACITY);
+        this.headerTable = config.allowedHeaders == null ? null : new NameTable(config.allowedHeaders);
+        this.adaptiveMaxAge = config.adaptiveMaxAge < 0
+                ? null
+                : new AdaptiveMaxAge(config.maxAge, config.adaptiveMaxAge);
+    }
+
+    /*
+     * Creates an engine sharing the configuration, rendered values, caches and instrumentation
+     * of the given engine, for subclasses delegating its hooks elsewhere.
+     */
+    CorsEngine(CorsEngine engine) {
+        this(engine, engine.metrics, engine.latency, engine.adaptiveMaxAge);
+    }
+
+    /*
+     * Creates an engine sharing the configuration, rendered values, verdict cache and header table
+     * of the given engine, with the given instrumentation and adaptive max-age values.
+     */
+    CorsEngine(CorsEngine engine, CorsMetrics metrics, CorsLatency latency, AdaptiveMaxAge adaptiveMaxAge) {
+        this.config = engine.config;
+        this.buffer = engine.buffer;
+        this.methods = engine.methods;
+        this.allMethods = engine.allMethods;
+        this.headers = engine.headers;
+        this.exposed = engine.exposed;
+        this.maxAge = engine.maxAge;
+        this.metrics = metrics;
+        this.latency = latency;
+        this.responder = engine.responder;
+        this.cache = engine.cache;
+        this.headerTable = engine.headerTable;
+        this.adaptiveMaxAge = adaptiveMaxAge;
+    }
+
+    private static String lower(String name) {
+        return name.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Creates a new {@code CorsEngine} with the given configuration and instrumentation.
+     *
+     * @param config     the CORS configuration
+     * @param buffer     the HTTP method buffer
+     * @param allMethods iterable of all available HTTP methods
+     * @param metrics    the metrics receiving counting events
+     * @param latency    the latency histograms to record into, or {@code null} to skip timing
+     */
+    public CorsEngine(CorsConfig config,
+                      HttpMethodBuffer buffer,
+                      Iterable<HttpMethod> allMethods,
+                      CorsMetrics metrics,
+                      CorsLatency latency) {
+        this(config, buffer, allMethods, metrics, latency, null);
+    }
+
+    /**
+     * Creates a new {@code CorsEngine} with the given configuration and disabled metrics.
+     *
+     * @param config     the CORS configuration
+     * @param buffer     the HTTP method buffer
+     * @param allMethods iterable of all available HTTP methods
+     */
+    public CorsEngine(CorsConfig config, HttpMethodBuffer buffer, Iterable<HttpMethod> allMethods) {
+        this(config, buffer, allMethods, CorsMetrics.noop(), null);
+    }
+
+    /**
+     * Creates a new {@code CorsEngine} with the given configuration,
+     * using default {@link HttpMethod} parser and all methods.
+     *
+     * @param config the CORS configuration
+     */
+    public CorsEngine(CorsConfig config) {
+        this(config, HttpMethod::of, HttpMethod.all().values());
+    }
+
+    /**
+     * Checks whether the given decision code belongs to a preflight request.
+     *
+     * @param code the decision code
+     * @return {@code true} if the request was a preflight request, {@code false} otherwise
+     */
+    public static boolean isPreflight(int code) {
+        return (code & PREFLIGHT) != 0;
+    }
+
+    /**
+     * Checks whether the given decision code belongs to a request answered by the engine,
+     * either a preflight request or an OPTIONS request answered with the methods of its route.
+     *
+     * @param code the decision code
+     * @return {@code true} if the request must not be passed further, {@code false} otherwise
+     */
+    public static boolean isAnswered(int code) {
+        return (code & (PREFLIGHT | ANSWERED)) != 0;
+    }
+
+    /**
+     * Checks whether the given decision code allows the request.
+     *
+     * @param code the decision code
+     * @return {@code true} if the request was allowed, {@code false} otherwise
+     */
+    public static boolean isAllowed(int code) {
+        return (code & OUTCOME) == ALLOWED;
+    }
+
+    /**
+     * Returns the rejection reason of the given decision code.
+     *
+     * @param code the decision code
+     * @return the rejection reason, or {@code null} if the request was not rejected
+     */
+    public static CorsRejection rejection(int code) {
+        switch (code & OUTCOME) {
+            case REJECTED_ORIGIN:
+                return CorsRejection.ORIGIN;
+            case REJECTED_METHOD:
+                return CorsRejection.METHOD;
+            case REJECTED_HEADERS:
+                return CorsRejection.HEADERS;
+            default:
+                return null;
+        }
+    }
+
+    private static int code(CorsRejection rejection) {
+        if (rejection == null) {
+            return ALLOWED;
+        }
+        switch (rejection) {
+            case ORIGIN:
+                return REJECTED_ORIGIN;
+            case METHOD:
+                return REJECTED_METHOD;
+            default:
+                return REJECTED_HEADERS;
+        }
+    }
+
+    /**
+     * Returns the CORS configuration applied by this engine.
+     *
+     * @return the CORS configuration
+     */
+    public CorsConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the metrics receiving counting events from this engine.
+     *
+     * @return the metrics
+     */
+    public CorsMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the latency histograms this engine records into.
+     *
+     * @return the latency histograms, or {@code null} if latency is not measured
+     */
+    public CorsLatency getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the responder answering OPTIONS requests with the methods of their routes.
+     *
+     * @return the responder, or {@code null} if OPTIONS requests are passed further
+     */
+    public OptionsResponder getResponder() {
+        return responder;
+    }
+
+    /**
+     * Returns the rendered methods of the route of the given path.
+     *
+     * @param path the request path, may be {@code null}
+     * @return the rendered methods, or {@code null} if there is no responder, no path or no matching route
+     */
+    String allowOf(CharSequence path) {
+        return responder == null || path == null ? null : responder.allow(path.toString());
+    }
+
+    /**
+     * Checks whether the given origin is allowed by this configuration.
+     * <p>
+     * Exact allowed origins are checked first, then the {@link OriginMatcher}, then origin regexes.
+     *
+     * @param origin request origin
+     * @return {@code true} if allowed, {@code false} otherwise
+     */
+    protected boolean checkOrigin(String origin) {
+        var allowedOrigins = config.allowedOrigins;
+        if (allowedOrigins != null && allowedOrigins.contains(origin)) {
+            metrics.onOriginMatch(MatchStage.EXACT);
+            return true;
+        }
+        var originMatcher = config.originMatcher;
+        if (originMatcher != null && originMatcher.matches(origin)) {
+            metrics.onOriginMatch(MatchStage.MATCHER);
+            return true;
+        }
+        var allowedRegexes = config.allowedRegexes;
+        if (allowedRegexes != null && !allowedRegexes.isEmpty()) {
+            var cached = cache.get(origin);
+            if (cached != null) {
+                metrics.onOriginMatch(MatchStage.CACHE);
+                return cached;
+            }
+            var event = new CorsCacheMissEvent();
+            event.begin();
+            var matched = matchRegexes(allowedRegexes, origin);
+            cache.put(origin, matched);
+            if (event.shouldCommit()) {
+                event.origin = origin;
+                event.matched = matched;
+                event.commit();
+            }
+            metrics.onOriginMatch(MatchStage.REGEX);
+            return matched;
+        }
+        if (allowedOrigins == null && originMatcher == null) {
+            metrics.onOriginMatch(MatchStage.ANY);
+            return true;
+        }
+        metrics.onOriginMatch(MatchStage.EXACT);
+        return false;
+    }
+
+    /**
+     * Returns the origin matcher stage owning the decision for the given origin without side effects.
+     * Cached regex verdicts are reported as {@link MatchStage#REGEX}.
+     */
+    private MatchStage stageOf(String origin) {
+        var allowedOrigins = config.allowedOrigins;
+        if (allowedOrigins != null && allowedOrigins.contains(origin)) {
+            return MatchStage.EXACT;
+        }
+        var originMatcher = config.originMatcher;
+        if (originMatcher != null && originMatcher.matches(origin)) {
+            return MatchStage.MATCHER;
+        }
+        var allowedRegexes = config.allowedRegexes;
+        if (allowedRegexes != null && !allowedRegexes.isEmpty()) {
+            return MatchStage.REGEX;
+        }
+        return allowedOrigins == null && originMatcher == null ? MatchStage.ANY : MatchStage.EXACT;
+    }
+
+    private void commitRejected(String origin, Object method, boolean preflight) {
+        var event = new CorsOriginRejectedEvent();
+        if (event.isEnabled()) {
+            event.origin = origin;
+            event.method = String.valueOf(method);
+            event.stage = stageOf(origin).name();
+            event.preflight = preflight;
+            event.commit();
+        }
+    }
+
+    private static boolean matchRegexes(List<Pattern> regexes, String origin) {
+        if (regexes instanceof LazyPatternList) {
+            return ((LazyPatternList) regexes).matches(origin);
+        }
+        for (var pattern : regexes) {
+            if (pattern.matcher(origin).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renders the origin value to be sent in the response.
+     * <p>
+     * Returns {@code *} if no restrictions are set (allowed origins, origin matcher and regex rules
+     * are all {@code null}). Otherwise returns the canonical instance of the origin.
+     *
+     * @param origin request origin
+     * @return rendered origin string
+     */
+    protected String renderOrigin(String origin) {
+        if (config.allowedOrigins == null && config.originMatcher == null && config.allowedRegexes == null) {
+            return "*";
+        }
+        return canonicalOrigin(origin);
+    }
+
+    /**
+     * Returns the allowlist instance of an exact allowed origin, held by configs built with {@link CorsConfigBuilder}
+     * or read from snapshots, or the {@link OriginMatcher#canonical(String)} instance, so responses do not retain
+     * the request string. Other origins are returned as sent.
+     */
+    private String canonicalOrigin(String origin) {
+        var allowedOrigins = config.allowedOrigins;
+        if (allowedOrigins instanceof OriginSet) {
+            var ret = ((OriginSet) allowedOrigins).canonical(origin);
+            if (ret != null) {
+                return ret;
+            }
+        }
+        var originMatcher = config.originMatcher;
+        return originMatcher == null ? origin : originMatcher.canonical(origin);
+    }
+
+    /**
+     * Checks whether this configuration allows the requested headers.
+     *
+     * @param headers comma-separated list of request headers
+     * @return {@code true} if all headers are allowed, {@code false} otherwise
+     */
+    protected boolean checkHeaders(CharSequence headers) {
+        if (config.allowedHeaders == null) {
+            return true;
+        }
+        var table = headerTable == null ? new NameTable(config.allowedHeaders) : headerTable;
+        var length = headers.length();
+        var start = 0;
+        for (var i = 0; i < length; ++i) {
+            if (headers.charAt(i) != ',') {
+                continue;
+            }
+            if (!table.contains(headers, start, i)) {
+                return false;
+            }
+            start = i + 1;
+        }
+        return table.contains(headers, start, length);
+    }
+
+    /**
+     * Processes a request, dispatching it as a preflight request if its method is {@code OPTIONS}
+     * and it has an {@code Access-Control-Request-Method} header, and as a simple request otherwise.
+     * <p>
+     * If the engine has an {@link OptionsResponder}, other OPTIONS requests whose path matches a route
+     * are answered with the {@code Allow} header, with or without an {@code Origin} header,
+     * and their decision code is flagged with {@link #ANSWERED}.
+     *
+     * @param origin           the {@code Origin} header value, or {@code null} if absent
+     * @param method           the request method
+     * @param path             the request path, or {@code null} if OPTIONS requests are not answered
+     * @param requestedMethod  the {@code Access-Control-Request-Method} header value, or {@code null} if absent
+     * @param requestedHeaders the {@code Access-Control-Request-Headers} header value, or {@code null} if absent
+     * @param sink             the sink the CORS headers are written to
+     * @param target           the response passed to the sink
+     * @param <T>              the type of the response
+     * @return the decision code, {@link #NONE} if the request is not a CORS request
+     */
+    public <T> int process(CharSequence origin,
+                           CharSequence method,
+                           CharSequence path,
+                           CharSequence requestedMethod,
+                           CharSequence requestedHeaders,
+                           HeaderSink<T> sink,
+                           T target) {
+        var recorder = latency == null ? null : latency.begin();
+        // The recorder is finished even if a sink throws, so later requests of the thread are not laps of this one
+        try {
+            var options = OPTIONS.contentEquals(method);
+            // Try to find Origin
+            if (origin == null) {
+                return options ? answer(path, NONE, sink, target) : NONE;
+            }
+            var preflight = options && requestedMethod != null;
+            if (recorder != null) {
+                recorder.lap(CorsStage.EXTRACT);
+            }
+            if (preflight) {
+                var from = origin.toString();
+                var to = requestedMethod.toString();
+                return handlePreflight(from, to, requestedHeaders, allowOf(path), sink, target);
+            }
+            var ret = handlePlain(origin.toString(), method, sink, target);
+            return options ? answer(path, ret, sink, target) : ret;
+        } finally {
+            if (recorder != null) {
+                recorder.finish();
+            }
+        }
+    }
+
+    /**
+     * Processes a request without answering OPTIONS requests with the methods of their routes.
+     *
+     * @param origin           the {@code Origin} header value, or {@code null} if absent
+     * @param method           the request method
+     * @param requestedMethod  the {@code Access-Control-Request-Method} header value, or {@code null} if absent
+     * @param requestedHeaders the {@code Access-Control-Request-Headers} header value, or {@code null} if absent
+     * @param sink             the sink the CORS headers are written to
+     * @param target           the response passed to the sink
+     * @param <T>              the type of the response
+     * @return the decision code, {@link #NONE} if the request is not a CORS request
+     * @see #process(CharSequence, CharSequence, CharSequence, CharSequence, CharSequence, HeaderSink, Object)
+     */
+    public <T> int process(CharSequence origin,
+                           CharSequence method,
+                           CharSequence requestedMethod,
+                           CharSequence requestedHeaders,
+                           HeaderSink<T> sink,
+                           T target) {
+        return process(origin, method, null, requestedMethod, requestedHeaders, sink, target);
+    }
+
+    /**
+     * Processes an Amaya request like {@link #process(CharSequence, CharSequence, CharSequence, CharSequence,
+     * CharSequence, HeaderSink, Object)}, writing the CORS headers to the response and answering preflight
+     * and OPTIONS requests with {@code 204 No Content}. Shared by the Amaya tasks, which pass the request
+     * further unless the returned code is answered.
+     */
+    int apply(HttpRequest req, HttpResponse res) {
+        var recorder = latency == null ? null : latency.begin();
+        int ret;
+        try {
+            var method = req.method();
+            var options = HttpMethod.OPTIONS.equals(method);
+            // Try to find Origin
+            var origin = req.header(CorsHeaders.ORIGIN);
+            if (origin == null) {
+                ret = options ? applyOptions(req, res, NONE) : NONE;
+            } else {
+                var requestedMethod = req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD);
+                if (recorder != null) {
+                    recorder.lap(CorsStage.EXTRACT);
+                }
+                if (options && requestedMethod != null) {
+                    ret = applyPreflight(req, res, origin, requestedMethod);
+                } else {
+                    ret = handlePlain(origin, method, CorsTask.ResponseSink.INSTANCE, res);
+                    if (options) {
+                        ret = applyOptions(req, res, ret);
+                    }
+                }
+            }
+        } finally {
+            if (recorder != null) {
+                recorder.finish();
+            }
+        }
+        if (isAnswered(ret)) {
+            res.status(HttpCode.NO_CONTENT);
+        }
+        return ret;
+    }
+
+    /**
+     * Decides a preflight request of {@link #apply(HttpRequest, HttpResponse)}.
+     */
+    int applyPreflight(HttpRequest req, HttpResponse res, String origin, String method) {
+        var requestedHeaders = req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_HEADERS);
+        var routeMethods = responder == null ? null : allowOf(req.path());
+        return handlePreflight(origin, method, requestedHeaders, routeMethods, CorsTask.ResponseSink.INSTANCE, res);
+    }
+
+    /**
+     * Answers a non-preflight OPTIONS request of {@link #apply(HttpRequest, HttpResponse)}
+     * with the methods of its route, if any.
+     */
+    int applyOptions(HttpRequest req, HttpResponse res, int code) {
+        return responder == null ? code : answer(req.path(), code, CorsTask.ResponseSink.INSTANCE, res);
+    }
+
+    /**
+     * Decides a request without writing headers, answering OPTIONS requests or emitting events.
+     * <p>
+     * The origin hooks still report matcher stages to the engine metrics, so engines used
+     * for offline audits should keep the default no-op metrics.
+     *
+     * @param origin           the {@code Origin} header value, or {@code null} if absent
+     * @param method           the request method, or {@code null} if unknown
+     * @param requestedMethod  the {@code Access-Control-Request-Method} header value, or {@code null} if absent
+     * @param requestedHeaders the {@code Access-Control-Request-Headers} header value, or {@code null} if absent
+     * @return the decision code, {@link #NONE} if the request is not a CORS request
+     */
+    public int decide(CharSequence origin,
+                      CharSequence method,
+                      CharSequence requestedMethod,
+                      CharSequence requestedHeaders) {
+        if (origin == null) {
+            return NONE;
+        }
+        var from = origin.toString();
+        if (requestedMethod != null && method != null && OPTIONS.contentEquals(method)) {
+            return PREFLIGHT | code(checkPreflight(from, requestedMethod.toString(), requestedHeaders, null));
+        }
+        return checkOrigin(from) ? ALLOWED : REJECTED_ORIGIN;
+    }
+
+    /**
+     * Writes the {@code Allow} header of the route of the given path, if any, and flags the code as answered.
+     */
+    <T> int answer(CharSequence path, int code, HeaderSink<T> sink, T target) {
+        var allow = allowOf(path);
+        if (allow == null) {
+            return code;
+        }
+        sink.set(target, config.stableHeaders ? ALLOW : ProxyHeaders.ALLOW, allow);
+        return code | ANSWERED;
+    }
+
+    /**
+     * Decides a preflight request and writes the CORS headers if it is allowed.
+     *
+     * @param origin           the {@code Origin} header value
+     * @param requestedMethod  the {@code Access-Control-Request-Method} header value
+     * @param requestedHeaders the {@code Access-Control-Request-Headers} header value, or {@code null} if absent
+     * @param sink             the sink the CORS headers are written to
+     * @param target           the response passed to the sink
+     * @param <T>              the type of the response
+     * @return the decision code, always flagged with {@link #PREFLIGHT}
+     */
+    public <T> int preflight(CharSequence origin,
+                             CharSequence requestedMethod,
+                             CharSequence requestedHeaders,
+                             HeaderSink<T> sink,
+                             T target) {
+        return handlePreflight(origin.toString(), requestedMethod.toString(), requestedHeaders, null, sink, target);
+    }
+
+    /**
+     * Decides a preflight request, rendering the given route methods instead of all methods
+     * for credentialed requests when no methods are configured.
+     */
+    <T> int handlePreflight(String from,
+                            String method,
+                            CharSequence requestedHeaders,
+                            String routeMethods,
+                            HeaderSink<T> sink,
+                            T target) {
+        var event = new CorsPreflightEvent();
+        event.begin();
+        var recorder = latency == null ? null : latency.current();
+        var rejection = checkPreflight(from, method, requestedHeaders, recorder);
+        metrics.onPreflight(from, method, requestedHeaders == null ? null : requestedHeaders.toString());
+        if (rejection == null) {
+            metrics.onAllowed(true);
+            renderPreflight(from, requestedHeaders, routeMethods == null ? allMethods : routeMethods, sink, target);
+            if (recorder != null) {
+                recorder.lap(CorsStage.RENDER);
+            }
+        } else {
+            metrics.onRejected(true, rejection);
+            // Rejected origins must not lower the max-age of the allowed origins sharing their slot
+            if (adaptiveMaxAge != null && rejection != CorsRejection.ORIGIN) {
+                adaptiveMaxAge.reset(from);
+            }
+            if (rejection == CorsRejection.ORIGIN) {
+                commitRejected(from, method, true);
+            }
+        }
+        if (event.shouldCommit()) {
+            event.origin = from;
+            event.method = method;
+            event.stage = stageOf(from).name();
+            event.allowed = rejection == null;
+            event.rejection = rejection == null ? null : rejection.name();
+            event.commit();
+        }
+        return PREFLIGHT | code(rejection);
+    }
+
+    private CorsRejection checkPreflight(String origin,
+                                         String method,
+                                         CharSequence requestedHeaders,
+                                         CorsLatency.Recorder recorder) {
+        // Check for origin
+        var allowed = checkOrigin(origin);
+        if (recorder != null) {
+            recorder.lap(CorsStage.ORIGIN);
+        }
+        if (!allowed) {
+            return CorsRejection.ORIGIN;
+        }
+        // Check for method
+        var allowedMethods = config.allowedMethods;
+        var requestedMethod = buffer.get(method);
+        if (requestedMethod == null || (allowedMethods != null && !allowedMethods.contains(requestedMethod))) {
+            return CorsRejection.METHOD;
+        }
+        // Check for allowed headers
+        allowed = requestedHeaders == null || checkHeaders(requestedHeaders);
+        if (recorder != null) {
+            recorder.lap(CorsStage.HEADERS);
+        }
+        return allowed ? null : CorsRejection.HEADERS;
+    }
+
+    /**
+     * Writes the CORS headers of an allowed preflight request without checking it.
+     *
+     * @param origin           the {@code Origin} header value
+     * @param requestedHeaders the {@code Access-Control-Request-Headers} header value, or {@code null} if absent
+     * @param sink             the sink the CORS headers are written to
+     * @param target           the response passed to the sink
+     * @param <T>              the type of the response
+     */
+    public <T> void renderPreflight(CharSequence origin,
+                                    CharSequence requestedHeaders,
+                                    HeaderSink<T> sink,
+                                    T target) {
+        renderPreflight(origin, requestedHeaders, allMethods, sink, target);
+    }
+
+    private <T> void renderPreflight(CharSequence origin,
+                                     CharSequence requestedHeaders,
+                                     String anyMethods,
+                                     HeaderSink<T> sink,
+                                     T target) {
+        // Render max-age
+        var age = adaptiveMaxAge == null ? maxAge : nextMaxAge(origin.toString());
+        if (config.stableHeaders) {
+            renderStablePreflight(origin, requestedHeaders, anyMethods, age, sink, target);
+            return;
+        }
+        if (age != null) {
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_MAX_AGE, age);
+        }
+        // Split logic: with and without credentials
+        if (config.allowCredentials) {
+            // Render credentials
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+            // Render origin
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, canonicalOrigin(origin.toString()));
+            // Render methods
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS, methods == null ? anyMethods : methods);
+            // Render headers
+            if (headers == null) {
+                if (requestedHeaders != null) {
+                    sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, requestedHeaders.toString());
+                }
+            } else {
+                sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, headers);
+            }
+            // Set vary for creds
+            sink.set(target, ProxyHeaders.VARY, ProxyHeaders.CREDENTIALS_PREFLIGHT_VALUE);
+        } else {
+            // Render origin
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, renderOrigin(origin.toString()));
+            // Render methods
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS, methods == null ? "*" : methods);
+            // Render headers
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, headers == null ? "*" : headers);
+            // Set basic Vary
+            sink.set(target, ProxyHeaders.VARY, ProxyHeaders.ORIGIN_VALUE);
+        }
+    }
+
+    /**
+     * Writes the preflight headers with lowercase names in alphabetical order, the same {@code Vary}
+     * value as simple responses, and echoed requested headers normalized, so they compress well.
+     */
+    private <T> void renderStablePreflight(CharSequence origin,
+                                           CharSequence requestedHeaders,
+                                           String anyMethods,
+                                           String age,
+                                           HeaderSink<T> sink,
+                                           T target) {
+        var credentials = config.allowCredentials;
+        if (credentials) {
+            sink.set(target, ALLOW_CREDENTIALS, "true");
+        }
+        // Wildcards are not allowed with credentials
+        if (headers != null) {
+            sink.set(target, ALLOW_HEADERS, headers);
+        } else if (!credentials) {
+            sink.set(target, ALLOW_HEADERS, "*");
+        } else if (requestedHeaders != null) {
+            sink.set(target, ALLOW_HEADERS, StringUtil.normalizeList(requestedHeaders));
+        }
+        sink.set(target, ALLOW_METHODS, methods != null ? methods : credentials ? anyMethods : "*");
+        var from = origin.toString();
+        sink.set(target, ALLOW_ORIGIN, credentials ? canonicalOrigin(from) : renderOrigin(from));
+        if (age != null) {
+            sink.set(target, MAX_AGE, age);
+        }
+        sink.set(target, VARY, credentials ? ProxyHeaders.CREDENTIALS_PREFLIGHT_VALUE : ProxyHeaders.ORIGIN_VALUE);
+    }
+
+    private String nextMaxAge(String origin) {
+        var originMatcher = config.originMatcher;
+        return adaptiveMaxAge.next(origin, originMatcher == null ? 0 : originMatcher.generation());
+    }
+
+    /**
+     * Decides a simple (non-preflight) request and writes the CORS headers if it is allowed.
+     *
+     * @param origin the {@code Origin} header value
+     * @param method the request method, only reported to Java Flight Recorder events
+     * @param sink   the sink the CORS headers are written to
+     * @param target the response passed to the sink
+     * @param <T>    the type of the response
+     * @return the decision code
+     */
+    public <T> int plain(CharSequence origin, CharSequence method, HeaderSink<T> sink, T target) {
+        return handlePlain(origin.toString(), method, sink, target);
+    }
+
+    /**
+     * Decides a simple request, taking the method as an arbitrary object so adapters can pass
+     * their own method representation, which is only rendered when an event is committed.
+     */
+    <T> int handlePlain(String origin, Object method, HeaderSink<T> sink, T target) {
+        var event = new CorsRequestEvent();
+        event.begin();
+        var recorder = latency == null ? null : latency.current();
+        var allowed = checkOrigin(origin);
+        if (recorder != null) {
+            recorder.lap(CorsStage.ORIGIN);
+        }
+        if (allowed) {
+            metrics.onAllowed(false);
+            renderPlain(origin, sink, target);
+            if (recorder != null) {
+                recorder.lap(CorsStage.RENDER);
+            }
+        } else {
+            metrics.onRejected(false, CorsRejection.ORIGIN);
+            commitRejected(origin, method, false);
+        }
+        if (event.shouldCommit()) {
+            event.origin = origin;
+            event.method = String.valueOf(method);
+            event.stage = stageOf(origin).name();
+            event.allowed = allowed;
+            event.commit();
+        }
+        return allowed ? ALLOWED : REJECTED_ORIGIN;
+    }
+
+    /**
+     * Writes the CORS headers of an allowed simple (non-preflight) request without checking it.
+     * <p>
+     * Writes {@code Access-Control-Allow-Origin}, {@code Access-Control-Allow-Credentials},
+     * and {@code Access-Control-Expose-Headers} as configured.
+     *
+     * @param origin the {@code Origin} header value
+     * @param sink   the sink the CORS headers are written to
+     * @param target the response passed to the sink
+     * @param <T>    the type of the response
+     */
+    public <T> void renderPlain(CharSequence origin, HeaderSink<T> sink, T target) {
+        if (config.stableHeaders) {
+            renderStablePlain(origin, sink, target);
+            return;
+        }
+        sink.add(target, ProxyHeaders.VARY, ProxyHeaders.ORIGIN_VALUE);
+        // Split logic: with and without credentials
+        if (config.allowCredentials) {
+            // Render credentials
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+            // Render origin
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, canonicalOrigin(origin.toString()));
+            // Render exposed headers
+            if (exposed != null) {
+                sink.set(target, CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, exposed);
+            }
+        } else {
+            // Render origin
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, renderOrigin(origin.toString()));
+            // Render exposed headers
+            sink.set(target, CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, exposed == null ? "*" : exposed);
+        }
+    }
+
+    /**
+     * Writes the simple response headers with lowercase names in alphabetical order
+     * and the same {@code Vary} value as preflight responses.
+     */
+    private <T> void renderStablePlain(CharSequence origin, HeaderSink<T> sink, T target) {
+        var credentials = config.allowCredentials;
+        var from = origin.toString();
+        if (credentials) {
+            sink.set(target, ALLOW_CREDENTIALS, "true");
+            sink.set(target, ALLOW_ORIGIN, canonicalOrigin(from));
+            if (exposed != null) {
+                sink.set(target, EXPOSE_HEADERS, exposed);
+            }
+        } else {
+            sink.set(target, ALLOW_ORIGIN, renderOrigin(from));
+            sink.set(target, EXPOSE_HEADERS, exposed == null ? "*" : exposed);
+        }
+        sink.add(target, VARY, credentials ? ProxyHeaders.CREDENTIALS_PREFLIGHT_VALUE : ProxyHeaders.ORIGIN_VALUE);
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.amayaframework.cors;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A Jakarta Servlet {@link Filter} applying the same compiled CORS policy as {@link CorsTask}.
+ * <p>
+ * The filter is a thin adapter over a {@link CorsEngine}, which may be shared with a {@link CorsTask}:
+ * its origin tables and caches, its header lookup table, its pre-rendered header values and its metrics.
+ * Headers are written directly to the {@link HttpServletResponse} without wrapping the request
+ * or the response.
+ * Preflight requests are answered by the filter and do not reach the filter chain. If the engine has
+ * an {@link OptionsResponder}, other OPTIONS requests are answered as well, with the route resolved
+ * from {@link HttpServletRequest#getRequestURI()}.
+ * <p>
+ * Only {@link DispatcherType#REQUEST} dispatches are processed. The response of an async, forward,
+ * include or error dispatch already carries the headers written by the initial dispatch,
+ * so the filter may safely be mapped with {@code asyncSupported} and any dispatcher types.
+ */
+public class CorsFilter implements Filter {
+
+    /**
+     * The engine whose compiled policy is applied.
+     */
+    protected final CorsEngine engine;
+
+    /**
+     * Creates a new {@code CorsFilter} applying the policy of the given engine.
+     *
+     * @param engine the engine whose compiled policy is applied
+     */
+    public CorsFilter(CorsEngine engine) {
+        this.engine = Objects.requireNonNull(engine);
+    }
+
+    /**
+     * Creates a new {@code CorsFilter} applying the policy of the given task.
+     *
+     * @param task the task whose compiled policy is applied
+     */
+    public CorsFilter(CorsTask task) {
+        this(task.getEngine());
+    }
+
+    /**
+     * Creates a new {@code CorsFilter} for the given configuration,
+     * using default {@link io.github.amayaframework.http.HttpMethod} parser and all methods.
+     *
+     * @param config the CORS configuration
+     */
+    public CorsFilter(CorsConfig config) {
+        this(new CorsEngine(config));
+    }
+
+    /**
+     * Applies the CORS policy to the request and continues the chain unless it was a preflight request.
+     *
+     * @param request  the servlet request
+     * @param response the servlet response
+     * @param chain    the filter chain
+     * @throws IOException      if the chain fails with an I/O error
+     * @throws ServletException if the chain fails
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (request.getDispatcherType() != DispatcherType.REQUEST
+                || !(request instanceof HttpServletRequest)
+                || !(response instanceof HttpServletResponse)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        var req = (HttpServletRequest) request;
+        var res = (HttpServletResponse) response;
+        var requestedMethod = req.getHeader(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD);
+        var requestedHeaders = requestedMethod == null
+                ? null
+                : req.getHeader(CorsHeaders.ACCESS_CONTROL_REQUEST_HEADERS);
+        var code = engine.process(
+                req.getHeader(CorsHeaders.ORIGIN),
+                req.getMethod(),
+                engine.responder == null ? null : req.getRequestURI(),
+                requestedMethod,
+                requestedHeaders,
+                ResponseSink.INSTANCE,
+                res
+        );
+        // Answer preflight and OPTIONS requests
+        if (CorsEngine.isAnswered(code)) {
+            res.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    private static final class ResponseSink implements HeaderSink<HttpServletResponse> {
+        private static final ResponseSink INSTANCE = new ResponseSink();
+
+        @Override
+        public void set(HttpServletResponse target, String name, String value) {
+            target.setHeader(name, value);
+        }
+
+        @Override
+        public void add(HttpServletResponse target, String name, String value) {
+            target.addHeader(name, value);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.amayaframework.cors;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Holds a CORS policy compiled when this class is initialized, which for GraalVM native images
+ * happens during the image build, so the compiled config, including its origin regex automata,
+ * is stored in the image heap and nothing is parsed or compiled at startup.
+ * <p>
+ * The policy is a {@link CorsSnapshot} read from the file named by the {@value #POLICY_PROPERTY}
+ * system property or, if it is not set, from the {@value #POLICY_RESOURCE} class path resource.
+ * The native-image configuration shipped with this module initializes the policy at build time,
+ * so the property must be passed to the image builder, for example
+ * {@code native-image -Damaya.cors.image.policy=cors.snapshot ...}. On the JVM the policy is loaded
+ * on first use and gives the same decisions.
+ * <p>
+ * The shipped configuration only covers the classes of this module. Classes of other modules held by
+ * the policy, such as {@link io.github.amayaframework.http.HttpMethod}, are initialized as their own
+ * modules or the application configure them.
+ */
+public final class CorsImage {
+    /**
+     * System property naming the snapshot file of the build-time policy.
+     */
+    public static final String POLICY_PROPERTY = "amaya.cors.image.policy";
+
+    /**
+     * Class path resource of the build-time policy, used if {@link #POLICY_PROPERTY} is not set.
+     */
+    public static final String POLICY_RESOURCE = "META-INF/amaya-cors/policy.snapshot";
+
+    private CorsImage() {
+    }
+
+    /**
+     * Loads the policy from the given snapshot file or, if it is {@code null}, from the {@value #POLICY_RESOURCE}
+     * resource of the given class loader, the way the build-time policy is loaded.
+     *
+     * @param path   the snapshot file, may be {@code null}
+     * @param loader the class loader holding the resource, may be {@code null}
+     * @return the loaded config, or {@code null} if no file is given and the resource is missing
+     */
+    static CorsConfig load(String path, ClassLoader loader) {
+        try {
+            if (path != null) {
+                return CorsSnapshot.read(Path.of(path));
+            }
+            try (var stream = loader == null ? null : loader.getResourceAsStream(POLICY_RESOURCE)) {
+                return stream == null ? null : CorsSnapshot.read(stream.readAllBytes());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load cors image policy", e);
+        }
+    }
+
+    private static void checkPresent() {
+        if (Policy.CONFIG == null) {
+            throw new IllegalStateException(
+                    "No cors image policy, set " + POLICY_PROPERTY + " or provide " + POLICY_RESOURCE
+            );
+        }
+    }
+
+    /**
+     * Checks whether a build-time policy was found.
+     *
+     * @return {@code true} if the policy is present, {@code false} otherwise
+     */
+    public static boolean isPresent() {
+        return Policy.CONFIG != null;
+    }
+
+    /**
+     * Returns the build-time policy.
+     *
+     * @return the compiled config
+     * @throws IllegalStateException if no policy was found
+     */
+    public static CorsConfig getConfig() {
+        checkPresent();
+        return Policy.CONFIG;
+    }
+
+    /**
+     * Returns the engine of the build-time policy, using the default {@link io.github.amayaframework.http.HttpMethod}
+     * parser, all methods and disabled metrics.
+     *
+     * @return the engine
+     * @throws IllegalStateException if no policy was found
+     */
+    public static CorsEngine getEngine() {
+        checkPresent();
+        return Policy.ENGINE;
+    }
+
+    /**
+     * Creates a {@link CorsTask} applying the build-time policy with the {@link #getEngine()} engine.
+     *
+     * @return the task
+     * @throws IllegalStateException if no policy was found
+     */
+    public static CorsTask task() {
+        return new CorsTask(getEngine());
+    }
+
+    /*
+     * Holder of the build-time policy, loaded when it is first requested rather than when
+     * the package-private helpers of the image are used.
+     */
+    private static final class Policy {
+        static final CorsConfig CONFIG =
+                load(System.getProperty(POLICY_PROPERTY), CorsImage.class.getClassLoader());
+        static final CorsEngine ENGINE = CONFIG == null ? null : new CorsEngine(CONFIG);
+    }
+}
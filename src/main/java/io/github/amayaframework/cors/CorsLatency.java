@@ -0,0 +1,113 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Collects per-stage latency histograms of CORS request processing.
+ * <p>
+ * Threads record into a fixed number of striped sets of lock-free, log-bucketed histograms,
+ * picked by thread id and merged when a snapshot is taken, so the memory used does not grow with
+ * the number of threads, including short-lived pool and virtual threads. Only every n-th request
+ * of each thread is timed, so the cost of {@link System#nanoTime()} can be kept away from the cheap paths.
+ */
+public final class CorsLatency {
+    private static final CorsStage[] STAGES = CorsStage.values();
+
+    private final int interval;
+    private final LatencyHistogram[][] stripes;
+    private final ThreadLocal<Recorder> local;
+
+    /**
+     * Creates a new {@code CorsLatency} timing every n-th request of each thread.
+     *
+     * @param interval the sampling interval, {@code 1} to time every request
+     * @throws IllegalArgumentException if the interval is less than {@code 1}
+     */
+    public CorsLatency(int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Invalid sampling interval: " + interval);
+        }
+        this.interval = interval;
+        var count = 1;
+        while (count < 2 * Runtime.getRuntime().availableProcessors()) {
+            count <<= 1;
+        }
+        this.stripes = new LatencyHistogram[count][STAGES.length];
+        for (var stripe : stripes) {
+            for (var i = 0; i < stripe.length; ++i) {
+                stripe[i] = new LatencyHistogram();
+            }
+        }
+        this.local = ThreadLocal.withInitial(this::register);
+    }
+
+    private Recorder register() {
+        var id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return new Recorder(interval, stripes[(int) (id >>> 32) & (stripes.length - 1)]);
+    }
+
+    /**
+     * Returns the sampling interval.
+     *
+     * @return the sampling interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    Recorder begin() {
+        var ret = local.get();
+        if (--ret.countdown > 0) {
+            return null;
+        }
+        ret.countdown = interval;
+        ret.active = true;
+        ret.start = ret.mark = System.nanoTime();
+        return ret;
+    }
+
+    Recorder current() {
+        var ret = local.get();
+        return ret.active ? ret : null;
+    }
+
+    /**
+     * Merges the histograms of all threads and returns the distribution of the given stage.
+     *
+     * @param stage the processing stage
+     * @return the latency snapshot
+     */
+    public LatencySnapshot snapshot(CorsStage stage) {
+        var buckets = new long[LatencyHistogram.LENGTH];
+        for (var stripe : stripes) {
+            stripe[stage.ordinal()].addTo(buckets);
+        }
+        return new LatencySnapshot(buckets);
+    }
+
+    /*
+     * Per-thread sampling state, recording into the histograms of the thread's stripe.
+     * It holds no histograms of its own, so it is dropped with its thread.
+     */
+    static final class Recorder {
+        final LatencyHistogram[] histograms;
+        int countdown;
+        boolean active;
+        long start;
+        long mark;
+
+        Recorder(int countdown, LatencyHistogram[] histograms) {
+            this.histograms = histograms;
+            this.countdown = countdown;
+        }
+
+        void lap(CorsStage stage) {
+            var now = System.nanoTime();
+            histograms[stage.ordinal()].record(now - mark);
+            mark = now;
+        }
+
+        void finish() {
+            histograms[CorsStage.TOTAL.ordinal()].record(System.nanoTime() - start);
+            active = false;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Receives counting events produced by {@link CorsTask} while processing CORS requests.
+ * <p>
+ * Implementations must be thread-safe, as a single instance is shared by all request threads.
+ * Use {@link Cors#metrics()} to obtain a contention-friendly counting implementation
+ * and {@link #noop()} to disable metrics at zero cost.
+ */
+public interface CorsMetrics {
+
+    /**
+     * Returns a metrics implementation that ignores all events.
+     * <p>
+     * All its methods are empty, so calls to it are removed by the JIT compiler.
+     *
+     * @return the no-op {@link CorsMetrics} instance
+     */
+    static CorsMetrics noop() {
+        return NoopCorsMetrics.INSTANCE;
+    }
+
+    /**
+     * Records an allowed CORS request.
+     *
+     * @param preflight {@code true} if the request is a preflight request
+     */
+    void onAllowed(boolean preflight);
+
+    /**
+     * Records a rejected CORS request.
+     *
+     * @param preflight {@code true} if the request is a preflight request
+     * @param reason    the reason of the rejection
+     */
+    void onRejected(boolean preflight, CorsRejection reason);
+
+    /**
+     * Records the origin matcher stage that decided whether an origin is allowed.
+     *
+     * @param stage the deciding stage
+     */
+    void onOriginMatch(MatchStage stage);
+
+    /**
+     * Records the tuple of a preflight request, whether it is allowed or rejected.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param origin  the request origin
+     * @param method  the requested method
+     * @param headers the requested headers, or {@code null} if none were requested
+     */
+    default void onPreflight(String origin, String method, String headers) {
+    }
+
+    /**
+     * Takes a point-in-time snapshot of the collected counters.
+     * <p>
+     * The snapshot is not atomic: counters updated concurrently may or may not be included.
+     *
+     * @return the snapshot of the counters
+     */
+    CorsMetricsSnapshot snapshot();
+}
@@ -0,0 +1,114 @@
+package io.github.amayaframework.cors;
+
+/**
+ * An immutable point-in-time view of the counters collected by {@link CorsMetrics}.
+ */
+public final class CorsMetricsSnapshot {
+    private final long plainAllowed;
+    private final long plainRejected;
+    private final long preflightAllowed;
+    private final long preflightRejected;
+    private final long[] rejections;
+    private final long[] stages;
+
+    CorsMetricsSnapshot(long plainAllowed,
+                        long plainRejected,
+                        long preflightAllowed,
+                        long preflightRejected,
+                        long[] rejections,
+                        long[] stages) {
+        this.plainAllowed = plainAllowed;
+        this.plainRejected = plainRejected;
+        this.preflightAllowed = preflightAllowed;
+        this.preflightRejected = preflightRejected;
+        this.rejections = rejections;
+        this.stages = stages;
+    }
+
+    /**
+     * Returns the number of allowed plain (non-preflight) requests.
+     *
+     * @return the number of allowed plain requests
+     */
+    public long getPlainAllowed() {
+        return plainAllowed;
+    }
+
+    /**
+     * Returns the number of rejected plain (non-preflight) requests.
+     *
+     * @return the number of rejected plain requests
+     */
+    public long getPlainRejected() {
+        return plainRejected;
+    }
+
+    /**
+     * Returns the number of allowed preflight requests.
+     *
+     * @return the number of allowed preflight requests
+     */
+    public long getPreflightAllowed() {
+        return preflightAllowed;
+    }
+
+    /**
+     * Returns the number of rejected preflight requests.
+     *
+     * @return the number of rejected preflight requests
+     */
+    public long getPreflightRejected() {
+        return preflightRejected;
+    }
+
+    /**
+     * Returns the total number of plain requests.
+     *
+     * @return the number of plain requests
+     */
+    public long getPlain() {
+        return plainAllowed + plainRejected;
+    }
+
+    /**
+     * Returns the total number of preflight requests.
+     *
+     * @return the number of preflight requests
+     */
+    public long getPreflight() {
+        return preflightAllowed + preflightRejected;
+    }
+
+    /**
+     * Returns the number of requests rejected for the given reason.
+     *
+     * @param reason the rejection reason
+     * @return the number of rejected requests
+     */
+    public long getRejected(CorsRejection reason) {
+        return rejections[reason.ordinal()];
+    }
+
+    /**
+     * Returns the number of origin decisions made by the given matcher stage.
+     *
+     * @param stage the matcher stage
+     * @return the number of decisions
+     */
+    public long getMatched(MatchStage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        return "CorsMetricsSnapshot{" +
+                "plainAllowed=" + plainAllowed +
+                ", plainRejected=" + plainRejected +
+                ", preflightAllowed=" + preflightAllowed +
+                ", preflightRejected=" + preflightRejected +
+                ", rejectedByOrigin=" + getRejected(CorsRejection.ORIGIN) +
+                ", rejectedByMethod=" + getRejected(CorsRejection.METHOD) +
+                ", rejectedByHeaders=" + getRejected(CorsRejection.HEADERS) +
+                '}';
+    }
+}
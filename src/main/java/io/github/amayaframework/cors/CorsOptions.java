@@ -49,16 +49,46 @@ public final class CorsOptions {
      */
     public static final String ALLOW_CREDENTIALS = "allow_credentials";
 
+    /**
+     * Option to compile origin regexes on their first use instead of at startup.
+     */
+    public static final String LAZY_REGEXES = "lazy_regexes";
+
+    /**
+     * Option to render response headers for HTTP/2 and HTTP/3 header compression.
+     */
+    public static final String STABLE_HEADERS = "stable_headers";
+
+    /**
+     * Option to apply the policy compiled at native image build time, see {@link CorsImage}.
+     */
+    public static final String IMAGE_POLICY = "image_policy";
+
+    /**
+     * Option key for the number of threads used to compile the CORS configuration.
+     */
+    public static final Key<Integer> COMPILE_PARALLELISM = Key.of("compile_parallelism", Integer.class);
+
     /**
      * Option key for the maximum age (in seconds) of preflight cache.
      */
     public static final Key<Integer> MAX_AGE = Key.of("max_age", Integer.class);
 
+    /**
+     * Option key for the ceiling (in seconds) of the adaptive max-age of preflight cache.
+     */
+    public static final Key<Integer> ADAPTIVE_MAX_AGE = Key.of("adaptive_max_age", Integer.class);
+
     /**
      * Option key for explicitly allowed origins.
      */
     public static final Key<Iterable<String>> ALLOWED_ORIGINS = Key.of("allowed_origins", new JType<>(){});
 
+    /**
+     * Option key for the path of a UTF-8 file listing allowed origins, one per line.
+     */
+    public static final Key<String> ALLOWED_ORIGINS_FILE = Key.of("allowed_origins_file", String.class);
+
     /**
      * Option key for regex patterns defining allowed origins.
      */
@@ -78,4 +108,14 @@ public final class CorsOptions {
      * Option key for headers to be exposed in CORS responses.
      */
     public static final Key<Iterable<String>> EXPOSED_HEADERS = Key.of("exposed_headers", new JType<>(){});
+
+    /**
+     * Option key for the path of a {@link CorsSnapshot} file to load the configuration from.
+     */
+    public static final Key<String> SNAPSHOT = Key.of("snapshot", String.class);
+
+    /**
+     * Option key for the time budget (in milliseconds) of the {@link CorsWarmup} run at startup.
+     */
+    public static final Key<Integer> WARMUP_BUDGET = Key.of("warmup_budget", Integer.class);
 }
@@ -0,0 +1,24 @@
+package io.github.amayaframework.cors;
+
+import jdk.jfr.*;
+
+@Name("amaya.cors.OriginRejected")
+@Label("CORS Origin Rejected")
+@Category({"Amaya", "CORS"})
+@Description("Request origin rejected by the CORS policy")
+@StackTrace(false)
+final class CorsOriginRejectedEvent extends Event {
+    @Label("Origin")
+    String origin;
+
+    @Label("Method")
+    @Description("Request method, or requested method for preflight requests")
+    String method;
+
+    @Label("Decision Stage")
+    @Description("Origin matcher stage that rejected the origin")
+    String stage;
+
+    @Label("Preflight")
+    boolean preflight;
+}
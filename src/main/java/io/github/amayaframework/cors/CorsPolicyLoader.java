@@ -0,0 +1,23 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Loads the CORS configuration of a tenant, used by the {@link CorsPolicyRegistry}
+ * to compile tenant policies on demand.
+ * <p>
+ * Implementations must be thread-safe, as tenants missing from the registry are loaded
+ * from the request threads that need them.
+ */
+@FunctionalInterface
+public interface CorsPolicyLoader {
+
+    /**
+     * Returns the CORS configuration of the given tenant.
+     * <p>
+     * The returned configuration must not be changed afterward, as its compiled engine
+     * may be shared with other tenants having an identical configuration.
+     *
+     * @param tenant the tenant
+     * @return the configuration, or {@code null} if the tenant is unknown
+     */
+    CorsConfig load(String tenant);
+}
@@ -0,0 +1,334 @@
+package io.github.amayaframework.cors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Tenant-keyed registry of compiled CORS policies, for deployments with too many tenants
+ * to keep an engine for each of them in memory.
+ * <p>
+ * Policies are loaded with a {@link CorsPolicyLoader} and compiled the first time their tenant is requested.
+ * Tenants with identical configurations share one engine: configurations are keyed by the content of their
+ * {@link CorsSnapshot} and the identity of their {@link OriginMatcher}. The registry holds at most about
+ * {@code capacity} estimated retained bytes, counting each shared engine once; past that it evicts tenants
+ * not requested recently, and drops engines no remaining tenant refers to.
+ * <p>
+ * Lookups of registered tenants are a single {@link ConcurrentHashMap} read and take no lock.
+ * Recency is tracked with the CLOCK approximation of LRU: a lookup only sets a reference flag of the tenant,
+ * and eviction, which happens on misses under the registry lock, gives flagged tenants a second chance.
+ * <p>
+ * Tenants unknown to the loader are remembered as well, so a client sending made-up tenants
+ * does not call the loader on every request. Up to {@link #UNKNOWN_CAPACITY} of them are remembered
+ * and forgotten all at once past that; a tenant created after it was requested stays unknown
+ * until it is {@link #invalidate(String) invalidated} or the registry is {@link #clear() cleared}.
+ */
+public final class CorsPolicyRegistry {
+    // Estimated bytes of an engine with empty tables, including its rendered values and caches
+    static final long ENGINE_BYTES = 1024;
+    // Estimated bytes of a hash table entry besides its key
+    static final long ENTRY_BYTES = 64;
+    // Estimated bytes of a compiled pattern besides its source
+    static final long PATTERN_BYTES = 512;
+    // Estimated bytes of a string besides its characters
+    static final long STRING_BYTES = 40;
+
+    /**
+     * Maximum number of remembered tenants unknown to the loader.
+     */
+    public static final int UNKNOWN_CAPACITY = 4096;
+
+    private final CorsPolicyLoader loader;
+    private final Function<CorsConfig, CorsEngine> compiler;
+    private final long capacity;
+    private final ConcurrentHashMap<String, Entry> tenants;
+    private final Set<String> unknown;
+    // Guarded by this
+    private final HashMap<Content, Policy> policies;
+    private final ArrayList<Entry> clock;
+    private int hand;
+    private long weight;
+
+    /**
+     * Creates a new registry compiling the loaded configurations with the given compiler.
+     *
+     * @param loader   the loader of tenant configurations
+     * @param compiler the function compiling a configuration into an engine
+     * @param capacity the maximum estimated retained bytes of the registered policies
+     */
+    public CorsPolicyRegistry(CorsPolicyLoader loader, Function<CorsConfig, CorsEngine> compiler, long capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid registry capacity: " + capacity);
+        }
+        this.loader = Objects.requireNonNull(loader);
+        this.compiler = Objects.requireNonNull(compiler);
+        this.capacity = capacity;
+        this.tenants = new ConcurrentHashMap<>();
+        this.unknown = ConcurrentHashMap.newKeySet();
+        this.policies = new HashMap<>();
+        this.clock = new ArrayList<>();
+    }
+
+    /**
+     * Creates a new registry compiling the loaded configurations into engines with disabled metrics,
+     * using default {@link io.github.amayaframework.http.HttpMethod} parser and all methods.
+     *
+     * @param loader   the loader of tenant configurations
+     * @param capacity the maximum estimated retained bytes of the registered policies
+     */
+    public CorsPolicyRegistry(CorsPolicyLoader loader, long capacity) {
+        this(loader, CorsEngine::new, capacity);
+    }
+
+    private static int size(Collection<?> collection) {
+        return collection == null ? 0 : collection.size();
+    }
+
+    /**
+     * Estimates the bytes retained by the engine compiled from the given configuration,
+     * whose snapshot has the given size.
+     */
+    static long weigh(CorsConfig config, int content) {
+        // Strings are held by the config, by the rendered values and by the lookup tables
+        var ret = ENGINE_BYTES + 3L * content;
+        var entries = 2L * size(config.allowedOrigins)
+                + size(config.allowedMethods)
+                + size(config.allowedHeaders)
+                + size(config.exposedHeaders);
+        ret += entries * (ENTRY_BYTES + STRING_BYTES);
+        var regexes = size(config.allowedRegexes);
+        if (regexes != 0) {
+            ret += regexes * PATTERN_BYTES;
+            // The cache of regex verdicts can fill up with client-controlled origins
+            ret += OriginCache.DEFAULT_CAPACITY * (ENTRY_BYTES + STRING_BYTES);
+        }
+        if (config.adaptiveMaxAge >= 0) {
+            ret += 4L * AdaptiveMaxAge.DEFAULT_SLOTS;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the engine of the given tenant, loading and compiling its policy if it is not registered.
+     *
+     * @param tenant the tenant, may be {@code null}
+     * @return the engine, or {@code null} if the tenant is {@code null} or unknown to the loader
+     */
+    public CorsEngine get(String tenant) {
+        if (tenant == null) {
+            return null;
+        }
+        var entry = tenants.get(tenant);
+        if (entry == null) {
+            return unknown.contains(tenant) ? null : load(tenant);
+        }
+        // Benign race: the flag is only a recency hint, and is written only when it changes
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.policy.engine;
+    }
+
+    private CorsEngine load(String tenant) {
+        var config = loader.load(tenant);
+        if (config == null) {
+            // Forget all unknown tenants at once, a flood of them would evict any older one anyway
+            if (unknown.size() >= UNKNOWN_CAPACITY) {
+                unknown.clear();
+            }
+            unknown.add(tenant);
+            return null;
+        }
+        var content = new Content(CorsSnapshot.write(config), config.originMatcher);
+        Policy policy;
+        synchronized (this) {
+            policy = policies.get(content);
+        }
+        // Compile outside the lock, so misses of distinct policies do not wait for each other
+        var compiled = policy == null ? compiler.apply(config) : null;
+        return register(tenant, config, content, compiled);
+    }
+
+    private synchronized CorsEngine register(String tenant, CorsConfig config, Content content, CorsEngine compiled) {
+        var entry = tenants.get(tenant);
+        if (entry != null) {
+            entry.referenced = true;
+            return entry.policy.engine;
+        }
+        var policy = policies.get(content);
+        if (policy == null) {
+            // The shared policy may have been evicted since it was looked up
+            var engine = compiled == null ? compiler.apply(config) : compiled;
+            policy = new Policy(content, engine, weigh(config, content.bytes.length));
+            policies.put(content, policy);
+            weight += policy.weight;
+        }
+        entry = new Entry(tenant, policy);
+        ++policy.tenants;
+        entry.index = clock.size();
+        clock.add(entry);
+        tenants.put(tenant, entry);
+        weight += entry.weight;
+        evict();
+        return policy.engine;
+    }
+
+    private void evict() {
+        while (weight > capacity && !clock.isEmpty()) {
+            if (hand >= clock.size()) {
+                hand = 0;
+            }
+            var entry = clock.get(hand);
+            if (entry.referenced) {
+                entry.referenced = false;
+                ++hand;
+                continue;
+            }
+            remove(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        // Move the last entry into the freed slot, which keeps removal constant-time
+        var last = clock.remove(clock.size() - 1);
+        if (last != entry) {
+            last.index = entry.index;
+            clock.set(entry.index, last);
+        }
+        tenants.remove(entry.tenant, entry);
+        weight -= entry.weight;
+        var policy = entry.policy;
+        if (--policy.tenants == 0) {
+            policies.remove(policy.content);
+            weight -= policy.weight;
+        }
+    }
+
+    /**
+     * Removes the given tenant from the registry, so its policy is loaded again on its next request,
+     * even if the tenant was unknown to the loader.
+     *
+     * @param tenant the tenant
+     * @return {@code true} if the tenant was registered, {@code false} otherwise
+     */
+    public synchronized boolean invalidate(String tenant) {
+        unknown.remove(tenant);
+        var entry = tenants.get(tenant);
+        if (entry == null) {
+            return false;
+        }
+        remove(entry);
+        return true;
+    }
+
+    /**
+     * Removes all tenants from the registry.
+     */
+    public synchronized void clear() {
+        tenants.clear();
+        unknown.clear();
+        policies.clear();
+        clock.clear();
+        hand = 0;
+        weight = 0;
+    }
+
+    /**
+     * Returns the number of registered tenants.
+     *
+     * @return the tenant count
+     */
+    public int size() {
+        return tenants.size();
+    }
+
+    /**
+     * Returns the number of distinct compiled policies shared by the registered tenants.
+     *
+     * @return the policy count
+     */
+    public synchronized int policies() {
+        return policies.size();
+    }
+
+    /**
+     * Returns the estimated retained bytes of the registered tenants and their policies.
+     *
+     * @return the estimated weight
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    /**
+     * Returns the maximum estimated retained bytes of the registered policies.
+     *
+     * @return the capacity
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    private static final class Content {
+        final byte[] bytes;
+        final OriginMatcher matcher;
+        final int hash;
+
+        Content(byte[] bytes, OriginMatcher matcher) {
+            this.bytes = bytes;
+            this.matcher = matcher;
+            this.hash = Arrays.hashCode(bytes) * 31 + System.identityHashCode(matcher);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Content)) {
+                return false;
+            }
+            var content = (Content) object;
+            return hash == content.hash && matcher == content.matcher && Arrays.equals(bytes, content.bytes);
+        }
+    }
+
+    private static final class Policy {
+        final Content content;
+        final CorsEngine engine;
+        final long weight;
+        // Guarded by the registry
+        int tenants;
+
+        Policy(Content content, CorsEngine engine, long weight) {
+            this.content = content;
+            this.engine = engine;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Entry {
+        final String tenant;
+        final Policy policy;
+        final long weight;
+        volatile boolean referenced;
+        // Guarded by the registry
+        int index;
+
+        Entry(String tenant, Policy policy) {
+            this.tenant = tenant;
+            this.policy = policy;
+            this.weight = ENTRY_BYTES + STRING_BYTES + tenant.length();
+        }
+    }
+}
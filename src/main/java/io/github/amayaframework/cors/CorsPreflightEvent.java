@@ -0,0 +1,27 @@
+package io.github.amayaframework.cors;
+
+import jdk.jfr.*;
+
+@Name("amaya.cors.Preflight")
+@Label("CORS Preflight")
+@Category({"Amaya", "CORS"})
+@Description("Decision made for a CORS preflight request")
+@StackTrace(false)
+final class CorsPreflightEvent extends Event {
+    @Label("Origin")
+    String origin;
+
+    @Label("Requested Method")
+    String method;
+
+    @Label("Decision Stage")
+    @Description("Origin matcher stage that decided on the origin")
+    String stage;
+
+    @Label("Allowed")
+    boolean allowed;
+
+    @Label("Rejection")
+    @Description("Reason of the rejection, if the request was rejected")
+    String rejection;
+}
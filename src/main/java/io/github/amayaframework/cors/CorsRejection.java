@@ -0,0 +1,21 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Enumerates the reasons for which a CORS request can be rejected.
+ */
+public enum CorsRejection {
+    /**
+     * The request origin is not allowed.
+     */
+    ORIGIN,
+
+    /**
+     * The requested method is unknown or not allowed.
+     */
+    METHOD,
+
+    /**
+     * At least one of the requested headers is not allowed.
+     */
+    HEADERS
+}
@@ -0,0 +1,23 @@
+package io.github.amayaframework.cors;
+
+import jdk.jfr.*;
+
+@Name("amaya.cors.Request")
+@Label("CORS Request")
+@Category({"Amaya", "CORS"})
+@Description("Decision made for a plain (non-preflight) CORS request")
+@StackTrace(false)
+final class CorsRequestEvent extends Event {
+    @Label("Origin")
+    String origin;
+
+    @Label("Method")
+    String method;
+
+    @Label("Decision Stage")
+    @Description("Origin matcher stage that decided on the origin")
+    String stage;
+
+    @Label("Allowed")
+    boolean allowed;
+}
@@ -0,0 +1,297 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned and checksummed binary snapshot of a built {@link CorsConfig}.
+ * <p>
+ * A snapshot stores the already normalized origin, header and method tables of a config,
+ * so loading it skips lowercasing, deduplication and builder bookkeeping: the whole file is
+ * read at once, its checksum is validated, and the tables are filled into presized sets.
+ * Origin regexes are stored as their sources and flags and are compiled on load.
+ * An {@link OriginMatcher} is not part of a snapshot and has to be set on the loaded config.
+ * <p>
+ * Layout (big-endian): the {@code ACRS} magic, the format version, the flags
+ * (bit 0 allows credentials, bit 1 renders stable headers), the max age,
+ * the adaptive max age ceiling (since version 2), five string tables (allowed origins,
+ * origin regexes, allowed methods, allowed headers, exposed headers) and the CRC32C
+ * of all preceding bytes.
+ * A string table is its entry count ({@code -1} for {@code null}), {@code count + 1} offsets
+ * into the following UTF-8 blob, and the blob itself. The regex table is followed by
+ * the flags of each pattern.
+ */
+public final class CorsSnapshot {
+    /**
+     * Magic number opening every snapshot, {@code ACRS} in ASCII.
+     */
+    public static final int MAGIC = 0x41435253;
+
+    /**
+     * Version of the snapshot format written by this class. Snapshots of all earlier versions can be read.
+     */
+    public static final int VERSION = 2;
+
+    private static final int CREDENTIALS = 1;
+    private static final int STABLE_HEADERS = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int CHECKSUM_SIZE = 8;
+
+    private CorsSnapshot() {
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeTable(ByteArrayOutputStream out, Collection<String> values) {
+        if (values == null) {
+            writeInt(out, -1);
+            return;
+        }
+        var encoded = new byte[values.size()][];
+        var index = 0;
+        for (var value : values) {
+            encoded[index++] = value.getBytes(StandardCharsets.UTF_8);
+        }
+        writeInt(out, encoded.length);
+        var offset = 0;
+        writeInt(out, offset);
+        for (var bytes : encoded) {
+            offset += bytes.length;
+            writeInt(out, offset);
+        }
+        for (var bytes : encoded) {
+            out.writeBytes(bytes);
+        }
+    }
+
+    private static List<String> names(Collection<HttpMethod> methods) {
+        if (methods == null) {
+            return null;
+        }
+        var ret = new ArrayList<String>(methods.size());
+        for (var method : methods) {
+            ret.add(method.name());
+        }
+        return ret;
+    }
+
+    /**
+     * Serializes the given config into a snapshot.
+     *
+     * @param config the config to serialize, must not be {@code null}
+     * @return the snapshot bytes
+     */
+    public static byte[] write(CorsConfig config) {
+        Objects.requireNonNull(config);
+        var out = new ByteArrayOutputStream();
+        writeInt(out, MAGIC);
+        writeInt(out, VERSION);
+        writeInt(out, (config.allowCredentials ? CREDENTIALS : 0) | (config.stableHeaders ? STABLE_HEADERS : 0));
+        writeInt(out, config.maxAge);
+        writeInt(out, config.adaptiveMaxAge);
+        writeTable(out, config.allowedOrigins);
+        var regexes = config.allowedRegexes;
+        if (regexes == null) {
+            writeTable(out, null);
+        } else {
+            var sources = new ArrayList<String>(regexes.size());
+            for (var regex : regexes) {
+                sources.add(regex.pattern());
+            }
+            writeTable(out, sources);
+            for (var regex : regexes) {
+                writeInt(out, regex.flags());
+            }
+        }
+        writeTable(out, names(config.allowedMethods));
+        writeTable(out, config.allowedHeaders);
+        writeTable(out, config.exposedHeaders);
+        var checksum = new CRC32C();
+        checksum.update(out.toByteArray());
+        var value = checksum.getValue();
+        writeInt(out, (int) (value >>> 32));
+        writeInt(out, (int) value);
+        return out.toByteArray();
+    }
+
+    /**
+     * Serializes the given config into a snapshot file.
+     * <p>
+     * The snapshot is written to a temporary file next to the target and then moved over it,
+     * so readers never observe a partially written snapshot.
+     *
+     * @param config the config to serialize, must not be {@code null}
+     * @param path   the path of the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CorsConfig config, Path path) throws IOException {
+        var bytes = write(config);
+        var target = path.toAbsolutePath();
+        var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static String[] readTable(ByteBuffer buffer, byte[] bytes) throws IOException {
+        var count = buffer.getInt();
+        if (count < 0) {
+            return null;
+        }
+        if (count > buffer.remaining() / 4) {
+            throw new IOException("Invalid snapshot table size: " + count);
+        }
+        var offsets = new int[count + 1];
+        for (var i = 0; i <= count; ++i) {
+            offsets[i] = buffer.getInt();
+        }
+        var base = buffer.position();
+        var length = offsets[count];
+        if (length < 0 || length > buffer.remaining() - CHECKSUM_SIZE) {
+            throw new IOException("Invalid snapshot table length: " + length);
+        }
+        var ret = new String[count];
+        for (var i = 0; i < count; ++i) {
+            var from = offsets[i];
+            var to = offsets[i + 1];
+            if (from < 0 || from > to || to > length) {
+                throw new IOException("Invalid snapshot table offset: " + from);
+            }
+            ret[i] = new String(bytes, base + from, to - from, StandardCharsets.UTF_8);
+        }
+        buffer.position(base + length);
+        return ret;
+    }
+
+    private static Set<String> toSet(String[] values) {
+        if (values == null) {
+            return null;
+        }
+        var ret = new HashSet<String>(Util.capacity(values.length));
+        Collections.addAll(ret, values);
+        return Collections.unmodifiableSet(ret);
+    }
+
+    private static Set<String> toOriginSet(String[] values) {
+        if (values == null) {
+            return null;
+        }
+        return new OriginSet(Arrays.asList(values)).freeze();
+    }
+
+    /*
+     * Compiles the regexes eagerly, so no regex of a loaded config, such as the CorsImage policy
+     * compiled into the image heap, is compiled after it is read.
+     */
+    private static List<Pattern> toPatterns(String[] sources, ByteBuffer buffer) throws IOException {
+        if (sources == null) {
+            return null;
+        }
+        var ret = new ArrayList<Pattern>(sources.length);
+        for (var source : sources) {
+            try {
+                ret.add(Pattern.compile(source, buffer.getInt()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid snapshot origin regex: " + source, e);
+            }
+        }
+        return Collections.unmodifiableList(ret);
+    }
+
+    private static Set<HttpMethod> toMethods(String[] names) throws IOException {
+        if (names == null) {
+            return null;
+        }
+        var ret = new HashSet<HttpMethod>(Util.capacity(names.length));
+        for (var name : names) {
+            var method = HttpMethod.of(name);
+            if (method == null) {
+                throw new IOException("Unknown snapshot http method: " + name);
+            }
+            ret.add(method);
+        }
+        return Collections.unmodifiableSet(ret);
+    }
+
+    private static int validate(byte[] bytes) throws IOException {
+        var length = bytes.length;
+        if (length < HEADER_SIZE + CHECKSUM_SIZE) {
+            throw new IOException("Snapshot is too short: " + length + " bytes");
+        }
+        var buffer = ByteBuffer.wrap(bytes);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a cors snapshot");
+        }
+        var version = buffer.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        var checksum = new CRC32C();
+        checksum.update(bytes, 0, length - CHECKSUM_SIZE);
+        if (checksum.getValue() != buffer.getLong(length - CHECKSUM_SIZE)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        return version;
+    }
+
+    /**
+     * Deserializes a config from the given snapshot bytes.
+     *
+     * @param bytes the snapshot bytes, must not be {@code null}
+     * @return the deserialized config
+     * @throws IOException if the bytes are not a valid snapshot of a supported version
+     */
+    public static CorsConfig read(byte[] bytes) throws IOException {
+        var version = validate(bytes);
+        var buffer = ByteBuffer.wrap(bytes, 8, bytes.length - 8);
+        try {
+            var ret = new CorsConfig();
+            var flags = buffer.getInt();
+            ret.allowCredentials = (flags & CREDENTIALS) != 0;
+            ret.stableHeaders = (flags & STABLE_HEADERS) != 0;
+            ret.maxAge = buffer.getInt();
+            ret.adaptiveMaxAge = version < 2 ? -1 : buffer.getInt();
+            ret.allowedOrigins = toOriginSet(readTable(buffer, bytes));
+            ret.allowedRegexes = toPatterns(readTable(buffer, bytes), buffer);
+            ret.allowedMethods = toMethods(readTable(buffer, bytes));
+            ret.allowedHeaders = toSet(readTable(buffer, bytes));
+            ret.exposedHeaders = toSet(readTable(buffer, bytes));
+            if (buffer.remaining() != CHECKSUM_SIZE) {
+                throw new IOException("Unexpected snapshot trailing data");
+            }
+            return ret;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot", e);
+        }
+    }
+
+    /**
+     * Deserializes a config from the given snapshot file, reading it with a single bulk read.
+     *
+     * @param path the path of the snapshot file
+     * @return the deserialized config
+     * @throws IOException if the file cannot be read or is not a valid snapshot of a supported version
+     */
+    public static CorsConfig read(Path path) throws IOException {
+        return read(Files.readAllBytes(path));
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Enumerates the stages of CORS request processing measured by {@link CorsLatency}.
+ */
+public enum CorsStage {
+    /**
+     * Extraction of CORS-related request headers and request classification.
+     */
+    EXTRACT,
+
+    /**
+     * Matching of the request origin.
+     */
+    ORIGIN,
+
+    /**
+     * Checking of the requested method and headers of a preflight request.
+     */
+    HEADERS,
+
+    /**
+     * Rendering of CORS response headers.
+     */
+    RENDER,
+
+    /**
+     * Whole CORS processing of a request, excluding the next tasks in the chain.
+     */
+    TOTAL
+}
@@ -8,9 +8,8 @@ import io.github.amayaframework.context.HttpResponse;
 import io.github.amayaframework.http.HttpCode;
 import io.github.amayaframework.http.HttpMethod;
 import io.github.amayaframework.server.HttpMethodBuffer;
-import io.github.amayaframework.tokenize.Tokenizers;
 
-import java.util.Locale;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -20,8 +19,27 @@ import java.util.concurrent.CompletableFuture;
  * This task intercepts incoming requests, checks the {@code Origin} header,
  * and applies the configured CORS policy. It supports both simple
  * requests and preflight (OPTIONS) requests.
+ * <p>
+ * The task is a thin adapter over a {@link CorsEngine}, which decides the requests, renders
+ * the headers and reports the decisions. The policy is customized by subclassing the engine,
+ * or by overriding the protected hooks of this task: when a subclass overrides {@link #checkOrigin(String)},
+ * {@link #renderOrigin(String)}, {@link #checkHeaders(String)} or {@link #handlePlainRequest(HttpResponse, String)},
+ * the task runs an engine calling back into these hooks, whose default implementations delegate
+ * to the given engine. Tasks without overridden hooks run the given engine directly.
+ * <p>
+ * Decisions are also reported as Java Flight Recorder events in the {@code Amaya/CORS} category
+ * ({@code amaya.cors.Preflight}, {@code amaya.cors.Request}, {@code amaya.cors.OriginRejected}
+ * and {@code amaya.cors.CacheMiss}); while they are not being recorded, emitting them costs
+ * next to nothing.
  */
 public class CorsTask implements TaskConsumer<HttpContext> {
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    /**
+     * Engine deciding requests and rendering the CORS headers, calling back into the hooks of this task
+     * if a subclass overrides them.
+     */
+    protected final CorsEngine engine;
 
     /**
      * CORS configuration defining allowed origins, methods, headers, and other options.
@@ -30,8 +48,6 @@ public class CorsTask implements TaskConsumer<HttpContext> {
 
     /**
      * Buffer used to resolve {@link HttpMethod} from a string.
-     * <p>
-     * By default, uses {@link HttpMethod#of(String)} to read HTTP methods.
      */
     protected final HttpMethodBuffer buffer;
 
@@ -61,21 +77,64 @@ public class CorsTask implements TaskConsumer<HttpContext> {
      */
     protected final String maxAge;
 
+    // The given engine, which the default hook implementations delegate to
+    private final CorsEngine delegate;
+
+    /**
+     * Creates a new {@code CorsTask} adapting the given engine.
+     *
+     * @param engine the engine deciding requests and rendering the CORS headers
+     */
+    public CorsTask(CorsEngine engine) {
+        this.delegate = Objects.requireNonNull(engine);
+        this.engine = hooked(getClass()) ? new HookedEngine(engine, this) : engine;
+        this.config = engine.config;
+        this.buffer = engine.buffer;
+        this.allMethods = engine.allMethods;
+        this.methods = engine.methods;
+        this.headers = engine.headers;
+        this.exposed = engine.exposed;
+        this.maxAge = engine.maxAge;
+    }
+
+    /**
+     * Creates a new {@code CorsTask} with the given configuration and instrumentation.
+     *
+     * @param config     the CORS configuration
+     * @param buffer     the HTTP method buffer
+     * @param allMethods iterable of all available HTTP methods
+     * @param metrics    the metrics receiving counting events
+     * @param latency    the latency histograms to record into, or {@code null} to skip timing
+     */
+    public CorsTask(CorsConfig config,
+                    HttpMethodBuffer buffer,
+                    Iterable<HttpMethod> allMethods,
+                    CorsMetrics metrics,
+                    CorsLatency latency) {
+        this(new CorsEngine(config, buffer, allMethods, metrics, latency));
+    }
+
+    /**
+     * Creates a new {@code CorsTask} with the given configuration and metrics.
+     *
+     * @param config     the CORS configuration
+     * @param buffer     the HTTP method buffer
+     * @param allMethods iterable of all available HTTP methods
+     * @param metrics    the metrics receiving counting events
+     */
+    public CorsTask(CorsConfig config, HttpMethodBuffer buffer, Iterable<HttpMethod> allMethods, CorsMetrics metrics) {
+        this(config, buffer, allMethods, metrics, null);
+    }
+
     /**
-     * Creates a new {@code CorsTask} with the given configuration.
+     * Creates a new {@code CorsTask} with the given configuration and disabled metrics.
      *
      * @param config     the CORS configuration
      * @param buffer     the HTTP method buffer
      * @param allMethods iterable of all available HTTP methods
      */
     public CorsTask(CorsConfig config, HttpMethodBuffer buffer, Iterable<HttpMethod> allMethods) {
-        this.config = config;
-        this.buffer = buffer;
-        this.methods = StringUtil.render(config.allowedMethods);
-        this.allMethods = StringUtil.render(allMethods);
-        this.headers = StringUtil.render(config.allowedHeaders);
-        this.exposed = StringUtil.render(config.exposedHeaders);
-        this.maxAge = config.maxAge < 0 ? null : Integer.toString(config.maxAge);
+        this(config, buffer, allMethods, CorsMetrics.noop(), null);
     }
 
     /**
@@ -88,70 +147,83 @@ public class CorsTask implements TaskConsumer<HttpContext> {
         this(config, HttpMethod::of, HttpMethod.all().values());
     }
 
+    private static boolean overrides(Class<?> type, String name, Class<?>... parameters) {
+        for (var current = type; current != CorsTask.class; current = current.getSuperclass()) {
+            try {
+                current.getDeclaredMethod(name, parameters);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Check the superclass
+            }
+        }
+        return false;
+    }
+
+    private static boolean hooked(Class<?> type) {
+        return type != CorsTask.class
+                && (overrides(type, "checkOrigin", String.class)
+                || overrides(type, "renderOrigin", String.class)
+                || overrides(type, "checkHeaders", String.class)
+                || overrides(type, "handlePlainRequest", HttpResponse.class, String.class)
+                || overrides(type, "handlePreflight", HttpRequest.class, HttpResponse.class, String.class, String.class)
+                || overrides(type, "handleOptions", HttpRequest.class, HttpResponse.class));
+    }
+
+    /**
+     * Returns the engine deciding requests and rendering the CORS headers.
+     * <p>
+     * If a subclass overrides the hooks of this task, the returned engine calls back into them.
+     *
+     * @return the engine
+     */
+    public CorsEngine getEngine() {
+        return engine;
+    }
+
     /**
-     * Checks whether the given origin is allowed by this configuration.
+     * Checks whether the given origin is allowed.
+     * <p>
+     * Called for both preflight and simple requests. The default implementation delegates to the engine.
      *
      * @param origin request origin
      * @return {@code true} if allowed, {@code false} otherwise
+     * @see CorsEngine#checkOrigin(String)
      */
     protected boolean checkOrigin(String origin) {
-        var allowedOrigins = config.allowedOrigins;
-        if (allowedOrigins != null && allowedOrigins.contains(origin)) {
-            return true;
-        }
-        var allowedRegexes = config.allowedRegexes;
-        if (allowedRegexes != null && !allowedRegexes.isEmpty()) {
-            for (var pattern : allowedRegexes) {
-                if (pattern.matcher(origin).matches()) {
-                    return true;
-                }
-            }
-            return false;
-        }
-        return allowedOrigins == null;
+        return delegate.checkOrigin(origin);
     }
 
     /**
      * Renders the origin value to be sent in the response.
      * <p>
-     * Returns {@code *} if no restrictions are set (both allowed origins and regex rules are {@code null}).
+     * The default implementation delegates to the engine.
      *
      * @param origin request origin
      * @return rendered origin string
+     * @see CorsEngine#renderOrigin(String)
      */
     protected String renderOrigin(String origin) {
-        if (config.allowedOrigins == null && config.allowedRegexes == null) {
-            return "*";
-        }
-        return origin;
+        return delegate.renderOrigin(origin);
     }
 
-
     /**
-     * Checks whether this configuration allows the requested headers.
+     * Checks whether the requested headers are allowed.
+     * <p>
+     * Called for preflight requests. The default implementation delegates to the engine.
      *
      * @param headers comma-separated list of request headers
      * @return {@code true} if all headers are allowed, {@code false} otherwise
+     * @see CorsEngine#checkHeaders(CharSequence)
      */
     protected boolean checkHeaders(String headers) {
-        if (config.allowedHeaders == null) {
-            return true;
-        }
-        var split = Tokenizers.split(headers, ",");
-        var allowed = config.allowedHeaders;
-        for (var header : split) {
-            if (!allowed.contains(header.strip().toLowerCase(Locale.ENGLISH))) {
-                return false;
-            }
-        }
-        return true;
+        return delegate.checkHeaders(headers);
     }
 
     /**
      * Handles a CORS preflight (OPTIONS) request.
      * <p>
-     * Validates origin, method, and headers against {@link CorsConfig},
-     * then writes appropriate CORS response headers.
+     * Answers with {@code 204 No Content} and lets the engine validate origin, method, and headers
+     * against {@link CorsConfig} and write appropriate CORS response headers.
      *
      * @param req    the HTTP request
      * @param res    the HTTP response
@@ -161,84 +233,62 @@ public class CorsTask implements TaskConsumer<HttpContext> {
     protected void handlePreflight(HttpRequest req, HttpResponse res, String origin, String method) {
         // Pre-set NO_CONTENT
         res.status(HttpCode.NO_CONTENT);
-        // Check for origin
-        if (!checkOrigin(origin)) {
-            return;
-        }
-        // Check for method
-        var allowedMethods = config.allowedMethods;
-        var requestedMethod = buffer.get(method);
-        if (requestedMethod == null || (allowedMethods != null && !allowedMethods.contains(requestedMethod))) {
-            return;
-        }
-        // Check for allowed headers
-        var requestedHeaders = req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_HEADERS);
-        if (requestedHeaders != null && !checkHeaders(requestedHeaders)) {
-            return;
-        }
-        // Render max-age
-        if (maxAge != null) {
-            res.header(CorsHeaders.ACCESS_CONTROL_MAX_AGE, maxAge);
-        }
-        // Split logic: with and without credentials
-        if (config.allowCredentials) {
-            // Render credentials
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
-            // Render origin
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, origin);
-            // Render methods
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS, methods == null ? allMethods : methods);
-            // Render headers
-            if (headers == null) {
-                if (requestedHeaders != null) {
-                    res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, requestedHeaders);
-                }
-            } else {
-                res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, headers);
-            }
-            // Set vary for creds
-            res.header(ProxyHeaders.VARY, ProxyHeaders.CREDENTIALS_PREFLIGHT_VALUE);
-        } else {
-            // Render origin
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, renderOrigin(origin));
-            // Render methods
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS, methods == null ? "*" : methods);
-            // Render headers
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, headers == null ? "*" : headers);
-            // Set basic Vary
-            res.header(ProxyHeaders.VARY, ProxyHeaders.ORIGIN_VALUE);
+        preflight(req, res, origin, method);
+    }
+
+    // Decides the preflight request with the task engine, which calls back into the other hooks
+    private int preflight(HttpRequest req, HttpResponse res, String origin, String method) {
+        var engine = this.engine;
+        return engine instanceof HookedEngine
+                ? ((HookedEngine) engine).applyEnginePreflight(req, res, origin, method)
+                : engine.applyPreflight(req, res, origin, method);
+    }
+
+    /**
+     * Answers a non-preflight OPTIONS request with the methods of its route,
+     * if the engine has an {@link OptionsResponder} and a route matches the request path.
+     *
+     * @param req the HTTP request
+     * @param res the HTTP response
+     * @return {@code true} if the request was answered, {@code false} if it should be passed further
+     */
+    protected boolean handleOptions(HttpRequest req, HttpResponse res) {
+        // The given engine shares the responder of the task engine and does not call back into this hook
+        if (!CorsEngine.isAnswered(delegate.applyOptions(req, res, CorsEngine.NONE))) {
+            return false;
         }
+        res.status(HttpCode.NO_CONTENT);
+        return true;
     }
 
     /**
-     * Handles a simple (non-preflight) CORS request.
+     * Renders the headers of an allowed simple (non-preflight) CORS request.
      * <p>
-     * Writes {@code Access-Control-Allow-Origin}, {@code Access-Control-Allow-Credentials},
-     * and {@code Access-Control-Expose-Headers} as configured.
+     * Called once {@link #checkOrigin(String)} has allowed the origin. Writes {@code Access-Control-Allow-Origin},
+     * {@code Access-Control-Allow-Credentials}, and {@code Access-Control-Expose-Headers} as configured.
      *
      * @param res    the HTTP response
      * @param origin request origin
      */
     protected void handlePlainRequest(HttpResponse res, String origin) {
-        res.extendHeader(ProxyHeaders.VARY, ProxyHeaders.ORIGIN_VALUE);
-        // Split logic: with and without credentials
-        if (config.allowCredentials) {
-            // Render credentials
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
-            // Render origin
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, origin);
-            // Render exposed headers
-            if (exposed != null) {
-                res.header(CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, exposed);
-            }
+        if (engine instanceof HookedEngine) {
+            ((HookedEngine) engine).renderPlainHeaders(origin, res);
         } else {
-            // Render origin
-            res.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, renderOrigin(origin));
-            // Render exposed headers
-            res.header(CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, exposed == null ? "*" : exposed);
+            engine.renderPlain(origin, ResponseSink.INSTANCE, res);
         }
     }
 
+    /**
+     * Applies the CORS policy to the request of the given context.
+     *
+     * @param context the HTTP context
+     * @return {@code true} if the next task in the chain should be executed,
+     * {@code false} if the request was answered as a preflight request
+     */
+    private boolean process(HttpContext context) {
+        return !CorsEngine.isAnswered(engine.apply(context.request(), context.response()));
+    }
+
     /**
      * Executes this CORS task synchronously.
      * Intercepts requests, checks for preflight, and applies CORS headers.
@@ -249,25 +299,9 @@ public class CorsTask implements TaskConsumer<HttpContext> {
      */
     @Override
     public void run(HttpContext context, Task<HttpContext> next) throws Throwable {
-        var req = context.request();
-        // Try to find Origin
-        var origin = req.header(CorsHeaders.ORIGIN);
-        if (origin == null) {
+        if (process(context)) {
             next.run(context);
-            return;
         }
-        var requestedMethod = req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD);
-        // Handle preflight
-        if (req.method().equals(HttpMethod.OPTIONS) && requestedMethod != null) {
-            handlePreflight(req, context.response(), origin, requestedMethod);
-            return;
-        }
-        // Handle plain request if origin allowed
-        if (checkOrigin(origin)) {
-            handlePlainRequest(context.response(), origin);
-        }
-        // Do next
-        next.run(context);
     }
 
     /**
@@ -280,24 +314,10 @@ public class CorsTask implements TaskConsumer<HttpContext> {
      */
     @Override
     public CompletableFuture<Void> runAsync(HttpContext context, Task<HttpContext> next) {
-        var req = context.request();
-        // Try to find Origin
-        var origin = req.header(CorsHeaders.ORIGIN);
-        if (origin == null) {
+        if (process(context)) {
             return next.runAsync(context);
         }
-        var requestedMethod = req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD);
-        // Check for preflight
-        if (req.method().equals(HttpMethod.OPTIONS) && requestedMethod != null) {
-            handlePreflight(req, context.response(), origin, requestedMethod);
-            return CompletableFuture.completedFuture(null);
-        }
-        // Handle plain request if origin allowed
-        if (checkOrigin(origin)) {
-            handlePlainRequest(context.response(), origin);
-        }
-        // Do next
-        return next.runAsync(context);
+        return DONE;
     }
 
     /**
@@ -329,4 +349,75 @@ public class CorsTask implements TaskConsumer<HttpContext> {
     public boolean isUni() {
         return true;
     }
+
+    /*
+     * Engine calling back into the overridden hooks of a task, sharing the state of the task engine.
+     */
+    private static final class HookedEngine extends CorsEngine {
+        private final CorsTask task;
+
+        HookedEngine(CorsEngine engine, CorsTask task) {
+            super(engine);
+            this.task = task;
+        }
+
+        @Override
+        protected boolean checkOrigin(String origin) {
+            return task.checkOrigin(origin);
+        }
+
+        @Override
+        protected String renderOrigin(String origin) {
+            return task.renderOrigin(origin);
+        }
+
+        @Override
+        protected boolean checkHeaders(CharSequence headers) {
+            return task.checkHeaders(headers.toString());
+        }
+
+        @Override
+        public <T> void renderPlain(CharSequence origin, HeaderSink<T> sink, T target) {
+            // Check for responses written by the task, which renders them with its hook
+            if (sink == ResponseSink.INSTANCE) {
+                task.handlePlainRequest((HttpResponse) target, origin.toString());
+            } else {
+                super.renderPlain(origin, sink, target);
+            }
+        }
+
+        void renderPlainHeaders(String origin, HttpResponse res) {
+            super.renderPlain(origin, ResponseSink.INSTANCE, res);
+        }
+
+        @Override
+        int applyPreflight(HttpRequest req, HttpResponse res, String origin, String method) {
+            task.handlePreflight(req, res, origin, method);
+            // The hook answers preflight requests whatever it decides
+            return PREFLIGHT;
+        }
+
+        int applyEnginePreflight(HttpRequest req, HttpResponse res, String origin, String method) {
+            return super.applyPreflight(req, res, origin, method);
+        }
+
+        @Override
+        int applyOptions(HttpRequest req, HttpResponse res, int code) {
+            return task.handleOptions(req, res) ? code | ANSWERED : code;
+        }
+    }
+
+    static final class ResponseSink implements HeaderSink<HttpResponse> {
+        static final ResponseSink INSTANCE = new ResponseSink();
+
+        @Override
+        public void set(HttpResponse target, String name, String value) {
+            target.header(name, value);
+        }
+
+        @Override
+        public void add(HttpResponse target, String name, String value) {
+            target.extendHeader(name, value);
+        }
+    }
 }
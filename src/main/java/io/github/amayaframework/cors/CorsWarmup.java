@@ -0,0 +1,416 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Warms up the decision paths of a {@link CorsEngine} with synthetic requests before it serves traffic,
+ * so the first real requests do not run interpreted code, compile origin regexes or fill cold tables.
+ * <p>
+ * Requests are derived from the engine configuration: its exact allowed origins, an origin matching
+ * each origin regex where one can be derived from it, origins probing the {@link OriginMatcher} and the
+ * regexes without matching any, its allowed methods and headers, and their rejected counterparts,
+ * sent as simple, preflight and OPTIONS requests. They are replayed in rounds until
+ * the JIT compilation time stops growing or the time budget runs out. Their headers are discarded,
+ * but they are reported to the engine metrics and latency histograms like any other request,
+ * so engines with user-visible instrumentation should be warmed through a twin engine,
+ * see {@link #twin(CorsEngine)}.
+ */
+public final class CorsWarmup {
+    /**
+     * Default time budget of a warm-up.
+     */
+    public static final Duration DEFAULT_BUDGET = Duration.ofSeconds(2);
+
+    private static final HeaderSink<Object> DISCARD = new HeaderSink<>() {
+        @Override
+        public void set(Object target, String name, String value) {
+        }
+
+        @Override
+        public void add(Object target, String name, String value) {
+        }
+    };
+    private static final int MAX_VALUES = 64;
+    private static final int MIN_REQUESTS = 20_000;
+    private static final long SAMPLE_NANOS = 50_000_000L;
+    private static final int SETTLED_SAMPLES = 3;
+    private static final String PATH = "/";
+    private static final String REJECTED_HEADER = "x-cors-warmup-rejected";
+    private static final int MAX_SAMPLE = 256;
+
+    private final CorsEngine engine;
+    private final String[] origins;
+    private final String[] methods;
+    private final String[] requestedMethods;
+    private final String[] requestedHeaders;
+    private long requests;
+
+    /**
+     * Creates a new warm-up deriving its synthetic requests from the configuration of the given engine.
+     *
+     * @param engine the engine to warm up
+     */
+    public CorsWarmup(CorsEngine engine) {
+        this.engine = Objects.requireNonNull(engine);
+        var config = engine.config;
+        var origins = origins(config);
+        var methods = methods(config);
+        var rejectedMethod = rejectedMethod(config);
+        var headers = headers(config);
+        // Cross every origin, including an absent one, with every request shape
+        var shapes = new ArrayList<String[]>();
+        for (var method : methods) {
+            shapes.add(new String[]{method, null, null});
+            shapes.add(new String[]{HttpMethod.OPTIONS.toString(), method, null});
+            for (var header : headers) {
+                shapes.add(new String[]{HttpMethod.OPTIONS.toString(), method, header});
+            }
+        }
+        shapes.add(new String[]{HttpMethod.OPTIONS.toString(), null, null});
+        if (rejectedMethod != null) {
+            shapes.add(new String[]{rejectedMethod, null, null});
+            shapes.add(new String[]{HttpMethod.OPTIONS.toString(), rejectedMethod, null});
+        }
+        var count = (origins.size() + 1) * shapes.size();
+        this.origins = new String[count];
+        this.methods = new String[count];
+        this.requestedMethods = new String[count];
+        this.requestedHeaders = new String[count];
+        var index = 0;
+        for (var shape : shapes) {
+            for (var i = 0; i <= origins.size(); ++i) {
+                this.origins[index] = i < origins.size() ? origins.get(i) : null;
+                this.methods[index] = shape[0];
+                this.requestedMethods[index] = shape[1];
+                this.requestedHeaders[index] = shape[2];
+                ++index;
+            }
+        }
+    }
+
+    private static List<String> origins(CorsConfig config) {
+        var ret = new ArrayList<String>();
+        var allowedOrigins = config.allowedOrigins;
+        if (allowedOrigins != null) {
+            for (var origin : allowedOrigins) {
+                if (ret.size() == MAX_VALUES) {
+                    break;
+                }
+                ret.add(origin);
+            }
+        }
+        var allowedRegexes = config.allowedRegexes;
+        if (allowedRegexes != null) {
+            // Lazy regexes are compiled here, before serving
+            for (var pattern : allowedRegexes) {
+                if (ret.size() == MAX_VALUES * 2) {
+                    break;
+                }
+                var sample = sample(pattern.pattern());
+                if (sample != null && pattern.matcher(sample).matches()) {
+                    ret.add(sample);
+                }
+            }
+        }
+        // Origins missing the exact set run through the matcher, every regex and the verdict cache
+        ret.add("https://cors-warmup.invalid");
+        ret.add("http://cors-warmup.invalid:8080");
+        return ret;
+    }
+
+    /*
+     * Derives a string the given regex likely matches, taking the first alternative, the first char
+     * of classes and the least repetitions. Constructs it does not know yield null, and the caller
+     * checks the result against the pattern, so regexes it gets wrong are only probed by non-matching origins.
+     */
+    static String sample(String regex) {
+        var ret = new StringBuilder();
+        // Start of the last atom, and of the enclosing groups
+        var atom = -1;
+        var groups = new ArrayDeque<Integer>();
+        var length = regex.length();
+        var i = 0;
+        while (i < length) {
+            var c = regex.charAt(i++);
+            switch (c) {
+                case '\\':
+                    if (i == length) {
+                        return null;
+                    }
+                    atom = ret.length();
+                    ret.append(escaped(regex.charAt(i++)));
+                    break;
+                case '[':
+                    var end = regex.indexOf(']', i + 1);
+                    if (end < 0 || regex.charAt(i) == '^' || regex.charAt(i) == '\\') {
+                        return null;
+                    }
+                    atom = ret.length();
+                    ret.append(regex.charAt(i));
+                    i = end + 1;
+                    break;
+                case '(':
+                    if (regex.startsWith("?:", i)) {
+                        i += 2;
+                    } else if (i < length && regex.charAt(i) == '?') {
+                        return null;
+                    }
+                    groups.push(ret.length());
+                    break;
+                case ')':
+                    if (groups.isEmpty()) {
+                        return null;
+                    }
+                    atom = groups.pop();
+                    break;
+                case '|':
+                    // Skip the other alternatives of the group
+                    var depth = 0;
+                    while (i < length && (depth > 0 || regex.charAt(i) != ')')) {
+                        var skipped = regex.charAt(i++);
+                        if (skipped == '\\') {
+                            ++i;
+                        } else if (skipped == '(') {
+                            ++depth;
+                        } else if (skipped == ')') {
+                            --depth;
+                        }
+                    }
+                    break;
+                case '*':
+                case '?':
+                case '{':
+                    if (atom < 0) {
+                        return null;
+                    }
+                    var min = 0;
+                    if (c == '{') {
+                        var close = regex.indexOf('}', i);
+                        if (close < 0) {
+                            return null;
+                        }
+                        var bounds = regex.substring(i, close);
+                        var comma = bounds.indexOf(',');
+                        try {
+                            min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+                        } catch (NumberFormatException e) {
+                            return null;
+                        }
+                        i = close + 1;
+                    }
+                    var repeated = ret.substring(atom);
+                    ret.setLength(atom);
+                    for (var j = 0; j < min && ret.length() < MAX_SAMPLE; ++j) {
+                        ret.append(repeated);
+                    }
+                    atom = -1;
+                    i = skipModifier(regex, i);
+                    break;
+                case '+':
+                    atom = -1;
+                    i = skipModifier(regex, i);
+                    break;
+                case '^':
+                case '$':
+                    break;
+                case '.':
+                    atom = ret.length();
+                    ret.append('a');
+                    break;
+                default:
+                    atom = ret.length();
+                    ret.append(c);
+            }
+        }
+        return groups.isEmpty() ? ret.toString() : null;
+    }
+
+    private static char escaped(char c) {
+        switch (c) {
+            case 'd':
+                return '0';
+            case 'w':
+                return 'a';
+            case 's':
+                return ' ';
+            default:
+                return c;
+        }
+    }
+
+    // Skips the lazy or possessive modifier of a quantifier
+    private static int skipModifier(String regex, int index) {
+        if (index < regex.length() && (regex.charAt(index) == '?' || regex.charAt(index) == '+')) {
+            return index + 1;
+        }
+        return index;
+    }
+
+    private static List<String> methods(CorsConfig config) {
+        var ret = new ArrayList<String>();
+        if (config.allowedMethods == null) {
+            ret.add(HttpMethod.GET.toString());
+            ret.add(HttpMethod.POST.toString());
+            return ret;
+        }
+        for (var method : config.allowedMethods) {
+            ret.add(method.toString());
+        }
+        if (ret.isEmpty()) {
+            ret.add(HttpMethod.GET.toString());
+        }
+        return ret;
+    }
+
+    private static String rejectedMethod(CorsConfig config) {
+        var allowedMethods = config.allowedMethods;
+        if (allowedMethods == null) {
+            return null;
+        }
+        for (var method : HttpMethod.all().values()) {
+            if (!allowedMethods.contains(method)) {
+                return method.toString();
+            }
+        }
+        return null;
+    }
+
+    private static List<String> headers(CorsConfig config) {
+        var ret = new ArrayList<String>();
+        var allowedHeaders = config.allowedHeaders;
+        if (allowedHeaders == null || allowedHeaders.isEmpty()) {
+            ret.add("content-type");
+            ret.add("Content-Type, X-Requested-With");
+            return ret;
+        }
+        var all = new StringBuilder();
+        for (var header : allowedHeaders) {
+            if (ret.size() == MAX_VALUES * 2) {
+                break;
+            }
+            ret.add(header);
+            ret.add(header.toUpperCase(Locale.ENGLISH));
+            if (all.length() > 0) {
+                all.append(", ");
+            }
+            all.append(header);
+        }
+        ret.add(all.toString());
+        ret.add(all + "," + REJECTED_HEADER);
+        ret.add(REJECTED_HEADER);
+        return ret;
+    }
+
+    /**
+     * Creates an engine sharing the configuration, rendered values, OPTIONS responder, regex verdict cache
+     * and header table of the given engine, without its metrics and latency histograms,
+     * so warming it up does not report synthetic requests.
+     * <p>
+     * The twin runs the same code against the same compiled patterns, origin matcher and tables,
+     * so the JIT compilation, lazy regex compilation and cached verdicts it produces benefit the given engine.
+     * Its adaptive max-age values are its own, so synthetic preflight requests do not change the max-age
+     * served to browsers, and the hooks of an engine subclass are not called by the twin.
+     *
+     * @param engine the engine to create a twin of
+     * @return the twin engine
+     */
+    public static CorsEngine twin(CorsEngine engine) {
+        var config = engine.config;
+        var adaptiveMaxAge = engine.adaptiveMaxAge == null
+                ? null
+                : new AdaptiveMaxAge(config.maxAge, config.adaptiveMaxAge);
+        return new CorsEngine(engine, CorsMetrics.noop(), null, adaptiveMaxAge);
+    }
+
+    private static long compilationTime(CompilationMXBean bean) {
+        return bean == null ? -1 : bean.getTotalCompilationTime();
+    }
+
+    private void round() {
+        var engine = this.engine;
+        var count = origins.length;
+        for (var i = 0; i < count; ++i) {
+            engine.process(origins[i], methods[i], PATH, requestedMethods[i], requestedHeaders[i], DISCARD, null);
+            engine.decide(origins[i], methods[i], requestedMethods[i], requestedHeaders[i]);
+        }
+        requests += count;
+    }
+
+    /**
+     * Replays the synthetic requests until the JIT compilation settles or the budget runs out.
+     * <p>
+     * Compilation is considered settled once the total compilation time reported by the
+     * {@link CompilationMXBean} has not grown for several consecutive samples. If the JVM does not
+     * report compilation time, the warm-up runs for the whole budget.
+     *
+     * @param budget the maximum time spent warming up
+     * @return {@code true} if the compilation settled within the budget, {@code false} otherwise
+     */
+    public boolean run(Duration budget) {
+        var bean = ManagementFactory.getCompilationMXBean();
+        if (bean != null && !bean.isCompilationTimeMonitoringSupported()) {
+            bean = null;
+        }
+        var start = System.nanoTime();
+        var deadline = start + budget.toNanos();
+        var sample = start + SAMPLE_NANOS;
+        var compilation = compilationTime(bean);
+        var settled = 0;
+        var minimum = requests + MIN_REQUESTS;
+        while (true) {
+            round();
+            var now = System.nanoTime();
+            if (now - deadline >= 0) {
+                break;
+            }
+            if (now - sample < 0) {
+                continue;
+            }
+            sample = now + SAMPLE_NANOS;
+            // Check for compilation activity since the last sample
+            var time = compilationTime(bean);
+            settled = time >= 0 && time == compilation ? settled + 1 : 0;
+            compilation = time;
+            if (settled >= SETTLED_SAMPLES && requests >= minimum) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replays the synthetic requests until the JIT compilation settles or {@link #DEFAULT_BUDGET} runs out.
+     *
+     * @return {@code true} if the compilation settled within the budget, {@code false} otherwise
+     */
+    public boolean run() {
+        return run(DEFAULT_BUDGET);
+    }
+
+    /**
+     * Returns the engine warmed up.
+     *
+     * @return the engine
+     */
+    public CorsEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Returns the number of synthetic requests replayed so far.
+     *
+     * @return the number of requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+}
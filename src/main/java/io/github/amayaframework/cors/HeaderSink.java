@@ -0,0 +1,33 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Minimal response header output used by {@link CorsEngine} to write its outcome.
+ * <p>
+ * A sink is stateless and receives the response to write to as its first argument,
+ * so a single sink instance can be shared by all requests of a transport and writing
+ * headers does not allocate. Header names are the constants of {@link CorsHeaders}
+ * and {@link ProxyHeaders}, and values are either pre-rendered by the engine or taken
+ * from the request.
+ *
+ * @param <T> the type of the response the headers are written to
+ */
+public interface HeaderSink<T> {
+
+    /**
+     * Sets the header, replacing any value it already has.
+     *
+     * @param target the response to write to
+     * @param name   the header name
+     * @param value  the header value
+     */
+    void set(T target, String name, String value);
+
+    /**
+     * Adds a value to the header, keeping the values it already has.
+     *
+     * @param target the response to write to
+     * @param name   the header name
+     * @param value  the header value
+     */
+    void add(T target, String name, String value);
+}
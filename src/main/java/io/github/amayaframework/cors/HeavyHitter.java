@@ -0,0 +1,78 @@
+package io.github.amayaframework.cors;
+
+/**
+ * An immutable preflight tuple reported by {@link PreflightHeavyHitters} with its estimated count.
+ * <p>
+ * The count may overestimate the real number of preflight requests by at most {@link #getError()}.
+ */
+public final class HeavyHitter {
+    private final String origin;
+    private final String method;
+    private final String headers;
+    private final long count;
+    private final long error;
+
+    HeavyHitter(String origin, String method, String headers, long count, long error) {
+        this.origin = origin;
+        this.method = method;
+        this.headers = headers;
+        this.count = count;
+        this.error = error;
+    }
+
+    /**
+     * Returns the {@code Origin} of the preflight requests.
+     *
+     * @return the origin
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Returns the {@code Access-Control-Request-Method} of the preflight requests.
+     *
+     * @return the requested method
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Returns the {@code Access-Control-Request-Headers} of the preflight requests, as sent.
+     *
+     * @return the requested headers, or {@code null} if none were requested
+     */
+    public String getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the estimated number of preflight requests with this tuple.
+     *
+     * @return the estimated count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the maximum overestimation of {@link #getCount()}.
+     *
+     * @return the maximum error of the count
+     */
+    public long getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitter{" +
+                "origin=" + origin +
+                ", method=" + method +
+                ", headers=" + headers +
+                ", count=" + count +
+                ", error=" + error +
+                '}';
+    }
+}
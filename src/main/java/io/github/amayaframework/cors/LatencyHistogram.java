@@ -0,0 +1,48 @@
+package io.github.amayaframework.cors;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Log-bucketed histogram in the spirit of HdrHistogram. Values below 2 * HALF are counted exactly,
+ * then every power-of-two range is split into HALF linear sub-buckets, so the relative error
+ * stays below 1 / HALF. A histogram is shared by the threads of its stripe, so increments
+ * are atomic; only sampled requests record, which keeps contention low. Readers just sum the buckets.
+ */
+final class LatencyHistogram {
+    static final int SUB_BITS = 5;
+    static final int HALF = 1 << SUB_BITS;
+    static final long MAX_VALUE = (1L << 32) - 1;
+    static final int LENGTH = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts;
+
+    LatencyHistogram() {
+        this.counts = new AtomicLongArray(LENGTH);
+    }
+
+    static int index(long value) {
+        var bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value | (2 * HALF - 1)) - SUB_BITS);
+        return bucket * HALF + (int) (value >>> bucket);
+    }
+
+    static long highestEquivalent(int index) {
+        var bucket = Math.max(0, index / HALF - 1);
+        var sub = (long) (index - bucket * HALF);
+        return ((sub + 1) << bucket) - 1;
+    }
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        counts.getAndIncrement(index(value));
+    }
+
+    void addTo(long[] buckets) {
+        for (var i = 0; i < LENGTH; ++i) {
+            buckets[i] += counts.get(i);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package io.github.amayaframework.cors;
+
+/**
+ * An immutable view of the latency distribution of a single {@link CorsStage}.
+ * <p>
+ * All values are in nanoseconds. Reported values are the highest values equivalent to the bucket
+ * they fall into, so they overestimate the real latency by at most about 3 percent.
+ */
+public final class LatencySnapshot {
+    private final long[] buckets;
+    private final long count;
+
+    LatencySnapshot(long[] buckets) {
+        this.buckets = buckets;
+        var count = 0L;
+        for (var bucket : buckets) {
+            count += bucket;
+        }
+        this.count = count;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the value at the given percentile.
+     *
+     * @param percentile the percentile, in range {@code [0, 100]}
+     * @return the value in nanoseconds, or {@code 0} if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        var clamped = Math.min(Math.max(percentile, 0), 100);
+        var target = Math.max(1, (long) Math.ceil(clamped / 100 * count));
+        var total = 0L;
+        for (var i = 0; i < buckets.length; ++i) {
+            total += buckets[i];
+            if (total >= target) {
+                return LatencyHistogram.highestEquivalent(i);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the maximum recorded value.
+     *
+     * @return the value in nanoseconds, or {@code 0} if nothing was recorded
+     */
+    public long getMax() {
+        for (var i = buckets.length - 1; i >= 0; --i) {
+            if (buckets[i] != 0) {
+                return LatencyHistogram.highestEquivalent(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the approximate mean of the recorded values.
+     *
+     * @return the mean in nanoseconds, or {@code 0} if nothing was recorded
+     */
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        var sum = 0D;
+        for (var i = 0; i < buckets.length; ++i) {
+            sum += (double) buckets[i] * LatencyHistogram.highestEquivalent(i);
+        }
+        return sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{" +
+                "count=" + count +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", p999=" + getValueAtPercentile(99.9) +
+                ", max=" + getMax() +
+                '}';
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.amayaframework.cors;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/*
+ * Immutable list of origin regexes compiling each pattern on its first access.
+ * Concurrent first accesses may compile a pattern more than once, but all readers
+ * end up sharing the first published instance. Matching tries the compiled patterns first
+ * and compiles the others one at a time only while none of them has matched.
+ */
+final class LazyPatternList extends AbstractList<Pattern> implements RandomAccess {
+    private final String[] sources;
+    private final AtomicReferenceArray<Pattern> patterns;
+
+    LazyPatternList(String[] sources) {
+        this.sources = sources;
+        this.patterns = new AtomicReferenceArray<>(sources.length);
+    }
+
+    @Override
+    public Pattern get(int index) {
+        var ret = patterns.getAcquire(index);
+        if (ret != null) {
+            return ret;
+        }
+        ret = Pattern.compile(sources[index]);
+        var witness = patterns.compareAndExchangeRelease(index, null, ret);
+        return witness == null ? ret : witness;
+    }
+
+    /*
+     * Returns whether any pattern matches the whole origin. An origin matched by a compiled pattern
+     * compiles nothing, while an origin matched by none compiles every pattern left.
+     */
+    boolean matches(String origin) {
+        var length = sources.length;
+        // Patterns tried in the first pass, so patterns compiled concurrently since are still tried
+        var tried = length <= Long.SIZE ? null : new boolean[length];
+        var mask = 0L;
+        for (var i = 0; i < length; ++i) {
+            var pattern = patterns.getAcquire(i);
+            if (pattern == null) {
+                continue;
+            }
+            if (pattern.matcher(origin).matches()) {
+                return true;
+            }
+            if (tried == null) {
+                mask |= 1L << i;
+            } else {
+                tried[i] = true;
+            }
+        }
+        for (var i = 0; i < length; ++i) {
+            // Check for patterns tried in the first pass
+            if (tried == null ? (mask & (1L << i)) != 0 : tried[i]) {
+                continue;
+            }
+            if (get(i).matcher(origin).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return sources.length;
+    }
+}
@@ -0,0 +1,236 @@
+package io.github.amayaframework.cors;
+
+import java.util.*;
+
+/**
+ * Set of allowed origins that can be changed while it is in use, without rebuilding
+ * the {@link CorsConfig} or the {@link CorsTask}.
+ * <p>
+ * Origins are spread over a fixed number of immutable shards. A delta copies only the shards
+ * it touches and publishes them as a new version with a single volatile write, so lookups are
+ * lock-free and always see either the whole delta or none of it. Every published delta increments
+ * the {@link #generation()}, which caches of decisions derived from this set compare against.
+ * Origins are normalized to lower case the same way {@link CorsConfigBuilder} does it,
+ * and each shard maps them to the stored instance echoed by {@link #canonical(String)}.
+ */
+public final class LiveOriginSet implements OriginMatcher {
+    /**
+     * Default minimal number of shards.
+     */
+    public static final int DEFAULT_SHARDS = 256;
+
+    // Origins per shard the default shard count aims at, bounding the cost of a delta
+    private static final int SHARD_SIZE = 1024;
+    private static final int MAX_SHARDS = 1 << 16;
+
+    private final int shift;
+    private volatile Version version;
+
+    /**
+     * Creates a live set with the given initial origins and number of shards.
+     *
+     * @param origins the initial origins, may be {@code null}
+     * @param shards  the number of shards, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public LiveOriginSet(Iterable<String> origins, int shards) {
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new IllegalArgumentException("Invalid shard count: " + shards);
+        }
+        var bits = 32 - Integer.numberOfLeadingZeros(shards - 1);
+        this.shift = 32 - bits;
+        var sets = new HashMap[1 << bits];
+        for (var i = 0; i < sets.length; ++i) {
+            sets[i] = new HashMap<String, String>();
+        }
+        var count = 0;
+        if (origins != null) {
+            for (var origin : origins) {
+                if (origin == null) {
+                    continue;
+                }
+                var normalized = normalize(origin);
+                if (sets[index(normalized)].putIfAbsent(normalized, normalized) == null) {
+                    ++count;
+                }
+            }
+        }
+        var frozen = new Map[sets.length];
+        for (var i = 0; i < sets.length; ++i) {
+            frozen[i] = Collections.unmodifiableMap(sets[i]);
+        }
+        this.version = new Version(frozen, count, 0);
+    }
+
+    /**
+     * Creates a live set with the given initial origins, using at least {@link #DEFAULT_SHARDS} shards
+     * and enough shards to keep about a thousand origins per shard for collections.
+     *
+     * @param origins the initial origins, may be {@code null}
+     */
+    public LiveOriginSet(Iterable<String> origins) {
+        this(origins, shards(origins));
+    }
+
+    /**
+     * Creates an empty live set with {@link #DEFAULT_SHARDS} shards.
+     */
+    public LiveOriginSet() {
+        this(null, DEFAULT_SHARDS);
+    }
+
+    private static int shards(Iterable<String> origins) {
+        if (!(origins instanceof Collection)) {
+            return DEFAULT_SHARDS;
+        }
+        var size = ((Collection<String>) origins).size();
+        return Math.min(MAX_SHARDS, Math.max(DEFAULT_SHARDS, size / SHARD_SIZE));
+    }
+
+    private static String normalize(String origin) {
+        return origin.toLowerCase(Locale.ENGLISH);
+    }
+
+    /*
+     * Takes the shard from the high bits of a multiplicative hash, so entries of one shard
+     * still spread over the buckets of its HashMap, which indexes by the low bits.
+     */
+    private int index(String origin) {
+        var hash = origin.hashCode() * 0x9E3779B9;
+        return shift == 32 ? 0 : hash >>> shift;
+    }
+
+    private static Map<String, String> copy(Map<String, String>[] copies, Map<String, String>[] shards, int index) {
+        var ret = copies[index];
+        if (ret == null) {
+            ret = new HashMap<>(shards[index]);
+            copies[index] = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Atomically applies a delta to this set: adds the given origins, then removes the given ones.
+     *
+     * @param added   the origins to add, may be {@code null}
+     * @param removed the origins to remove, may be {@code null}
+     * @return the generation of the published version
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized long apply(Iterable<String> added, Iterable<String> removed) {
+        var current = version;
+        var shards = current.shards;
+        var copies = (Map<String, String>[]) new Map[shards.length];
+        var count = current.count;
+        if (added != null) {
+            for (var origin : added) {
+                if (origin == null) {
+                    continue;
+                }
+                var normalized = normalize(origin);
+                var index = index(normalized);
+                if (copies[index] != null || !shards[index].containsKey(normalized)) {
+                    if (copy(copies, shards, index).putIfAbsent(normalized, normalized) == null) {
+                        ++count;
+                    }
+                }
+            }
+        }
+        if (removed != null) {
+            for (var origin : removed) {
+                if (origin == null) {
+                    continue;
+                }
+                var normalized = normalize(origin);
+                var index = index(normalized);
+                if (copies[index] != null || shards[index].containsKey(normalized)) {
+                    if (copy(copies, shards, index).remove(normalized) != null) {
+                        --count;
+                    }
+                }
+            }
+        }
+        var changed = false;
+        var next = shards.clone();
+        for (var i = 0; i < copies.length; ++i) {
+            if (copies[i] != null) {
+                next[i] = Collections.unmodifiableMap(copies[i]);
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return current.generation;
+        }
+        var ret = new Version(next, count, current.generation + 1);
+        version = ret;
+        return ret.generation;
+    }
+
+    /**
+     * Atomically adds the given origins to this set.
+     *
+     * @param origins the origins to add
+     * @return the generation of the published version
+     */
+    public long add(String... origins) {
+        return apply(Arrays.asList(origins), null);
+    }
+
+    /**
+     * Atomically removes the given origins from this set.
+     *
+     * @param origins the origins to remove
+     * @return the generation of the published version
+     */
+    public long remove(String... origins) {
+        return apply(null, Arrays.asList(origins));
+    }
+
+    /**
+     * Returns the number of origins in the current version.
+     *
+     * @return the origin count
+     */
+    public int size() {
+        return version.count;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the shard count
+     */
+    public int shards() {
+        return version.shards.length;
+    }
+
+    @Override
+    public long generation() {
+        return version.generation;
+    }
+
+    @Override
+    public boolean matches(String origin) {
+        var shards = version.shards;
+        return shards[index(origin)].containsKey(origin);
+    }
+
+    @Override
+    public String canonical(String origin) {
+        var shards = version.shards;
+        var ret = shards[index(origin)].get(origin);
+        return ret == null ? origin : ret;
+    }
+
+    private static final class Version {
+        final Map<String, String>[] shards;
+        final int count;
+        final long generation;
+
+        Version(Map<String, String>[] shards, int count, long generation) {
+            this.shards = shards;
+            this.count = count;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package io.github.amayaframework.cors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Objects;
+
+/**
+ * Read-only store of allowed origins backed by a memory-mapped file.
+ * <p>
+ * Lookups run directly against the mapped bytes without copying them to the heap, so several JVMs
+ * mapping the same file on one host share a single copy of it in the OS page cache.
+ * The file is an open-addressing hash table of offsets to length-prefixed UTF-8 origin entries:
+ * the {@code ACRO} magic, the format version, the slot count (a power of two), the origin count,
+ * the slots (each is the offset of an entry or {@code 0} for an empty slot) and the entries,
+ * each being the spread {@link String#hashCode()} of the origin, its length in bytes and its bytes.
+ * A single mapping is limited to 2 GB.
+ * <p>
+ * Files are produced by {@link #write(Iterable, Path)}, which replaces the target atomically.
+ * A running store picks up a replaced file with {@link #refresh()}, which remaps it;
+ * lookups in flight complete against the previous mapping. Every slot and entry of a file is validated
+ * when it is mapped, so truncated or corrupt files are rejected there instead of failing lookups.
+ * Files must be replaced rather than modified in place, since mapped bytes are not validated again.
+ */
+public final class MappedOriginStore implements OriginMatcher {
+    /**
+     * Magic number opening every origin store file, {@code ACRO} in ASCII.
+     */
+    public static final int MAGIC = 0x4143524F;
+
+    /**
+     * Version of the origin store format written by this class.
+     */
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+
+    private final Path path;
+    private volatile Table table;
+
+    private MappedOriginStore(Path path, Table table) {
+        this.path = path;
+        this.table = table;
+    }
+
+    /*
+     * Spread String.hashCode, which the JVM caches per instance and computes with an intrinsic,
+     * so the table can be probed without encoding the request origin.
+     */
+    private static int hash(String origin) {
+        var ret = origin.hashCode();
+        return ret ^ (ret >>> 16);
+    }
+
+    private static int slots(int count) {
+        var ret = 2;
+        while (ret < count * 2L) {
+            ret <<= 1;
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the given origins into an origin store file.
+     * <p>
+     * Origins are lowercased and deduplicated the same way {@link CorsConfigBuilder} does it.
+     * The file is written to a temporary file next to the target and then moved over it,
+     * so mapped readers never observe a partially written file.
+     *
+     * @param origins the allowed origins
+     * @param path    the path of the origin store file
+     * @throws IOException if the file cannot be written or the origins do not fit in 2 GB
+     */
+    public static void write(Iterable<String> origins, Path path) throws IOException {
+        var allowed = new HashSet<String>();
+        Util.allow(allowed, origins);
+        var set = Util.toLowerCase(allowed);
+        var size = 0L;
+        for (var origin : set) {
+            size += 8 + origin.getBytes(StandardCharsets.UTF_8).length;
+        }
+        var slots = slots(set.size());
+        size += HEADER_SIZE + slots * 4L;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Origin store exceeds 2 GB: " + size + " bytes");
+        }
+        var buffer = ByteBuffer.allocate((int) size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(slots).putInt(set.size());
+        var mask = slots - 1;
+        var offset = HEADER_SIZE + slots * 4;
+        for (var origin : set) {
+            var hash = hash(origin);
+            var slot = hash & mask;
+            while (buffer.getInt(HEADER_SIZE + slot * 4) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            var bytes = origin.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(HEADER_SIZE + slot * 4, offset);
+            buffer.putInt(offset, hash);
+            buffer.putInt(offset + 4, bytes.length);
+            buffer.position(offset + 8);
+            buffer.put(bytes);
+            offset += 8 + bytes.length;
+        }
+        buffer.position(0);
+        var target = path.toAbsolutePath();
+        var temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (var channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Table map(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            var size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid origin store size: " + size + " bytes");
+            }
+            // The mapping stays valid after the channel is closed
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an origin store");
+            }
+            var version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported origin store version: " + version);
+            }
+            var slots = buffer.getInt(8);
+            if (slots <= 0 || (slots & (slots - 1)) != 0 || HEADER_SIZE + slots * 4L > size) {
+                throw new IOException("Invalid origin store slot count: " + slots);
+            }
+            var count = buffer.getInt(12);
+            // At least one empty slot is required to terminate probing
+            if (count < 0 || count >= slots) {
+                throw new IOException("Invalid origin store origin count: " + count);
+            }
+            validate(buffer, slots, count);
+            return new Table(buffer, slots - 1, count, attributes.fileKey(), attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    private static void validate(ByteBuffer buffer, int slots, int count) throws IOException {
+        var size = buffer.limit();
+        var entries = HEADER_SIZE + slots * 4;
+        var used = 0;
+        for (var slot = 0; slot < slots; ++slot) {
+            var entry = buffer.getInt(HEADER_SIZE + slot * 4);
+            if (entry == 0) {
+                continue;
+            }
+            // Check for entries outside the entry area or crossing the end of the file
+            if (entry < entries || entry > size - 8) {
+                throw new IOException("Invalid origin store entry offset: " + entry);
+            }
+            var length = buffer.getInt(entry + 4);
+            if (length < 0 || length > size - 8 - entry) {
+                throw new IOException("Invalid origin store entry length: " + length);
+            }
+            ++used;
+        }
+        if (used != count) {
+            throw new IOException("Origin store holds " + used + " origins, header declares " + count);
+        }
+    }
+
+    /**
+     * Maps the given origin store file.
+     *
+     * @param path the path of the origin store file
+     * @return the mapped store
+     * @throws IOException if the file cannot be mapped or is not a valid origin store of a supported version
+     */
+    public static MappedOriginStore open(Path path) throws IOException {
+        Objects.requireNonNull(path);
+        return new MappedOriginStore(path, map(path));
+    }
+
+    /**
+     * Returns the path of the mapped file.
+     *
+     * @return the file path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of origins in the currently mapped file.
+     *
+     * @return the origin count
+     */
+    public int size() {
+        return table.count;
+    }
+
+    /**
+     * Remaps the file if it has been replaced since it was mapped.
+     *
+     * @return {@code true} if the file was remapped, {@code false} if it is unchanged
+     * @throws IOException if the replaced file cannot be mapped; the previous mapping stays in use
+     */
+    public synchronized boolean refresh() throws IOException {
+        var current = table;
+        var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (Objects.equals(attributes.fileKey(), current.key)
+                && attributes.lastModifiedTime().toMillis() == current.modified) {
+            return false;
+        }
+        var next = map(path);
+        next.generation = current.generation + 1;
+        table = next;
+        return true;
+    }
+
+    @Override
+    public long generation() {
+        return table.generation;
+    }
+
+    @Override
+    public boolean matches(String origin) {
+        return table.contains(hash(origin), origin);
+    }
+
+    private static final class Table {
+        final ByteBuffer buffer;
+        final int mask;
+        final int count;
+        final Object key;
+        final long modified;
+        // Assigned before the table is published
+        long generation;
+
+        Table(ByteBuffer buffer, int mask, int count, Object key, long modified) {
+            this.buffer = buffer;
+            this.mask = mask;
+            this.count = count;
+            this.key = key;
+            this.modified = modified;
+        }
+
+        boolean contains(int hash, String origin) {
+            var length = origin.length();
+            var slot = hash & mask;
+            while (true) {
+                var entry = buffer.getInt(HEADER_SIZE + slot * 4);
+                if (entry == 0) {
+                    return false;
+                }
+                if (buffer.getInt(entry) == hash) {
+                    var size = buffer.getInt(entry + 4);
+                    // An origin with as many UTF-8 bytes as chars can only match if it is ASCII
+                    if (size == length ? same(entry + 8, origin) : encodedSame(entry + 8, size, origin)) {
+                        return true;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /*
+         * Every buffer access is a call guarded by bounds and liveness checks,
+         * so the bytes are compared 8 at a time against chars packed the same big-endian way.
+         * A char only fits its 8-bit lane if it is ASCII, any other char cannot match a stored byte.
+         */
+        private boolean same(int base, String origin) {
+            var length = origin.length();
+            var i = 0;
+            for (; i + 8 <= length; i += 8) {
+                var packed = 0L;
+                var bits = 0;
+                for (var j = i; j < i + 8; ++j) {
+                    var c = origin.charAt(j);
+                    packed = (packed << 8) | c;
+                    bits |= c;
+                }
+                // Check for non-ASCII chars, which spill into the neighbouring lanes or match UTF-8 bytes
+                if (bits >= 0x80 || buffer.getLong(base + i) != packed) {
+                    return false;
+                }
+            }
+            for (; i < length; ++i) {
+                if (buffer.get(base + i) != origin.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Only reached for non-ASCII origins or hash collisions, so encoding here is acceptable
+        private boolean encodedSame(int base, int size, String origin) {
+            var bytes = origin.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length != size) {
+                return false;
+            }
+            for (var i = 0; i < size; ++i) {
+                if (buffer.get(base + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Enumerates the origin matcher stages that can decide whether an origin is allowed.
+ */
+public enum MatchStage {
+    /**
+     * No origin restrictions are configured, so any origin is allowed.
+     */
+    ANY,
+
+    /**
+     * The origin was decided by the set of explicitly allowed origins.
+     */
+    EXACT,
+
+    /**
+     * The origin was decided by evaluating origin regex patterns.
+     */
+    REGEX,
+
+    /**
+     * The origin was decided by a previously cached regex verdict.
+     */
+    CACHE,
+
+    /**
+     * The origin was allowed by a pluggable {@link OriginMatcher}.
+     */
+    MATCHER
+}
@@ -0,0 +1,79 @@
+package io.github.amayaframework.cors;
+
+import java.util.Locale;
+import java.util.Set;
+
+/*
+ * Open-addressing table of lowercase names, looked up by a region of a char sequence
+ * without allocating. The region is stripped of whitespace and lowercased on the fly.
+ * ASCII regions are hashed like the equivalent lowercase String, regions with other
+ * characters fall back to String.toLowerCase, so results always match a lookup
+ * of region.strip().toLowerCase(Locale.ENGLISH) in the source set.
+ */
+final class NameTable {
+    private final Set<String> names;
+    private final String[] keys;
+    private final int mask;
+
+    NameTable(Set<String> names) {
+        this.names = names;
+        var capacity = Integer.highestOneBit(Math.max(2, names.size() * 2 - 1)) << 1;
+        this.keys = new String[capacity];
+        this.mask = capacity - 1;
+        for (var name : names) {
+            var index = mix(name.hashCode()) & mask;
+            while (keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = name;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c | 0x20) : c;
+    }
+
+    private static boolean matches(String key, CharSequence value, int start, int length) {
+        if (key.length() != length) {
+            return false;
+        }
+        for (var i = 0; i < length; ++i) {
+            if (key.charAt(i) != lower(value.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean contains(CharSequence value, int start, int end) {
+        while (start < end && Character.isWhitespace(value.charAt(start))) {
+            ++start;
+        }
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            --end;
+        }
+        var hash = 0;
+        for (var i = start; i < end; ++i) {
+            var c = value.charAt(i);
+            if (c >= 0x80) {
+                var name = value.subSequence(start, end).toString().toLowerCase(Locale.ENGLISH);
+                return names.contains(name);
+            }
+            hash = 31 * hash + lower(c);
+        }
+        var length = end - start;
+        var index = mix(hash) & mask;
+        String key;
+        while ((key = keys[index]) != null) {
+            if (matches(key, value, start, length)) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+}
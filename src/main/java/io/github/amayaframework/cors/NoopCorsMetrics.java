@@ -0,0 +1,34 @@
+package io.github.amayaframework.cors;
+
+final class NoopCorsMetrics implements CorsMetrics {
+    static final NoopCorsMetrics INSTANCE = new NoopCorsMetrics();
+    private static final CorsMetricsSnapshot EMPTY = new CorsMetricsSnapshot(
+            0, 0, 0, 0,
+            new long[CorsRejection.values().length],
+            new long[MatchStage.values().length]
+    );
+
+    private NoopCorsMetrics() {
+    }
+
+    @Override
+    public void onAllowed(boolean preflight) {
+    }
+
+    @Override
+    public void onRejected(boolean preflight, CorsRejection reason) {
+    }
+
+    @Override
+    public void onOriginMatch(MatchStage stage) {
+    }
+
+    @Override
+    public void onPreflight(String origin, String method, String headers) {
+    }
+
+    @Override
+    public CorsMetricsSnapshot snapshot() {
+        return EMPTY;
+    }
+}
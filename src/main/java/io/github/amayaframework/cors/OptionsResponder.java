@@ -0,0 +1,104 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers OPTIONS requests with the methods supported by the route of the request path.
+ * <p>
+ * The rendered value is used as the {@code Allow} header of non-preflight OPTIONS requests,
+ * which are then answered without reaching the application, and as the
+ * {@code Access-Control-Allow-Methods} header of credentialed preflight requests when no methods
+ * are configured, instead of all known methods. {@code OPTIONS} is always part of the value.
+ * <p>
+ * Values are rendered once per distinct method set and cached per request path, so answering
+ * a known path is a single lookup. Paths are client-controlled, so the path cache is simply
+ * dropped once it reaches its capacity. After the routes change, {@link #clear()} must be called.
+ */
+public final class OptionsResponder {
+    /**
+     * Default capacity of the path cache.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final String NO_ROUTE = "";
+
+    private final RouteMethods routes;
+    private final int capacity;
+    private final ConcurrentHashMap<String, String> paths;
+    private final ConcurrentHashMap<Collection<HttpMethod>, String> values;
+
+    /**
+     * Creates a new responder resolving routes with the given function.
+     *
+     * @param routes   the function resolving the methods of a request path
+     * @param capacity the maximum number of cached request paths
+     */
+    public OptionsResponder(RouteMethods routes, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid path cache capacity: " + capacity);
+        }
+        this.routes = Objects.requireNonNull(routes);
+        this.capacity = capacity;
+        this.paths = new ConcurrentHashMap<>();
+        this.values = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Creates a new responder resolving routes with the given function and the default path cache capacity.
+     *
+     * @param routes the function resolving the methods of a request path
+     */
+    public OptionsResponder(RouteMethods routes) {
+        this(routes, DEFAULT_CAPACITY);
+    }
+
+    private static String render(Collection<HttpMethod> methods) {
+        var builder = new StringBuilder();
+        var options = false;
+        for (var method : methods) {
+            if (builder.length() != 0) {
+                builder.append(", ");
+            }
+            builder.append(method);
+            options |= HttpMethod.OPTIONS.equals(method);
+        }
+        if (!options) {
+            if (builder.length() != 0) {
+                builder.append(", ");
+            }
+            builder.append(HttpMethod.OPTIONS);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the rendered methods supported by the route of the given request path.
+     *
+     * @param path the request path
+     * @return the rendered methods, or {@code null} if no route matches the path
+     */
+    public String allow(String path) {
+        var ret = paths.get(path);
+        if (ret == null) {
+            var methods = routes.resolve(path);
+            ret = methods == null ? NO_ROUTE : values.computeIfAbsent(methods, OptionsResponder::render);
+            if (paths.mappingCount() >= capacity) {
+                paths.clear();
+            }
+            paths.put(path, ret);
+        }
+        return ret == NO_ROUTE ? null : ret;
+    }
+
+    /**
+     * Drops all cached values, so the routes are resolved again.
+     */
+    public void clear() {
+        paths.clear();
+        values.clear();
+    }
+}
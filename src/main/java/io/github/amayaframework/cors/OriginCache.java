@@ -0,0 +1,31 @@
+package io.github.amayaframework.cors;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Bounded cache of regex verdicts keyed by the raw request origin.
+ * Origins are client-controlled, so instead of evicting entries one by one
+ * the cache is simply dropped once it reaches its capacity.
+ */
+final class OriginCache {
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final ConcurrentHashMap<String, Boolean> verdicts;
+    private final int capacity;
+
+    OriginCache(int capacity) {
+        this.verdicts = new ConcurrentHashMap<>();
+        this.capacity = capacity;
+    }
+
+    Boolean get(String origin) {
+        return verdicts.get(origin);
+    }
+
+    void put(String origin, boolean verdict) {
+        if (verdicts.mappingCount() >= capacity) {
+            verdicts.clear();
+        }
+        verdicts.put(origin, verdict);
+    }
+}
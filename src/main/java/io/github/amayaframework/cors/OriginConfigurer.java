@@ -1,6 +1,12 @@
 package io.github.amayaframework.cors;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Specialization of {@link AccessConfigurer} for configuring CORS origins.
@@ -54,6 +60,56 @@ public interface OriginConfigurer extends AccessConfigurer<String> {
     @Override
     OriginConfigurer allow(Iterable<String> values);
 
+    /**
+     * Adds origins from an iterable, normalizing each one to lower case as it is read.
+     * <p>
+     * Unlike {@link #allow(Iterable)}, the origins are stored already normalized,
+     * so building the config reuses the collected set without copying it.
+     * The default implementation delegates to {@link #allow(Iterable)}.
+     *
+     * @param values iterable of origins
+     * @return this configurer for chaining
+     */
+    default OriginConfigurer ingest(Iterable<String> values) {
+        return allow(values);
+    }
+
+    /**
+     * Adds origins from a stream, normalizing each one to lower case as it is read.
+     * The default implementation passes the stream to {@link #ingest(Iterable)}.
+     *
+     * @param values stream of origins
+     * @return this configurer for chaining
+     * @see #ingest(Iterable)
+     */
+    default OriginConfigurer ingest(Stream<String> values) {
+        return ingest(values == null ? null : (Iterable<String>) values::iterator);
+    }
+
+    /**
+     * Adds origins read line by line from a UTF-8 file, normalizing each one to lower case
+     * as it is read. Lines are trimmed, and blank lines are skipped.
+     * The default implementation reads the lines and passes them to {@link #ingest(Iterable)}.
+     *
+     * @param file the file with one origin per line
+     * @return this configurer for chaining
+     * @throws IOException if the file cannot be read
+     * @see #ingest(Iterable)
+     */
+    default OriginConfigurer ingest(Path file) throws IOException {
+        var lines = new ArrayList<String>();
+        try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.strip();
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return ingest(lines);
+    }
+
     /**
      * Denies all origins.
      *
@@ -119,4 +175,32 @@ public interface OriginConfigurer extends AccessConfigurer<String> {
      * @return this configurer for chaining
      */
     OriginConfigurer removeRegex(String regex);
+
+    /**
+     * Returns the matcher consulted for origins that are not allowed explicitly.
+     * <p>
+     * The default implementation supports no matcher and returns {@code null}.
+     *
+     * @return the origin matcher, or {@code null} if not set
+     */
+    default OriginMatcher matcher() {
+        return null;
+    }
+
+    /**
+     * Sets the matcher consulted for origins that are not allowed explicitly,
+     * for example a {@link MappedOriginStore}.
+     * <p>
+     * The default implementation supports no matcher and only accepts {@code null}.
+     *
+     * @param matcher the origin matcher, or {@code null} to remove it
+     * @return this configurer for chaining
+     * @throws UnsupportedOperationException if a matcher is given and the configurer does not support matchers
+     */
+    default OriginConfigurer matcher(OriginMatcher matcher) {
+        if (matcher != null) {
+            throw new UnsupportedOperationException("Origin matchers are not supported");
+        }
+        return this;
+    }
 }
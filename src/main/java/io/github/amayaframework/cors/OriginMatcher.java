@@ -0,0 +1,44 @@
+package io.github.amayaframework.cors;
+
+/**
+ * Pluggable matcher of request origins, consulted by {@link CorsTask} after the exact allowed origins.
+ * <p>
+ * Implementations must be thread-safe, as a single matcher is shared by all requests.
+ */
+@FunctionalInterface
+public interface OriginMatcher {
+
+    /**
+     * Checks whether the given request origin is allowed.
+     *
+     * @param origin the request origin, as sent by the client
+     * @return {@code true} if the origin is allowed, {@code false} otherwise
+     */
+    boolean matches(String origin);
+
+    /**
+     * Returns the instance to echo in {@code Access-Control-Allow-Origin} for an origin this matcher matches.
+     * <p>
+     * Matchers holding their origins on heap should return the stored instance equal to the given one,
+     * so responses share it instead of retaining the per-request string. Origins the matcher does not
+     * hold are returned as given, which is also what the default implementation does.
+     *
+     * @param origin the allowed request origin
+     * @return the canonical instance of the origin, equal to the given one
+     */
+    default String canonical(String origin) {
+        return origin;
+    }
+
+    /**
+     * Returns the generation of the matched origins, which changes whenever they change.
+     * <p>
+     * Caches of decisions derived from this matcher should be dropped once the generation
+     * differs from the one they were filled with. Immutable matchers keep the default {@code 0}.
+     *
+     * @return the current generation
+     */
+    default long generation() {
+        return 0;
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.amayaframework.cors;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/*
+ * Set of allowed origins mapping each origin to its stored instance, so responses can echo
+ * the allowlist instance instead of retaining the request string. It takes as much memory
+ * as a HashSet, which is backed by a map as well. Built configs freeze it.
+ */
+final class OriginSet extends AbstractSet<String> {
+    private final HashMap<String, String> map;
+    private boolean frozen;
+
+    OriginSet(int capacity) {
+        this.map = new HashMap<>(capacity);
+    }
+
+    OriginSet() {
+        this.map = new HashMap<>();
+    }
+
+    OriginSet(Collection<String> values) {
+        this(Util.capacity(values.size()));
+        for (var value : values) {
+            map.put(value, value);
+        }
+    }
+
+    /*
+     * Returns the stored instance equal to the given origin, or null if it is not in the set.
+     */
+    String canonical(String origin) {
+        return map.get(origin);
+    }
+
+    OriginSet freeze() {
+        frozen = true;
+        return this;
+    }
+
+    private void checkModifiable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("Origin set is frozen");
+        }
+    }
+
+    @Override
+    public boolean add(String value) {
+        checkModifiable();
+        return map.put(value, value) == null;
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        checkModifiable();
+        return map.remove(value) != null;
+    }
+
+    @Override
+    public void clear() {
+        checkModifiable();
+        map.clear();
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return map.containsKey(value);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        var keys = map.keySet();
+        return frozen ? Collections.unmodifiableSet(keys).iterator() : keys.iterator();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+}
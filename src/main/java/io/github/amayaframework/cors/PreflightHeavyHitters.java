@@ -0,0 +1,315 @@
+package io.github.amayaframework.cors;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-memory tracker of the (origin, method, headers) tuples driving preflight volume.
+ * <p>
+ * Each stripe is a Space-Saving summary of at most {@code capacity} tuples, kept in a min-heap
+ * ordered by count: a new tuple arriving at a full stripe replaces the least counted one and inherits
+ * its count as the error bound. Threads record into the stripe selected by their id and move on to
+ * the next stripe if it is busy, so recording scales across cores without a shared hot spot.
+ * Stripes are merged on read, see {@link #top(int)}.
+ * <p>
+ * Recording a tuple already tracked by the stripe does not allocate. Tuples are recorded as sent,
+ * so requested headers differing only in case or whitespace are tracked separately.
+ * Use {@link Cors#metrics(PreflightHeavyHitters)} to feed the tracker from the preflight handling.
+ */
+public final class PreflightHeavyHitters {
+    /**
+     * Default number of tuples tracked by each stripe.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final Summary[] stripes;
+    private final int mask;
+
+    /**
+     * Creates a new tracker with the given number of stripes.
+     *
+     * @param capacity the number of tuples tracked by each stripe
+     * @param stripes  the number of stripes, rounded up to a power of two
+     */
+    public PreflightHeavyHitters(int capacity, int stripes) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid heavy hitter capacity: " + capacity);
+        }
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Invalid heavy hitter stripe count: " + stripes);
+        }
+        var count = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Summary[count];
+        for (var i = 0; i < count; ++i) {
+            this.stripes[i] = new Summary(capacity);
+        }
+        this.mask = count - 1;
+    }
+
+    /**
+     * Creates a new tracker with one stripe per available processor.
+     *
+     * @param capacity the number of tuples tracked by each stripe
+     */
+    public PreflightHeavyHitters(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new tracker with {@link #DEFAULT_CAPACITY} tuples per stripe
+     * and one stripe per available processor.
+     */
+    public PreflightHeavyHitters() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Records a preflight request.
+     *
+     * @param origin  the request origin
+     * @param method  the requested method
+     * @param headers the requested headers, or {@code null} if none were requested
+     */
+    public void record(String origin, String method, String headers) {
+        var home = (int) Thread.currentThread().getId() & mask;
+        var index = home;
+        do {
+            var stripe = stripes[index];
+            if (stripe.lock.tryLock()) {
+                try {
+                    stripe.offer(origin, method, headers);
+                } finally {
+                    stripe.lock.unlock();
+                }
+                return;
+            }
+            index = (index + 1) & mask;
+        } while (index != home);
+        var stripe = stripes[home];
+        stripe.lock.lock();
+        try {
+            stripe.offer(origin, method, headers);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of stripes of this tracker.
+     *
+     * @return the number of stripes
+     */
+    public int stripes() {
+        return stripes.length;
+    }
+
+    /**
+     * Merges the stripes and returns the most frequent tuples, most frequent first.
+     * <p>
+     * Counts and errors of a tuple are summed over the stripes. A full stripe not holding the tuple may have
+     * evicted it after counting it up to its least count, so that count is added to both the count and the error
+     * of the tuple, keeping the true frequency between {@code count - error} and {@code count}. The merge is
+     * not atomic: preflights recorded concurrently may or may not be included.
+     *
+     * @param limit the maximum number of tuples to return
+     * @return the most frequent tuples
+     */
+    public List<HeavyHitter> top(int limit) {
+        if (limit < 1) {
+            return List.of();
+        }
+        // Each value holds the summed count, error and least counts of the full stripes holding the tuple
+        var merged = new HashMap<Tuple, long[]>();
+        var floor = 0L;
+        for (var stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                floor += stripe.drainTo(merged);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        var heap = new PriorityQueue<HeavyHitter>(limit + 1, Comparator.comparingLong(HeavyHitter::getCount));
+        for (var entry : merged.entrySet()) {
+            var tuple = entry.getKey();
+            var value = entry.getValue();
+            var missed = floor - value[2];
+            heap.add(new HeavyHitter(tuple.origin, tuple.method, tuple.headers, value[0] + missed, value[1] + missed));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        var ret = new ArrayList<HeavyHitter>(heap.size());
+        while (!heap.isEmpty()) {
+            ret.add(heap.poll());
+        }
+        Collections.reverse(ret);
+        return ret;
+    }
+
+    /**
+     * Forgets all recorded tuples.
+     */
+    public void reset() {
+        for (var stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private static class Tuple {
+        String origin;
+        String method;
+        String headers;
+        int hash;
+
+        Tuple(String origin, String method, String headers) {
+            set(origin, method, headers);
+        }
+
+        final void set(String origin, String method, String headers) {
+            this.origin = origin;
+            this.method = method;
+            this.headers = headers;
+            this.hash = (Objects.hashCode(origin) * 31 + Objects.hashCode(method)) * 31 + Objects.hashCode(headers);
+        }
+
+        @Override
+        public final int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public final boolean equals(Object object) {
+            if (this == object) {
+                return true;
+            }
+            if (!(object instanceof Tuple)) {
+                return false;
+            }
+            var tuple = (Tuple) object;
+            return hash == tuple.hash
+                    && Objects.equals(origin, tuple.origin)
+                    && Objects.equals(method, tuple.method)
+                    && Objects.equals(headers, tuple.headers);
+        }
+    }
+
+    private static final class Entry extends Tuple {
+        long count;
+        long error;
+        int index;
+
+        Entry(String origin, String method, String headers) {
+            super(origin, method, headers);
+        }
+    }
+
+    private static final class Summary {
+        final ReentrantLock lock;
+        final HashMap<Tuple, Entry> entries;
+        final Entry[] heap;
+        final Tuple probe;
+        int size;
+
+        Summary(int capacity) {
+            this.lock = new ReentrantLock();
+            this.entries = new HashMap<>(Util.capacity(capacity));
+            this.heap = new Entry[capacity];
+            this.probe = new Tuple(null, null, null);
+        }
+
+        void offer(String origin, String method, String headers) {
+            probe.set(origin, method, headers);
+            var entry = entries.get(probe);
+            if (entry != null) {
+                ++entry.count;
+                down(entry.index);
+                return;
+            }
+            if (size < heap.length) {
+                entry = new Entry(origin, method, headers);
+                entry.count = 1;
+                entry.index = size;
+                heap[size] = entry;
+                entries.put(entry, entry);
+                up(size++);
+                return;
+            }
+            // Replace the least counted tuple, reusing its entry
+            entry = heap[0];
+            entries.remove(entry);
+            entry.set(origin, method, headers);
+            entry.error = entry.count;
+            ++entry.count;
+            entries.put(entry, entry);
+            down(0);
+        }
+
+        private void swap(int i, int j) {
+            var entry = heap[i];
+            heap[i] = heap[j];
+            heap[j] = entry;
+            heap[i].index = i;
+            entry.index = j;
+        }
+
+        private void up(int index) {
+            while (index > 0) {
+                var parent = (index - 1) >>> 1;
+                if (heap[parent].count <= heap[index].count) {
+                    return;
+                }
+                swap(index, parent);
+                index = parent;
+            }
+        }
+
+        private void down(int index) {
+            while (true) {
+                var child = 2 * index + 1;
+                if (child >= size) {
+                    return;
+                }
+                if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                    ++child;
+                }
+                if (heap[index].count <= heap[child].count) {
+                    return;
+                }
+                swap(index, child);
+                index = child;
+            }
+        }
+
+        /*
+         * Adds the tuples of this stripe to the merged values and returns the least count a tuple evicted
+         * from it may have had, which is 0 while the stripe is not full.
+         */
+        long drainTo(Map<Tuple, long[]> merged) {
+            var floor = size < heap.length ? 0 : heap[0].count;
+            for (var i = 0; i < size; ++i) {
+                var entry = heap[i];
+                var value = merged.get(entry);
+                if (value == null) {
+                    value = new long[3];
+                    merged.put(new Tuple(entry.origin, entry.method, entry.headers), value);
+                }
+                value[0] += entry.count;
+                value[1] += entry.error;
+                value[2] += floor;
+            }
+            return floor;
+        }
+
+        void clear() {
+            entries.clear();
+            Arrays.fill(heap, 0, size, null);
+            size = 0;
+        }
+    }
+}
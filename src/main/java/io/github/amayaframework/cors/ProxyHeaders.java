@@ -12,6 +12,11 @@ public final class ProxyHeaders {
 
     public static final String VARY = "Vary";
 
+    /**
+     * Header listing the methods supported by the target resource, sent in answers to OPTIONS requests.
+     */
+    public static final String ALLOW = "Allow";
+
     /**
      * Value representing the Origin header in lowercase (for Vary).
      */
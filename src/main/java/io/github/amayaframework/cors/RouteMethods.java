@@ -0,0 +1,21 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+
+import java.util.Collection;
+
+/**
+ * Resolves the HTTP methods supported by the route a request path belongs to,
+ * used by the {@link OptionsResponder} to answer OPTIONS requests.
+ */
+@FunctionalInterface
+public interface RouteMethods {
+
+    /**
+     * Returns the methods supported by the route matching the given request path.
+     *
+     * @param path the request path
+     * @return the supported methods, or {@code null} if no route matches the path
+     */
+    Collection<HttpMethod> resolve(String path);
+}
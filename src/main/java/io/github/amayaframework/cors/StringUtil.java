@@ -1,5 +1,7 @@
 package io.github.amayaframework.cors;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Locale;
 
 final class StringUtil {
@@ -22,6 +24,51 @@ final class StringUtil {
         return builder.toString().toLowerCase(Locale.ENGLISH);
     }
 
+    /**
+     * Renders the given values like {@link #render(Iterable)}, sorting them when requested,
+     * so the rendering does not depend on the iteration order of a hash set.
+     */
+    static <V> String render(Iterable<V> values, boolean sorted) {
+        if (!sorted || values == null) {
+            return render(values);
+        }
+        var list = new ArrayList<String>();
+        for (var value : values) {
+            list.add(value.toString().toLowerCase(Locale.ENGLISH));
+        }
+        Collections.sort(list);
+        return render(list);
+    }
+
+    /**
+     * Lowercases the given comma-separated list and strips its whitespace,
+     * returning a string list as is when it is already normalized.
+     */
+    static String normalizeList(CharSequence list) {
+        var length = list.length();
+        var index = 0;
+        while (index < length) {
+            var c = list.charAt(index);
+            if (c == ' ' || c == '\t' || (c >= 'A' && c <= 'Z')) {
+                break;
+            }
+            ++index;
+        }
+        if (index == length) {
+            return list.toString();
+        }
+        var builder = new StringBuilder(length);
+        builder.append(list, 0, index);
+        for (; index < length; ++index) {
+            var c = list.charAt(index);
+            if (c == ' ' || c == '\t') {
+                continue;
+            }
+            builder.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return builder.toString();
+    }
+
     @SafeVarargs
     static <V> String render(V... values) {
         if (values == null) {
@@ -0,0 +1,138 @@
+package io.github.amayaframework.cors;
+
+import com.github.romanqed.jconv.Task;
+import com.github.romanqed.jconv.TaskConsumer;
+import io.github.amayaframework.context.HttpContext;
+import io.github.amayaframework.context.HttpRequest;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * A {@link TaskConsumer} applying the CORS policy of the tenant each request belongs to.
+ * <p>
+ * The tenant is resolved from the request, for example from a header or a request attribute,
+ * and its engine is taken from a {@link CorsPolicyRegistry}. Requests without a tenant,
+ * or of tenants unknown to the registry, are passed further without CORS headers,
+ * so browsers reject their cross-origin responses.
+ */
+public final class TenantCorsTask implements TaskConsumer<HttpContext> {
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final CorsPolicyRegistry registry;
+    private final Function<HttpRequest, String> resolver;
+
+    /**
+     * Creates a new {@code TenantCorsTask}.
+     *
+     * @param registry the registry of tenant policies
+     * @param resolver the function returning the tenant of a request, or {@code null} if it has none
+     */
+    public TenantCorsTask(CorsPolicyRegistry registry, Function<HttpRequest, String> resolver) {
+        this.registry = Objects.requireNonNull(registry);
+        this.resolver = Objects.requireNonNull(resolver);
+    }
+
+    /**
+     * Creates a new {@code TenantCorsTask} taking the tenant from the given request header.
+     * <p>
+     * Browsers never send custom headers with preflight requests, so the header must be set by a trusted
+     * proxy in front of the application, which must also drop it from client requests: otherwise preflight
+     * requests carry no tenant, and clients choose the policy applied to their requests.
+     *
+     * @param registry the registry of tenant policies
+     * @param header   the name of the header holding the tenant
+     */
+    public TenantCorsTask(CorsPolicyRegistry registry, String header) {
+        this(registry, byHeader(Objects.requireNonNull(header)));
+    }
+
+    private static Function<HttpRequest, String> byHeader(String header) {
+        return req -> req.header(header);
+    }
+
+    /**
+     * Returns the registry of tenant policies.
+     *
+     * @return the registry
+     */
+    public CorsPolicyRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Applies the CORS policy of the request tenant.
+     *
+     * @param context the HTTP context
+     * @return {@code true} if the next task in the chain should be executed,
+     * {@code false} if the request was answered
+     */
+    private boolean process(HttpContext context) {
+        var req = context.request();
+        var engine = registry.get(resolver.apply(req));
+        if (engine == null) {
+            return true;
+        }
+        return !CorsEngine.isAnswered(engine.apply(req, context.response()));
+    }
+
+    /**
+     * Executes this CORS task synchronously.
+     *
+     * @param context the HTTP context
+     * @param next    the next task in the chain
+     * @throws Throwable if the next task fails
+     */
+    @Override
+    public void run(HttpContext context, Task<HttpContext> next) throws Throwable {
+        if (process(context)) {
+            next.run(context);
+        }
+    }
+
+    /**
+     * Executes this CORS task asynchronously.
+     *
+     * @param context the HTTP context
+     * @param next    the next task in the chain
+     * @return a {@link CompletableFuture} representing completion
+     */
+    @Override
+    public CompletableFuture<Void> runAsync(HttpContext context, Task<HttpContext> next) {
+        if (process(context)) {
+            return next.runAsync(context);
+        }
+        return DONE;
+    }
+
+    /**
+     * Returns {@code true} because this task supports synchronous execution.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isSync() {
+        return true;
+    }
+
+    /**
+     * Returns {@code true} because this task supports asynchronous execution.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isAsync() {
+        return true;
+    }
+
+    /**
+     * Returns {@code true} because this task supports both synchronous and asynchronous execution.
+     *
+     * @return {@code true}
+     */
+    @Override
+    public boolean isUni() {
+        return true;
+    }
+}
@@ -1,7 +1,13 @@
 package io.github.amayaframework.cors;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 final class Util {
     private Util() {
@@ -18,17 +24,19 @@ final class Util {
         }
     }
 
+    static int capacity(int expected) {
+        return expected < 3 ? expected + 1 : (int) (expected / 0.75F + 1.0F);
+    }
+
     static <V> void allow(Set<V> set, Iterable<V> values) {
-        if (values instanceof Collection) {
-            set.addAll((Collection<V>) values);
-            set.removeIf(Objects::isNull);
-        } else if (values != null) {
-            for (var value : values) {
-                if (value == null) {
-                    continue;
-                }
-                set.add(value);
+        if (values == null) {
+            return;
+        }
+        for (var value : values) {
+            if (value == null) {
+                continue;
             }
+            set.add(value);
         }
     }
 
@@ -56,7 +64,89 @@ final class Util {
         }
     }
 
+    /*
+     * String.toLowerCase returns the same instance when there is nothing to change,
+     * so an already normalized set is detected without allocating and returned as is.
+     * Otherwise, the values are lowercased and deduplicated in one pass into a presized set.
+     */
     static Set<String> toLowerCase(Set<String> set) {
-        return set.stream().map(h -> h.toLowerCase(Locale.ENGLISH)).collect(Collectors.toSet());
+        var normalized = true;
+        for (var value : set) {
+            if (value.toLowerCase(Locale.ENGLISH) != value) {
+                normalized = false;
+                break;
+            }
+        }
+        if (normalized) {
+            return set;
+        }
+        var ret = new HashSet<String>(capacity(set.size()));
+        for (var value : set) {
+            ret.add(value.toLowerCase(Locale.ENGLISH));
+        }
+        return ret;
+    }
+
+    /*
+     * Runs the body for every index in [0, count) on the given pool. Each index is handled exactly once
+     * and results are expected to be stored by index, so the output does not depend on scheduling.
+     */
+    static void parallelFor(ForkJoinPool pool, int count, IntConsumer body) {
+        var threshold = Math.max(1, count / (pool.getParallelism() * 4));
+        pool.invoke(new Range(0, count, threshold, body));
+    }
+
+    /*
+     * Parallel version of toLowerCase. Values are lowercased in parallel into an array in the iteration
+     * order of the set and then inserted sequentially in that order, so the resulting set is identical,
+     * including its iteration order, to the one built sequentially.
+     */
+    static Set<String> toLowerCase(Set<String> set, ForkJoinPool pool) {
+        if (pool == null) {
+            return toLowerCase(set);
+        }
+        var values = set.toArray(new String[0]);
+        var changed = new boolean[1];
+        parallelFor(pool, values.length, i -> {
+            var value = values[i];
+            var lower = value.toLowerCase(Locale.ENGLISH);
+            if (lower != value) {
+                values[i] = lower;
+                // Benign race: every writer stores the same value, and invoke() publishes it
+                changed[0] = true;
+            }
+        });
+        if (!changed[0]) {
+            return set;
+        }
+        var ret = new HashSet<String>(capacity(values.length));
+        Collections.addAll(ret, values);
+        return ret;
+    }
+
+    private static final class Range extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final IntConsumer body;
+
+        private Range(int from, int to, int threshold, IntConsumer body) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                for (var i = from; i < to; ++i) {
+                    body.accept(i);
+                }
+                return;
+            }
+            var middle = (from + to) >>> 1;
+            invokeAll(new Range(from, middle, threshold, body), new Range(middle, to, threshold, body));
+        }
     }
 }
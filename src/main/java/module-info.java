@@ -5,17 +5,22 @@
  * <ul>
  *     <li>Builders and configurers for CORS policies ({@link io.github.amayaframework.cors.CorsConfigBuilder}, {@link io.github.amayaframework.cors.CorsApplicationConfigurer})</li>
  *     <li>Default CORS headers and constants ({@link io.github.amayaframework.cors.CorsHeaders}, {@link io.github.amayaframework.cors.ProxyHeaders}, {@link io.github.amayaframework.cors.CorsDefaults})</li>
+ *     <li>Framework-agnostic engine deciding CORS requests ({@link io.github.amayaframework.cors.CorsEngine}, {@link io.github.amayaframework.cors.HeaderSink})</li>
  *     <li>Task for handling CORS in HTTP requests ({@link io.github.amayaframework.cors.CorsTask})</li>
+ *     <li>Jakarta Servlet filter applying the same policy ({@link io.github.amayaframework.cors.CorsFilter})</li>
  * </ul>
  * <p>
- * Dependencies include core Amaya modules for HTTP handling, web applications, options management,
- * and tokenization, as well as utility libraries for synchronous and type-safe operations.
+ * Dependencies include core Amaya modules for HTTP handling, web applications and options management,
+ * as well as utility libraries for synchronous and type-safe operations.
  */
 module amayaframework.cors {
     // Imports
     // Basic dependencies
-    requires amayaframework.tokenize;
     requires com.github.romanqed.jtype;
+    requires jdk.jfr;
+    requires java.management;
+    // Optional servlet integration
+    requires static jakarta.servlet;
     // Amaya modules
     requires amayaframework.options;
     requires amayaframework.web;
@@ -0,0 +1,59 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class CorsBatchTests {
+    private static final HeaderSink<Object> SINK = new HeaderSink<>() {
+        @Override
+        public void set(Object target, String name, String value) {
+        }
+
+        @Override
+        public void add(Object target, String name, String value) {
+        }
+    };
+
+    @Test
+    public void corsBatchMatchesProcess() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com").addRegex("https://.*\\.b\\.com");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.PUT);
+        builder.allowedHeaders().allow("X-Token");
+        var engine = new CorsEngine(builder.build());
+        var origins = new String[]{"https://a.com", "https://x.b.com", "https://c.com", null};
+        var methods = new String[]{"GET", "OPTIONS", "OPTIONS", "OPTIONS"};
+        var requestedMethods = new String[]{null, "PUT", "DELETE", "PATCH"};
+        var requestedHeaders = new String[]{null, "x-token", "x-other", null};
+        var count = 10_000;
+        var batchOrigins = new String[count];
+        var batchMethods = new String[count];
+        var batchRequestedMethods = new String[count];
+        var batchRequestedHeaders = new String[count];
+        for (var i = 0; i < count; ++i) {
+            batchOrigins[i] = origins[i % 4];
+            batchMethods[i] = methods[(i / 4) % 4];
+            batchRequestedMethods[i] = requestedMethods[(i / 16) % 4];
+            batchRequestedHeaders[i] = requestedHeaders[(i / 64) % 4];
+        }
+        var batch = new CorsBatch(engine, new ForkJoinPool(4), 128);
+        var codes = batch.evaluate(batchOrigins, batchMethods, batchRequestedMethods, batchRequestedHeaders);
+        for (var i = 0; i < count; ++i) {
+            var expected = engine.process(
+                    batchOrigins[i], batchMethods[i], batchRequestedMethods[i], batchRequestedHeaders[i], SINK, null
+            );
+            assertEquals(expected, codes[i], "Request " + i);
+        }
+        var tally = CorsBatch.tally(codes, count);
+        assertEquals(count / 4, tally[CorsEngine.NONE]);
+        assertEquals(count, tally[0] + tally[1] + tally[2] + tally[3] + tally[4]);
+        assertTrue(tally[CorsEngine.REJECTED_HEADERS] > 0);
+        assertThrows(IllegalArgumentException.class, () -> batch.evaluate(
+                batchOrigins, new String[1], null, null, codes, count
+        ));
+    }
+}
@@ -3,7 +3,15 @@ package io.github.amayaframework.cors;
 import io.github.amayaframework.http.HttpMethod;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -118,4 +126,91 @@ public final class CorsConfigBuilderTests {
         assertTrue(config.isAllowCredentials());
         assertEquals(200, config.getMaxAge());
     }
+
+    @Test
+    public void corsConfigBuilderIngestsOrigins() throws IOException {
+        var file = Files.createTempFile("cors", ".origins");
+        try {
+            Files.writeString(file, "https://D.com\n\n  https://e.com  \n");
+            var builder = new CorsConfigBuilder();
+            builder.allowedOrigins()
+                    .ingest(List.of("https://A.com", "https://b.com"))
+                    .ingest(Stream.of("https://C.com", null))
+                    .ingest(file);
+            var origins = builder.build().getAllowedOrigins();
+            assertEquals(Set.of("https://a.com", "https://b.com", "https://c.com", "https://d.com", "https://e.com"), origins);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void fill(CorsConfigBuilder builder) {
+        for (var i = 0; i < 1000; ++i) {
+            builder.allowedOrigins().allow((i % 3 == 0 ? "HTTPS://A" : "https://a") + i + ".com");
+            builder.allowedOrigins().addRegex("https://.*\\.b" + i + "\\.com");
+        }
+    }
+
+    @Test
+    public void corsConfigBuilderParallelBuildIsDeterministic() {
+        var builder = new CorsConfigBuilder();
+        fill(builder);
+        var sequential = builder.build();
+        fill(builder);
+        var parallel = builder.parallelism(4).build();
+        assertEquals(new ArrayList<>(sequential.getAllowedOrigins()), new ArrayList<>(parallel.getAllowedOrigins()));
+        var expected = new ArrayList<String>();
+        sequential.getAllowedRegexes().forEach(p -> expected.add(p.pattern()));
+        var actual = new ArrayList<String>();
+        parallel.getAllowedRegexes().forEach(p -> actual.add(p.pattern()));
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void corsConfigBuilderCompilesRegexesLazily() {
+        var builder = new CorsConfigBuilder().lazyRegexes(true);
+        builder.allowedOrigins().addRegex("https://.*\\.a\\.com");
+        var regexes = builder.build().getAllowedRegexes();
+        assertEquals(1, regexes.size());
+        assertSame(regexes.get(0), regexes.get(0));
+        assertTrue(regexes.get(0).matcher("https://x.a.com").matches());
+        // Invalid regexes are only reported on first use
+        builder.allowedOrigins().addRegex("(");
+        var invalid = builder.build().getAllowedRegexes();
+        assertThrows(PatternSyntaxException.class, () -> invalid.get(0));
+    }
+
+    @Test
+    public void corsEngineCompilesLazyRegexesOnDemand() {
+        var builder = new CorsConfigBuilder().lazyRegexes(true);
+        builder.allowedOrigins().allowedRegexes(new LinkedHashSet<>(List.of("https://.*\\.a\\.com", "(")));
+        var engine = new CorsEngine(builder.build());
+        // The invalid second regex is not compiled while the first one matches
+        assertTrue(engine.checkOrigin("https://x.a.com"));
+        assertTrue(engine.checkOrigin("https://y.a.com"));
+        assertThrows(PatternSyntaxException.class, () -> engine.checkOrigin("https://b.com"));
+    }
+
+    @Test
+    public void lazyRegexesMatchWhileCompiledConcurrently() throws InterruptedException {
+        // A slow first regex, so the second one is compiled by another thread while the first compiles
+        var slow = new StringBuilder("https://(");
+        for (var i = 0; i < 20_000; ++i) {
+            slow.append(i == 0 ? "" : "|").append("x").append(i);
+        }
+        var sources = new String[]{slow.append(")\\.com").toString(), "https://.*\\.a\\.com"};
+        var start = System.nanoTime();
+        new LazyPatternList(sources).get(0);
+        var delay = (System.nanoTime() - start) / 2;
+        for (var i = 0; i < 20; ++i) {
+            var list = new LazyPatternList(sources);
+            var compiler = new Thread(() -> {
+                LockSupport.parkNanos(delay);
+                list.get(1);
+            });
+            compiler.start();
+            assertTrue(list.matches("https://x.a.com"));
+            compiler.join();
+        }
+    }
 }
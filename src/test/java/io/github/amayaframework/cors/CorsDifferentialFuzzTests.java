@@ -0,0 +1,735 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpCode;
+import io.github.amayaframework.http.HttpMethod;
+import io.github.amayaframework.tokenize.Tokenizers;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Seeded differential fuzzing of {@link CorsEngine}, compiled directly and loaded from a {@link CorsSnapshot},
+ * and of {@link CorsTask} running on {@link FakeHttp}, against a plain reference model of the original
+ * {@link CorsTask} semantics.
+ * <p>
+ * Configs are set up either with the raw {@link CorsConfig} setters or with {@link CorsConfigBuilder},
+ * with random parallelism and lazy regexes, and with allowed origins held either by the config
+ * or by a {@link LiveOriginSet}, so the optimized build paths are fuzzed as well.
+ * <p>
+ * Configs are fuzzed in parallel, each one by a reused engine so its caches see repeated and adversarial
+ * origins. The first divergence is shrunk to a minimal reproducer. The run is tuned with the
+ * {@code cors.fuzz.seed}, {@code cors.fuzz.configs} and {@code cors.fuzz.cases} system properties,
+ * and runs in its own JVM with {@code gradle fuzzTest}.
+ */
+@Tag("fuzz")
+public final class CorsDifferentialFuzzTests {
+    private static final long SEED = Long.getLong("cors.fuzz.seed", 0x5EEDL);
+    private static final int CONFIGS = Integer.getInteger("cors.fuzz.configs", 512);
+    private static final int CASES = Integer.getInteger("cors.fuzz.cases", 2048);
+
+    private static final String[] ORIGINS = {
+            "https://a.com", "https://b.com", "http://a.com", "https://A.com", "https://sub.example.com",
+            "http://localhost:8080", "null", "https://ä.com", "https://xn--4ca.com", "https://a.com:443"
+    };
+    private static final String[] REGEXES = {
+            "https://[a-z]+\\.example\\.com", ".*\\.test", "http://localhost:\\d+", "https://(a|b)\\.com", ".*", ""
+    };
+    private static final String[] HEADERS = {
+            "x-token", "content-type", "authorization", "x-kelvin", "x-ä", "X-Upper", "accept"
+    };
+    private static final String[] METHODS = {
+            "GET", "HEAD", "POST", "PUT", "DELETE", "PATCH", "OPTIONS", "TRACE", "CONNECT", "get", "FOO", ""
+    };
+    private static final String[] PADS = {"", "", "", " ", "  ", "\t", " ", " "};
+    private static final Set<String> LISTS = Set.of(
+            CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS,
+            CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS,
+            CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS
+    );
+    private static final String ALL_METHODS = render(HttpMethod.all().values());
+    // Each fake generates classes, so fuzzing threads reuse theirs
+    private static final ThreadLocal<FakeHttp> FAKES = ThreadLocal.withInitial(FakeHttp::new);
+    private static final HeaderSink<Map<String, List<String>>> SINK = new HeaderSink<>() {
+        @Override
+        public void set(Map<String, List<String>> target, String name, String value) {
+            var values = new ArrayList<String>(1);
+            values.add(value);
+            target.put(name, values);
+        }
+
+        @Override
+        public void add(Map<String, List<String>> target, String name, String value) {
+            target.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value);
+        }
+    };
+
+    // The reference model, written after the original CorsTask without any of its later optimizations
+
+    private static String render(Iterable<?> values) {
+        if (values == null || !values.iterator().hasNext()) {
+            return null;
+        }
+        var joiner = new StringJoiner(",");
+        values.forEach(value -> joiner.add(String.valueOf(value)));
+        return joiner.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private static boolean checkOrigin(CorsConfig config, String origin) {
+        if (config.allowedOrigins != null && config.allowedOrigins.contains(origin)) {
+            return true;
+        }
+        if (config.originMatcher != null && config.originMatcher.matches(origin)) {
+            return true;
+        }
+        if (config.allowedRegexes != null && !config.allowedRegexes.isEmpty()) {
+            for (var pattern : config.allowedRegexes) {
+                if (pattern.matcher(origin).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return config.allowedOrigins == null && config.originMatcher == null;
+    }
+
+    private static String renderOrigin(CorsConfig config, String origin) {
+        return config.allowedOrigins == null && config.originMatcher == null && config.allowedRegexes == null
+                ? "*"
+                : origin;
+    }
+
+    private static boolean checkHeaders(CorsConfig config, String headers) {
+        if (config.allowedHeaders == null) {
+            return true;
+        }
+        // Split the way CorsTask did before the engine matched header names in place
+        for (var header : Tokenizers.split(headers, ",")) {
+            if (!config.allowedHeaders.contains(header.strip().toLowerCase(Locale.ENGLISH))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Response reference(CorsConfig config, Case c) {
+        var ret = new Response();
+        if (c.origin == null) {
+            return ret;
+        }
+        var headers = ret.headers;
+        var methods = render(config.allowedMethods);
+        var exposed = render(config.exposedHeaders);
+        if ("OPTIONS".equals(c.method) && c.requestedMethod != null) {
+            ret.answered = true;
+            var requested = HttpMethod.of(c.requestedMethod);
+            if (!checkOrigin(config, c.origin)
+                    || requested == null
+                    || (config.allowedMethods != null && !config.allowedMethods.contains(requested))
+                    || (c.requestedHeaders != null && !checkHeaders(config, c.requestedHeaders))) {
+                return ret;
+            }
+            ret.allowed = true;
+            var allowedHeaders = render(config.allowedHeaders);
+            if (config.maxAge >= 0) {
+                headers.put(CorsHeaders.ACCESS_CONTROL_MAX_AGE, List.of(Integer.toString(config.maxAge)));
+            }
+            if (config.allowCredentials) {
+                headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, List.of("true"));
+                headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, List.of(c.origin));
+                headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS, List.of(methods == null ? ALL_METHODS : methods));
+                if (allowedHeaders != null) {
+                    headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, List.of(allowedHeaders));
+                } else if (c.requestedHeaders != null) {
+                    headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, List.of(c.requestedHeaders));
+                }
+                headers.put(ProxyHeaders.VARY, List.of(ProxyHeaders.CREDENTIALS_PREFLIGHT_VALUE));
+            } else {
+                headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, List.of(renderOrigin(config, c.origin)));
+                headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS, List.of(methods == null ? "*" : methods));
+                headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS,
+                        List.of(allowedHeaders == null ? "*" : allowedHeaders));
+                headers.put(ProxyHeaders.VARY, List.of(ProxyHeaders.ORIGIN_VALUE));
+            }
+            return ret;
+        }
+        if (!checkOrigin(config, c.origin)) {
+            return ret;
+        }
+        ret.allowed = true;
+        headers.put(ProxyHeaders.VARY, List.of(ProxyHeaders.ORIGIN_VALUE));
+        if (config.allowCredentials) {
+            headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, List.of("true"));
+            headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, List.of(c.origin));
+            if (exposed != null) {
+                headers.put(CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, List.of(exposed));
+            }
+        } else {
+            headers.put(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, List.of(renderOrigin(config, c.origin)));
+            headers.put(CorsHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, List.of(exposed == null ? "*" : exposed));
+        }
+        return ret;
+    }
+
+    // The optimized paths under test
+
+    private static Response actual(CorsEngine engine, Case c) {
+        var ret = new Response();
+        var code = engine.process(c.origin, c.method, c.requestedMethod, c.requestedHeaders, SINK, ret.headers);
+        ret.answered = CorsEngine.isAnswered(code);
+        ret.allowed = CorsEngine.isAllowed(code);
+        return ret;
+    }
+
+    private static Response actual(CorsTask task, Case c) {
+        var ret = new Response();
+        var method = HttpMethod.of(c.method);
+        // The task only sees methods the framework parses
+        if (method == null) {
+            return null;
+        }
+        var http = FAKES.get().prepare(method, c.origin, c.requestedMethod, c.requestedHeaders);
+        var next = new CorsTaskTests.TestTask();
+        try {
+            task.run(http.context(), next);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        http.headers((name, value) -> ret.headers.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value));
+        ret.answered = !next.isRan();
+        ret.allowed = ret.headers.containsKey(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN);
+        // Answered requests must be answered with 204 No Content, the others must keep their status
+        if (http.status() != (ret.answered ? HttpCode.NO_CONTENT : null)) {
+            ret.headers.put(":status", List.of(String.valueOf(http.status())));
+        }
+        return ret;
+    }
+
+    private static CorsEngine loaded(CorsConfig config) {
+        try {
+            var loaded = CorsSnapshot.read(CorsSnapshot.write(config));
+            // Matchers are not part of snapshots
+            loaded.setOriginMatcher(config.originMatcher);
+            return new CorsEngine(loaded);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compares the response of the reference model with the responses of the given engines.
+     *
+     * @return the description of the divergence, or {@code null} if there is none
+     */
+    private static String diverge(CorsConfig config, CorsEngine compiled, CorsEngine loaded, CorsTask task, Case c) {
+        var expected = reference(config, c);
+        var direct = actual(compiled, c);
+        if (!expected.equals(direct)) {
+            return "compiled engine: expected " + expected + ", got " + direct;
+        }
+        var adapted = actual(task, c);
+        if (adapted != null && !expected.equals(adapted)) {
+            return "task: expected " + expected + ", got " + adapted;
+        }
+        // Loaded sets may iterate in another order, so rendered lists are compared as sorted tokens
+        var snapshot = actual(loaded, c);
+        if (!expected.sorted().equals(snapshot.sorted())) {
+            return "snapshot engine: expected " + expected + ", got " + snapshot;
+        }
+        return null;
+    }
+
+    private static String diverge(Case c) {
+        var config = c.config();
+        return diverge(config, new CorsEngine(config), loaded(config), new CorsTask(config), c);
+    }
+
+    // Generation
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static List<String> pickList(Random random, String[] values, int max) {
+        if (random.nextInt(4) == 0) {
+            return null;
+        }
+        var ret = new ArrayList<String>();
+        var count = random.nextInt(max + 1);
+        for (var i = 0; i < count; ++i) {
+            var value = pick(random, values);
+            if (!ret.contains(value)) {
+                ret.add(value);
+            }
+        }
+        return ret;
+    }
+
+    private static String mutateCase(Random random, String value) {
+        if (random.nextInt(3) != 0) {
+            return value;
+        }
+        var chars = value.toCharArray();
+        for (var i = 0; i < chars.length; ++i) {
+            if (random.nextBoolean()) {
+                chars[i] = Character.toUpperCase(chars[i]);
+            }
+        }
+        return new String(chars);
+    }
+
+    private static String randomOrigin(Random random, Case spec) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return null;
+            case 1:
+                return "";
+            case 2:
+                return "https://" + "abcxyz".charAt(random.nextInt(6)) + ".example.com";
+            case 3:
+                return "http://" + "abq".charAt(random.nextInt(3)) + ".test";
+            case 4:
+                return pick(random, ORIGINS) + pick(random, new String[]{"/", " ", "\u0000", "."});
+            case 5:
+                // Client-controlled origins never seen twice, filling up the verdict cache
+                return "https://" + Long.toHexString(random.nextLong()) + ".test";
+            default:
+                var origins = spec.origins;
+                var origin = origins == null || origins.isEmpty() || random.nextBoolean()
+                        ? pick(random, ORIGINS)
+                        : origins.get(random.nextInt(origins.size()));
+                return mutateCase(random, origin);
+        }
+    }
+
+    private static String randomHeaders(Random random, Case spec) {
+        if (random.nextInt(4) == 0) {
+            return null;
+        }
+        var count = 1 + random.nextInt(3);
+        var builder = new StringBuilder();
+        for (var i = 0; i < count; ++i) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            String header;
+            switch (random.nextInt(8)) {
+                case 0:
+                    header = "";
+                    break;
+                case 1:
+                    // Kelvin sign, lowercased to an ASCII 'k' only by the full case mapping
+                    header = "x-Kelvin";
+                    break;
+                case 2:
+                    header = "x-unknown";
+                    break;
+                default:
+                    var headers = spec.headers;
+                    header = headers == null || headers.isEmpty() || random.nextInt(4) == 0
+                            ? pick(random, HEADERS)
+                            : headers.get(random.nextInt(headers.size()));
+            }
+            builder.append(pick(random, PADS)).append(mutateCase(random, header)).append(pick(random, PADS));
+        }
+        return builder.toString();
+    }
+
+    private static Case randomSpec(Random random) {
+        var origins = pickList(random, ORIGINS, 4);
+        var regexes = random.nextInt(3) == 0 ? pickList(random, REGEXES, 2) : null;
+        var methods = pickList(random, new String[]{"GET", "HEAD", "POST", "PUT", "DELETE", "PATCH"}, 3);
+        var headers = pickList(random, HEADERS, 3);
+        var exposed = pickList(random, HEADERS, 2);
+        var maxAge = random.nextBoolean() ? -1 : random.nextInt(3) * 600;
+        var credentials = random.nextBoolean();
+        // Raw setters or the builder with 1 to 4 threads
+        var parallelism = random.nextInt(5);
+        var lazy = parallelism != 0 && random.nextBoolean();
+        var live = parallelism != 0 && origins != null && random.nextBoolean();
+        return new Case(origins, regexes, methods, headers, exposed, credentials, maxAge, parallelism, lazy, live,
+                null, null, null, null);
+    }
+
+    private static Case randomCase(Random random, Case spec) {
+        var preflight = random.nextInt(3) != 0;
+        var method = preflight ? "OPTIONS" : pick(random, METHODS);
+        var requestedMethod = preflight || random.nextInt(4) == 0 ? pick(random, METHODS) : null;
+        return spec.with(randomOrigin(random, spec), method, requestedMethod, randomHeaders(random, spec));
+    }
+
+    private static Failure fuzz(long seed) {
+        var random = new Random(seed);
+        var spec = randomSpec(random);
+        var config = spec.config();
+        var compiled = new CorsEngine(config);
+        var loaded = loaded(config);
+        var task = new CorsTask(config);
+        for (var i = 0; i < CASES; ++i) {
+            var c = randomCase(random, spec);
+            var message = diverge(config, compiled, loaded, task, c);
+            if (message != null) {
+                return new Failure(seed, c, message);
+            }
+        }
+        return null;
+    }
+
+    // Minimization
+
+    private static Case minimize(Case c) {
+        var steps = 0;
+        var changed = true;
+        while (changed && steps < 10_000) {
+            changed = false;
+            for (var candidate : c.shrinks()) {
+                ++steps;
+                if (diverge(candidate) != null) {
+                    c = candidate;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        return c;
+    }
+
+    @Test
+    public void corsEngineMatchesReferenceModel() {
+        var failure = IntStream.range(0, CONFIGS)
+                .parallel()
+                .mapToObj(i -> fuzz(SEED + i))
+                .filter(Objects::nonNull)
+                .findFirst();
+        if (failure.isEmpty()) {
+            return;
+        }
+        var found = failure.get();
+        var message = diverge(found.c);
+        if (message == null) {
+            fail("Divergence depending on previous inputs, reproduce with -Dcors.fuzz.seed=" + found.seed
+                    + " -Dcors.fuzz.configs=1: " + found.message + "\n" + found.c);
+        }
+        var minimal = minimize(found.c);
+        fail("Divergence found with seed " + found.seed + ": " + diverge(minimal) + "\nMinimal reproducer: " + minimal);
+    }
+
+    @Test
+    public void corsEngineMatchesReferenceOnEmptyHeaderTokens() {
+        var c = new Case(
+                List.of("https://a.com"), null, null, List.of("a", "b"), null, false, -1, 0, false, false,
+                "https://a.com", "OPTIONS", "GET", null
+        );
+        for (var headers : List.of("a,,b", "a,", ",a", ",", "", " , ", "a, ,b")) {
+            assertNull(diverge(c.with(c.origin, c.method, c.requestedMethod, headers)), headers);
+        }
+    }
+
+    @Test
+    public void fuzzMinimizerShrinksCases() {
+        var c = new Case(
+                List.of("https://a.com", "https://b.com"), List.of(".*\\.test"), List.of("GET", "PUT"),
+                List.of("x-token"), List.of("accept"), true, 600, 2, true, true,
+                "https://b.com", "OPTIONS", "PUT", "x-token, accept"
+        );
+        assertNull(diverge(c));
+        // Shrinks towards the smallest case still failing the given property
+        var minimal = c;
+        var changed = true;
+        while (changed) {
+            changed = false;
+            for (var candidate : minimal.shrinks()) {
+                if (candidate.origins != null && candidate.origins.contains("https://b.com")) {
+                    minimal = candidate;
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        assertEquals(List.of("https://b.com"), minimal.origins);
+        assertNull(minimal.regexes);
+        assertNull(minimal.requestedHeaders);
+        assertFalse(minimal.credentials);
+        assertEquals(-1, minimal.maxAge);
+        assertEquals(0, minimal.parallelism);
+    }
+
+    private static final class Failure {
+        final long seed;
+        final Case c;
+        final String message;
+
+        Failure(long seed, Case c, String message) {
+            this.seed = seed;
+            this.c = c;
+            this.message = message;
+        }
+    }
+
+    private static final class Response {
+        final Map<String, List<String>> headers = new TreeMap<>();
+        boolean answered;
+        boolean allowed;
+
+        Response sorted() {
+            var ret = new Response();
+            ret.answered = answered;
+            ret.allowed = allowed;
+            headers.forEach((name, values) -> ret.headers.put(name, !LISTS.contains(name) ? values : values.stream()
+                    .map(value -> Arrays.stream(value.split(",")).sorted().collect(Collectors.joining(",")))
+                    .collect(Collectors.toList())));
+            return ret;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Response)) {
+                return false;
+            }
+            var response = (Response) object;
+            return answered == response.answered && allowed == response.allowed && headers.equals(response.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return headers.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "{answered=" + answered + ", allowed=" + allowed + ", headers=" + headers + '}';
+        }
+    }
+
+    /*
+     * A config together with a request, so a divergence can be shrunk as a whole.
+     */
+    private static final class Case {
+        final List<String> origins;
+        final List<String> regexes;
+        final List<String> methods;
+        final List<String> headers;
+        final List<String> exposed;
+        final boolean credentials;
+        final int maxAge;
+        // 0 for the raw setters, the builder parallelism otherwise
+        final int parallelism;
+        final boolean lazy;
+        final boolean live;
+        final String origin;
+        final String method;
+        final String requestedMethod;
+        final String requestedHeaders;
+
+        Case(List<String> origins,
+             List<String> regexes,
+             List<String> methods,
+             List<String> headers,
+             List<String> exposed,
+             boolean credentials,
+             int maxAge,
+             int parallelism,
+             boolean lazy,
+             boolean live,
+             String origin,
+             String method,
+             String requestedMethod,
+             String requestedHeaders) {
+            this.origins = origins;
+            this.regexes = regexes;
+            this.methods = methods;
+            this.headers = headers;
+            this.exposed = exposed;
+            this.credentials = credentials;
+            this.maxAge = maxAge;
+            this.parallelism = parallelism;
+            this.lazy = lazy;
+            this.live = live;
+            this.origin = origin;
+            this.method = method;
+            this.requestedMethod = requestedMethod;
+            this.requestedHeaders = requestedHeaders;
+        }
+
+        Case with(String origin, String method, String requestedMethod, String requestedHeaders) {
+            return new Case(origins, regexes, methods, headers, exposed, credentials, maxAge, parallelism, lazy, live,
+                    origin, method, requestedMethod, requestedHeaders);
+        }
+
+        private static Set<String> set(List<String> values) {
+            return values == null ? null : new LinkedHashSet<>(values);
+        }
+
+        CorsConfig config() {
+            if (parallelism != 0) {
+                return build();
+            }
+            var ret = new CorsConfig();
+            ret.setAllowedOrigins(set(origins));
+            ret.setAllowedRegexes(regexes == null
+                    ? null
+                    : regexes.stream().map(Pattern::compile).collect(Collectors.toList()));
+            ret.setAllowedMethods(methods == null
+                    ? null
+                    : methods.stream().map(HttpMethod::of).collect(Collectors.toCollection(LinkedHashSet::new)));
+            ret.setAllowedHeaders(set(headers));
+            ret.setExposedHeaders(set(exposed));
+            ret.setAllowCredentials(credentials);
+            ret.setMaxAge(maxAge);
+            return ret;
+        }
+
+        private CorsConfig build() {
+            var builder = new CorsConfigBuilder().parallelism(parallelism).lazyRegexes(lazy);
+            if (origins != null || regexes != null) {
+                var configurer = builder.allowedOrigins();
+                if (live) {
+                    configurer.matcher(new LiveOriginSet(origins));
+                } else if (origins != null) {
+                    configurer.allow(origins);
+                }
+                if (regexes != null) {
+                    regexes.forEach(configurer::addRegex);
+                }
+            }
+            if (methods != null) {
+                builder.allowedMethods().allow(methods.stream().map(HttpMethod::of).collect(Collectors.toList()));
+            }
+            if (headers != null) {
+                builder.allowedHeaders().allow(headers);
+            }
+            if (exposed != null) {
+                builder.exposedHeaders().allow(exposed);
+            }
+            return builder.allowCredentials(credentials).maxAge(maxAge).build();
+        }
+
+        private static List<List<String>> shrinks(List<String> values) {
+            var ret = new ArrayList<List<String>>();
+            if (values == null) {
+                return ret;
+            }
+            ret.add(null);
+            for (var i = 0; i < values.size(); ++i) {
+                var shrunk = new ArrayList<>(values);
+                shrunk.remove(i);
+                ret.add(shrunk);
+            }
+            return ret;
+        }
+
+        private static List<String> shrinks(String value, String separator) {
+            var ret = new ArrayList<String>();
+            if (value == null) {
+                return ret;
+            }
+            ret.add(null);
+            var parts = separator == null ? new String[]{value} : value.split(separator, -1);
+            if (parts.length > 1) {
+                for (var i = 0; i < parts.length; ++i) {
+                    var shrunk = new ArrayList<>(Arrays.asList(parts));
+                    shrunk.remove(i);
+                    ret.add(String.join(separator, shrunk));
+                }
+            }
+            for (var i = 0; i < value.length(); ++i) {
+                ret.add(value.substring(0, i) + value.substring(i + 1));
+            }
+            return ret;
+        }
+
+        List<Case> shrinks() {
+            var ret = new ArrayList<Case>();
+            for (var shrunk : shrinks(origins)) {
+                ret.add(new Case(shrunk, regexes, methods, headers, exposed, credentials, maxAge,
+                        parallelism, lazy, live, origin, method, requestedMethod, requestedHeaders));
+            }
+            for (var shrunk : shrinks(regexes)) {
+                ret.add(new Case(origins, shrunk, methods, headers, exposed, credentials, maxAge,
+                        parallelism, lazy, live, origin, method, requestedMethod, requestedHeaders));
+            }
+            for (var shrunk : shrinks(methods)) {
+                ret.add(new Case(origins, regexes, shrunk, headers, exposed, credentials, maxAge,
+                        parallelism, lazy, live, origin, method, requestedMethod, requestedHeaders));
+            }
+            for (var shrunk : shrinks(headers)) {
+                ret.add(new Case(origins, regexes, methods, shrunk, exposed, credentials, maxAge,
+                        parallelism, lazy, live, origin, method, requestedMethod, requestedHeaders));
+            }
+            for (var shrunk : shrinks(exposed)) {
+                ret.add(new Case(origins, regexes, methods, headers, shrunk, credentials, maxAge,
+                        parallelism, lazy, live, origin, method, requestedMethod, requestedHeaders));
+            }
+            if (credentials) {
+                ret.add(new Case(origins, regexes, methods, headers, exposed, false, maxAge,
+                        parallelism, lazy, live, origin, method, requestedMethod, requestedHeaders));
+            }
+            if (maxAge >= 0) {
+                ret.add(new Case(origins, regexes, methods, headers, exposed, credentials, -1,
+                        parallelism, lazy, live, origin, method, requestedMethod, requestedHeaders));
+            }
+            if (parallelism != 0) {
+                ret.add(new Case(origins, regexes, methods, headers, exposed, credentials, maxAge,
+                        0, false, false, origin, method, requestedMethod, requestedHeaders));
+            }
+            for (var shrunk : shrinks(requestedHeaders, ",")) {
+                ret.add(with(origin, method, requestedMethod, shrunk));
+            }
+            if (requestedMethod != null) {
+                ret.add(with(origin, method, null, requestedHeaders));
+            }
+            for (var shrunk : shrinks(origin, null)) {
+                ret.add(with(shrunk, method, requestedMethod, requestedHeaders));
+            }
+            return ret;
+        }
+
+        private static String quote(String value) {
+            if (value == null) {
+                return "null";
+            }
+            var builder = new StringBuilder("\"");
+            for (var c : value.toCharArray()) {
+                if (c < 0x20 || c >= 0x7F || c == '"' || c == '\\') {
+                    builder.append(String.format("\\u%04x", (int) c));
+                } else {
+                    builder.append(c);
+                }
+            }
+            return builder.append('"').toString();
+        }
+
+        private static String quote(List<String> values) {
+            return values == null
+                    ? "null"
+                    : values.stream().map(Case::quote).collect(Collectors.joining(", ", "[", "]"));
+        }
+
+        @Override
+        public String toString() {
+            return "Case{" +
+                    "origins=" + quote(origins) +
+                    ", regexes=" + quote(regexes) +
+                    ", methods=" + quote(methods) +
+                    ", headers=" + quote(headers) +
+                    ", exposed=" + quote(exposed) +
+                    ", credentials=" + credentials +
+                    ", maxAge=" + maxAge +
+                    ", parallelism=" + parallelism +
+                    ", lazy=" + lazy +
+                    ", live=" + live +
+                    ", origin=" + quote(origin) +
+                    ", method=" + quote(method) +
+                    ", requestedMethod=" + quote(requestedMethod) +
+                    ", requestedHeaders=" + quote(requestedHeaders) +
+                    '}';
+        }
+    }
+}
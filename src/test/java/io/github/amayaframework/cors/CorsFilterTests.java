@@ -0,0 +1,82 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.Mockito.*;
+
+public final class CorsFilterTests {
+
+    private static CorsFilter filter() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.PUT);
+        builder.allowedHeaders().allow("X-Test");
+        return new CorsFilter(builder.build());
+    }
+
+    private static HttpServletRequest request(String method, String origin, String requestedMethod) {
+        var ret = mock(HttpServletRequest.class);
+        when(ret.getDispatcherType()).thenReturn(DispatcherType.REQUEST);
+        when(ret.getMethod()).thenReturn(method);
+        when(ret.getHeader(CorsHeaders.ORIGIN)).thenReturn(origin);
+        when(ret.getHeader(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD)).thenReturn(requestedMethod);
+        return ret;
+    }
+
+    @Test
+    public void corsFilterAnswersPreflight() throws Exception {
+        var req = request("OPTIONS", "https://a.com", "PUT");
+        when(req.getHeader(CorsHeaders.ACCESS_CONTROL_REQUEST_HEADERS)).thenReturn("x-test");
+        var res = mock(HttpServletResponse.class);
+        var chain = mock(FilterChain.class);
+        filter().doFilter(req, res, chain);
+        verify(res).setStatus(HttpServletResponse.SC_NO_CONTENT);
+        verify(res).setHeader(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "https://a.com");
+        verify(res).setHeader(CorsHeaders.ACCESS_CONTROL_ALLOW_HEADERS, "x-test");
+        verify(res).setHeader(ProxyHeaders.VARY, ProxyHeaders.ORIGIN_VALUE);
+        verifyNoInteractions(chain);
+    }
+
+    @Test
+    public void corsFilterRejectsPreflightWithoutHeaders() throws Exception {
+        var req = request("OPTIONS", "https://a.com", "DELETE");
+        var res = mock(HttpServletResponse.class);
+        var chain = mock(FilterChain.class);
+        filter().doFilter(req, res, chain);
+        verify(res).setStatus(HttpServletResponse.SC_NO_CONTENT);
+        verify(res, never()).setHeader(anyString(), anyString());
+        verifyNoInteractions(chain);
+    }
+
+    @Test
+    public void corsFilterHandlesPlainRequests() throws Exception {
+        var filter = filter();
+        var res = mock(HttpServletResponse.class);
+        var chain = mock(FilterChain.class);
+        var allowed = request("GET", "https://a.com", null);
+        filter.doFilter(allowed, res, chain);
+        verify(res).setHeader(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "https://a.com");
+        verify(chain).doFilter(allowed, res);
+        var denied = mock(HttpServletResponse.class);
+        var rejected = request("GET", "https://b.com", null);
+        filter.doFilter(rejected, denied, chain);
+        verifyNoInteractions(denied);
+        verify(chain).doFilter(rejected, denied);
+    }
+
+    @Test
+    public void corsFilterSkipsAsyncDispatch() throws Exception {
+        var req = request("GET", "https://a.com", null);
+        when(req.getDispatcherType()).thenReturn(DispatcherType.ASYNC);
+        var res = mock(HttpServletResponse.class);
+        var chain = mock(FilterChain.class);
+        filter().doFilter(req, res, chain);
+        verifyNoInteractions(res);
+        verify(chain).doFilter(req, res);
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class CorsImageTests {
+    private static final String METADATA = "META-INF/native-image/io.github.amayaframework/amaya-cors/";
+    private static final HeaderSink<List<String>> SINK = new HeaderSink<>() {
+        @Override
+        public void set(List<String> target, String name, String value) {
+            target.add(name + "=" + value);
+        }
+
+        @Override
+        public void add(List<String> target, String name, String value) {
+            target.add(name + "+" + value);
+        }
+    };
+
+    private static List<String> process(CorsEngine engine, String[] request) {
+        var ret = new ArrayList<String>();
+        ret.add(Integer.toString(engine.process(request[0], request[1], request[2], request[3], SINK, ret)));
+        return ret;
+    }
+
+    @Test
+    public void corsImageMatchesRuntimePolicy(@TempDir Path directory) throws IOException {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com").addRegex("https://.*\\.b\\.com");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.PUT);
+        builder.allowedHeaders().allow("X-Token", "Content-Type");
+        builder.exposedHeaders().allow("X-Request-Id");
+        builder.allowCredentials(true);
+        builder.maxAge(600);
+        var runtime = new CorsEngine(builder.build());
+        var snapshot = directory.resolve("policy.snapshot");
+        CorsSnapshot.write(runtime.getConfig(), snapshot);
+        // Loaded the way the build-time policy is, without initializing CorsImage
+        var image = new CorsEngine(CorsImage.load(snapshot.toString(), null));
+        // Regexes are compiled while reading, so none is compiled after the image is built
+        assertFalse(image.getConfig().getAllowedRegexes() instanceof LazyPatternList);
+        var resource = directory.resolve(CorsImage.POLICY_RESOURCE);
+        Files.createDirectories(resource.getParent());
+        Files.copy(snapshot, resource);
+        try (var loader = new URLClassLoader(new URL[]{directory.toUri().toURL()}, null)) {
+            var packaged = new CorsEngine(CorsImage.load(null, loader));
+            var origins = new String[]{"https://a.com", "https://x.b.com", "https://c.com", "https://A.com", null};
+            var methods = new String[]{"GET", "POST", "OPTIONS"};
+            var requestedMethods = new String[]{null, "PUT", "DELETE", "put"};
+            var requestedHeaders = new String[]{null, "x-token", "X-Token, content-type", "x-other", ""};
+            for (var origin : origins) {
+                for (var method : methods) {
+                    for (var requestedMethod : requestedMethods) {
+                        for (var headers : requestedHeaders) {
+                            var request = new String[]{origin, method, requestedMethod, headers};
+                            var expected = process(runtime, request);
+                            assertEquals(expected, process(image, request), String.join(" ", request));
+                            assertEquals(expected, process(packaged, request), String.join(" ", request));
+                        }
+                    }
+                }
+            }
+        }
+        assertNull(CorsImage.load(null, null));
+    }
+
+    @Test
+    public void corsImageShipsNativeMetadata() throws Exception {
+        var loader = getClass().getClassLoader();
+        try (var stream = loader.getResourceAsStream(METADATA + "native-image.properties")) {
+            assertNotNull(stream);
+            var properties = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(properties.contains(CorsImage.class.getName()));
+            assertTrue(properties.contains(CorsOptions.class.getName()));
+            assertTrue(properties.contains(CorsDefaults.class.getName()));
+            // The classes held by the image policy
+            assertTrue(properties.contains(CorsEngine.class.getName()));
+            assertTrue(properties.contains(OriginSet.class.getName()));
+            // Only classes of this module are listed
+            for (var name : properties.substring(properties.indexOf('=', properties.indexOf("--")) + 1).split(",")) {
+                name = name.replace("\\", "").strip();
+                assertTrue(name.startsWith(CorsImage.class.getPackageName() + "."), name);
+                assertNotNull(Class.forName(name, false, loader));
+            }
+        }
+        try (var stream = loader.getResourceAsStream(METADATA + "reflect-config.json")) {
+            assertNotNull(stream);
+            var config = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+            for (var line : config.split("\n")) {
+                var index = line.indexOf("\"name\": \"");
+                if (index >= 0) {
+                    var name = line.substring(index + 9, line.lastIndexOf('"'));
+                    assertNotNull(Class.forName(name, false, loader));
+                }
+            }
+        }
+    }
+}
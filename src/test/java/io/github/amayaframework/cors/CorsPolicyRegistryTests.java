@@ -0,0 +1,97 @@
+package io.github.amayaframework.cors;
+
+import com.github.romanqed.jconv.SyncTask;
+import io.github.amayaframework.context.HttpContext;
+import io.github.amayaframework.context.HttpRequest;
+import io.github.amayaframework.context.HttpResponse;
+import io.github.amayaframework.http.HttpCode;
+import io.github.amayaframework.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public final class CorsPolicyRegistryTests {
+
+    private static CorsConfig config(String origin) {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow(origin);
+        builder.allowedMethods().allow(HttpMethod.GET);
+        return builder.build();
+    }
+
+    @Test
+    public void corsPolicyRegistrySharesAndEvicts() {
+        var loads = new AtomicInteger();
+        CorsPolicyLoader loader = tenant -> {
+            loads.incrementAndGet();
+            return tenant.startsWith("unknown") ? null : config("https://" + tenant.charAt(0) + ".com");
+        };
+        var registry = new CorsPolicyRegistry(loader, 1 << 20);
+        var a1 = registry.get("a1");
+        assertSame(a1, registry.get("a2"));
+        assertSame(a1, registry.get("a1"));
+        assertNotSame(a1, registry.get("b1"));
+        assertNull(registry.get("unknown"));
+        assertNull(registry.get(null));
+        assertEquals(3, registry.size());
+        assertEquals(2, registry.policies());
+        assertEquals(4, loads.get());
+        // Unknown tenants are remembered until invalidated
+        assertNull(registry.get("unknown"));
+        assertEquals(4, loads.get());
+        assertFalse(registry.invalidate("unknown"));
+        assertNull(registry.get("unknown"));
+        assertEquals(5, loads.get());
+
+        assertTrue(registry.invalidate("a1"));
+        assertFalse(registry.invalidate("a1"));
+        assertEquals(2, registry.policies());
+        registry.invalidate("a2");
+        assertEquals(1, registry.policies());
+
+        // Room for a single policy evicts the least recently requested tenants
+        var weight = registry.weight();
+        var small = new CorsPolicyRegistry(loader, weight + weight / 2);
+        small.get("a1");
+        small.get("b1");
+        assertEquals(1, small.size());
+        assertNotNull(small.get("b1"));
+        assertTrue(small.weight() <= small.capacity());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void tenantCorsTaskAppliesTenantPolicy() throws Throwable {
+        var registry = new CorsPolicyRegistry(tenant -> config("https://" + tenant + ".com"), 1 << 20);
+        var task = new TenantCorsTask(registry, "X-Tenant");
+        var context = mock(HttpContext.class);
+        var req = mock(HttpRequest.class);
+        var res = mock(HttpResponse.class);
+        when(context.request()).thenReturn(req);
+        when(context.response()).thenReturn(res);
+        when(req.method()).thenReturn(HttpMethod.OPTIONS);
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("https://a.com");
+        when(req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD)).thenReturn("GET");
+
+        when(req.header("X-Tenant")).thenReturn("a");
+        var next = new CorsTaskTests.TestTask();
+        task.run(context, next);
+        assertFalse(next.isRan());
+        verify(res).status(HttpCode.NO_CONTENT);
+        verify(res).header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "https://a.com");
+
+        // Another tenant rejects the origin
+        when(req.header("X-Tenant")).thenReturn("b");
+        task.run(context, SyncTask.EMPTY);
+        verify(res, times(1)).header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "https://a.com");
+
+        // Requests without a tenant are passed further
+        when(req.header("X-Tenant")).thenReturn(null);
+        next = new CorsTaskTests.TestTask();
+        task.run(context, next);
+        assertTrue(next.isRan());
+    }
+}
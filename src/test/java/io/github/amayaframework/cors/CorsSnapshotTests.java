@@ -0,0 +1,65 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class CorsSnapshotTests {
+
+    private static CorsConfig config() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://A.com", "https://b.com").addRegex("https://.*\\.c\\.com");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.PUT);
+        builder.allowedHeaders().allow("X-Test");
+        builder.allowCredentials(true).maxAge(600).adaptiveMaxAge(7200);
+        return builder.build();
+    }
+
+    @Test
+    public void corsSnapshotRoundTrips() throws IOException {
+        var config = config();
+        var file = Files.createTempFile("cors", ".snapshot");
+        try {
+            CorsSnapshot.write(config, file);
+            var read = CorsSnapshot.read(file);
+            assertEquals(Set.of("https://a.com", "https://b.com"), read.getAllowedOrigins());
+            assertEquals(1, read.getAllowedRegexes().size());
+            assertEquals("https://.*\\.c\\.com", read.getAllowedRegexes().get(0).pattern());
+            assertEquals(Set.of(HttpMethod.GET, HttpMethod.PUT), read.getAllowedMethods());
+            assertEquals(Set.of("x-test"), read.getAllowedHeaders());
+            assertNull(read.getExposedHeaders());
+            assertTrue(read.isAllowCredentials());
+            assertEquals(600, read.getMaxAge());
+            assertEquals(7200, read.getAdaptiveMaxAge());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void corsSnapshotKeepsRegexFlags() throws IOException {
+        var config = new CorsConfig();
+        config.setAllowedRegexes(List.of(Pattern.compile("https://a\\.com", Pattern.CASE_INSENSITIVE)));
+        var read = CorsSnapshot.read(CorsSnapshot.write(config));
+        assertNull(read.getAllowedOrigins());
+        assertEquals(Pattern.CASE_INSENSITIVE, read.getAllowedRegexes().get(0).flags());
+    }
+
+    @Test
+    public void corsSnapshotRejectsCorruptedData() {
+        var bytes = CorsSnapshot.write(config());
+        bytes[bytes.length / 2] ^= 1;
+        assertThrows(IOException.class, () -> CorsSnapshot.read(bytes));
+        var version = CorsSnapshot.write(config());
+        version[7] = (byte) (CorsSnapshot.VERSION + 1);
+        assertThrows(IOException.class, () -> CorsSnapshot.read(version));
+        assertThrows(IOException.class, () -> CorsSnapshot.read(new byte[4]));
+    }
+}
@@ -0,0 +1,114 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the common {@link CorsTask} paths stay within their allocation budgets after warmup.
+ * <p>
+ * Each path is executed in batches until a batch fits into the budget or the attempts run out,
+ * which gives the JIT time to compile the path and eliminate short-lived objects. The tests run in their
+ * own JVM with {@code gradle allocationTest}, so the profiles of other tests do not defeat escape analysis.
+ */
+@Tag("allocation")
+public final class CorsTaskAllocationTests {
+    private static final int BATCH = 20_000;
+    private static final int ATTEMPTS = 100;
+    private static final String ALLOWED = "https://allowed.example.com";
+    private static final String PARTNER = "https://app.partner.example.org";
+    private static final String HEADERS = "Content-Type, x-request-id,Authorization";
+
+    private static com.sun.management.ThreadMXBean bean;
+    private static CorsTask task;
+    private static CorsTask credentialsTask;
+
+    @BeforeAll
+    public static void setUp() {
+        var threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            bean = (com.sun.management.ThreadMXBean) threads;
+        }
+        task = new CorsTask(config(false));
+        credentialsTask = new CorsTask(config(true));
+    }
+
+    private static CorsConfig config(boolean credentials) {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow(ALLOWED).addRegex("https://([a-z0-9-]+\\.)?partner\\.example\\.org");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.POST, HttpMethod.PUT);
+        builder.allowedHeaders().allow("Content-Type", "X-Request-Id", "Authorization");
+        builder.exposedHeaders().allow("X-Request-Id");
+        builder.allowCredentials(credentials).maxAge(600);
+        return builder.build();
+    }
+
+    private static long allocated() {
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void assertBudget(long budget, CorsTask task, FakeHttp http, boolean async) throws Throwable {
+        assumeTrue(bean != null && bean.isThreadAllocatedMemorySupported());
+        bean.setThreadAllocatedMemoryEnabled(true);
+        var context = http.context();
+        var best = Long.MAX_VALUE;
+        for (var attempt = 0; attempt < ATTEMPTS; ++attempt) {
+            var start = allocated();
+            for (var i = 0; i < BATCH; ++i) {
+                http.clear();
+                if (async) {
+                    task.runAsync(context, Next.INSTANCE);
+                } else {
+                    task.run(context, Next.INSTANCE);
+                }
+            }
+            best = Math.min(best, (allocated() - start) / BATCH);
+            if (best <= budget) {
+                return;
+            }
+        }
+        assertTrue(best <= budget, "Path allocates " + best + " bytes per request, budget is " + budget);
+    }
+
+    private static void assertBudget(long budget, CorsTask task, FakeHttp http) throws Throwable {
+        assertBudget(budget, task, http, false);
+        assertBudget(budget, task, http, true);
+    }
+
+    @Test
+    public void noOriginAllocatesNothing() throws Throwable {
+        assertBudget(0, task, new FakeHttp().prepare(HttpMethod.GET, null, null, null));
+    }
+
+    @Test
+    public void allowedPlainRequestAllocatesNothing() throws Throwable {
+        var http = new FakeHttp().prepare(HttpMethod.GET, ALLOWED, null, null);
+        assertBudget(0, task, http);
+        assertBudget(0, credentialsTask, http);
+    }
+
+    @Test
+    public void cachedRegexPlainRequestAllocatesNothing() throws Throwable {
+        assertBudget(0, task, new FakeHttp().prepare(HttpMethod.POST, PARTNER, null, null));
+    }
+
+    @Test
+    public void preflightAllocatesNothing() throws Throwable {
+        var http = new FakeHttp().prepare(HttpMethod.OPTIONS, ALLOWED, "PUT", HEADERS);
+        assertBudget(0, task, http);
+        assertBudget(0, credentialsTask, http);
+    }
+
+    @Test
+    public void cachedRegexPreflightAllocatesNothing() throws Throwable {
+        var http = new FakeHttp().prepare(HttpMethod.OPTIONS, PARTNER, "POST", HEADERS);
+        assertBudget(0, task, http);
+        assertBudget(0, credentialsTask, http);
+    }
+}
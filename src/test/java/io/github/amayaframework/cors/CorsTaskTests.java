@@ -7,13 +7,20 @@ import io.github.amayaframework.context.HttpRequest;
 import io.github.amayaframework.context.HttpResponse;
 import io.github.amayaframework.http.HttpCode;
 import io.github.amayaframework.http.HttpMethod;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -70,6 +77,21 @@ public final class CorsTaskTests {
         assertEquals("*", task2.renderOrigin("any"));
     }
 
+    @Test
+    public void corsTaskCheckHeadersIgnoresCaseAndWhitespace() {
+        var config = new CorsConfig();
+        config.setAllowedHeaders(Set.of("x-test", "content-type", "x-ünï"));
+        var task = new CorsTask(config);
+
+        assertTrue(task.checkHeaders("X-Test"));
+        assertTrue(task.checkHeaders(" x-test ,\tContent-Type"));
+        assertTrue(task.checkHeaders("X-ÜNÏ, x-test"));
+        assertFalse(task.checkHeaders("x-test, x-other"));
+        assertFalse(task.checkHeaders("x-test,"));
+        assertFalse(task.checkHeaders("x-tes"));
+        assertFalse(task.checkHeaders(""));
+    }
+
     @Test
     public void corsTaskHandlePreflightSetsHeaders() {
         var req = mock(HttpRequest.class);
@@ -113,6 +135,81 @@ public final class CorsTaskTests {
         verify(res).extendHeader(ProxyHeaders.VARY, ProxyHeaders.ORIGIN_VALUE);
     }
 
+    @Test
+    public void corsTaskCallsOverriddenHooks() throws Throwable {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.PUT);
+        builder.allowedHeaders().allow("X-Token");
+        var plain = new ArrayList<String>();
+        var task = new CorsTask(builder.build()) {
+            @Override
+            protected boolean checkOrigin(String origin) {
+                return origin.endsWith(".partner.com") || super.checkOrigin(origin);
+            }
+
+            @Override
+            protected boolean checkHeaders(String headers) {
+                return !headers.contains("x-forbidden") && super.checkHeaders(headers);
+            }
+
+            @Override
+            protected void handlePlainRequest(HttpResponse res, String origin) {
+                plain.add(origin);
+                super.handlePlainRequest(res, origin);
+            }
+        };
+        var http = new FakeHttp();
+        // Simple requests
+        task.run(http.prepare(HttpMethod.GET, "https://x.partner.com", null, null).context(), Next.INSTANCE);
+        assertEquals("https://x.partner.com", http.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
+        task.run(http.prepare(HttpMethod.GET, "https://a.com", null, null).context(), Next.INSTANCE);
+        assertEquals("https://a.com", http.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
+        task.run(http.prepare(HttpMethod.GET, "https://b.com", null, null).context(), Next.INSTANCE);
+        assertNull(http.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
+        assertEquals(List.of("https://x.partner.com", "https://a.com"), plain);
+        // Preflight requests
+        task.run(http.prepare(HttpMethod.OPTIONS, "https://x.partner.com", "PUT", "x-token").context(), Next.INSTANCE);
+        assertEquals(HttpCode.NO_CONTENT, http.status());
+        assertEquals("https://x.partner.com", http.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
+        task.run(http.prepare(HttpMethod.OPTIONS, "https://a.com", "PUT", "x-token,x-forbidden").context(), Next.INSTANCE);
+        assertEquals(HttpCode.NO_CONTENT, http.status());
+        assertNull(http.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
+        // The engine of the task applies the hooks as well
+        assertEquals(CorsEngine.ALLOWED, task.getEngine().decide("https://y.partner.com", "GET", null, null));
+    }
+
+    @Test
+    public void corsTaskCallsOverriddenDispatchHooks() throws Throwable {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com");
+        var calls = new ArrayList<String>();
+        var task = new CorsTask(builder.build()) {
+            @Override
+            protected void handlePreflight(HttpRequest req, HttpResponse res, String origin, String method) {
+                calls.add("preflight " + method);
+                super.handlePreflight(req, res, origin, method);
+            }
+
+            @Override
+            protected boolean handleOptions(HttpRequest req, HttpResponse res) {
+                calls.add("options");
+                res.status(HttpCode.NO_CONTENT);
+                return true;
+            }
+        };
+        var http = new FakeHttp();
+        task.run(http.prepare(HttpMethod.OPTIONS, "https://a.com", "PUT", null).context(), Next.INSTANCE);
+        assertEquals(HttpCode.NO_CONTENT, http.status());
+        assertEquals("https://a.com", http.header(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN));
+        // Non-preflight OPTIONS requests are answered by the hook, with or without an origin
+        var next = new TestTask();
+        task.run(http.prepare(HttpMethod.OPTIONS, "https://a.com", null, null).context(), next);
+        task.run(http.prepare(HttpMethod.OPTIONS, null, null, null).context(), next);
+        assertFalse(next.isRan());
+        assertEquals(List.of("preflight PUT", "options", "options"), calls);
+    }
+
     @Test
     public void corsTaskRunCallsNextWhenNoOrigin() throws Throwable {
         var context = mock(HttpContext.class);
@@ -174,6 +271,346 @@ public final class CorsTaskTests {
         assertTrue(next.isRan());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void corsTaskAnswersOptionsWithRouteMethods() throws Throwable {
+        var context = mock(HttpContext.class);
+        var req = mock(HttpRequest.class);
+        var res = mock(HttpResponse.class);
+        var next = new TestTask();
+
+        when(context.request()).thenReturn(req);
+        when(context.response()).thenReturn(res);
+        when(req.method()).thenReturn(HttpMethod.OPTIONS);
+        when(req.path()).thenReturn("/users");
+
+        var config = new CorsConfig();
+        config.setAllowCredentials(true);
+        var methods = List.of(HttpMethod.GET, HttpMethod.PUT);
+        var responder = new OptionsResponder(path -> path.equals("/users") ? methods : null);
+        var engine = new CorsEngine(config, HttpMethod::of, HttpMethod.all().values(), CorsMetrics.noop(), null, responder);
+        var task = new CorsTask(engine);
+
+        task.run(context, next);
+        assertFalse(next.isRan());
+        verify(res).status(HttpCode.NO_CONTENT);
+        verify(res).header(ProxyHeaders.ALLOW, "GET, PUT, OPTIONS");
+
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://a.com");
+        when(req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD)).thenReturn("PUT");
+        task.run(context, SyncTask.EMPTY);
+        verify(res).header(CorsHeaders.ACCESS_CONTROL_ALLOW_METHODS, "GET, PUT, OPTIONS");
+
+        when(req.path()).thenReturn("/unknown");
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn(null);
+        task.run(context, next);
+        assertTrue(next.isRan());
+    }
+
+    @Test
+    public void corsEngineEchoesCanonicalOrigins() {
+        var live = new LiveOriginSet(List.of("https://b.com"), 1);
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com").matcher(live);
+        builder.allowCredentials(true);
+        var engine = new CorsEngine(builder.build());
+        assertSame("https://a.com", engine.renderOrigin(new String("https://a.com")));
+        // The instances are held by the built allowlist itself, which stays unmodifiable
+        var allowed = engine.getConfig().getAllowedOrigins();
+        assertThrows(UnsupportedOperationException.class, () -> allowed.add("https://c.com"));
+        assertThrows(UnsupportedOperationException.class, () -> allowed.iterator().remove());
+        var stored = engine.renderOrigin(new String("https://b.com"));
+        assertEquals("https://b.com", stored);
+        assertSame(stored, engine.renderOrigin(new String("https://b.com")));
+        // Credentialed responses echo the canonical instance as well
+        var echoed = new ArrayList<String>();
+        var sink = new HeaderSink<Object>() {
+            @Override
+            public void set(Object target, String name, String value) {
+                if (name.equals(CorsHeaders.ACCESS_CONTROL_ALLOW_ORIGIN)) {
+                    echoed.add(value);
+                }
+            }
+
+            @Override
+            public void add(Object target, String name, String value) {
+            }
+        };
+        engine.plain(new String("https://a.com"), "GET", sink, null);
+        engine.preflight(new String("https://b.com"), "GET", null, sink, null);
+        assertSame("https://a.com", echoed.get(0));
+        assertSame(stored, echoed.get(1));
+    }
+
+    @Test
+    public void corsEngineAdaptsMaxAge() {
+        var live = new LiveOriginSet(List.of("https://a.com"), 1);
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().matcher(live);
+        builder.maxAge(5).adaptiveMaxAge(30);
+        var engine = new CorsEngine(builder.build());
+        var res = mock(HttpResponse.class);
+        var sink = new HeaderSink<HttpResponse>() {
+            @Override
+            public void set(HttpResponse target, String name, String value) {
+                target.header(name, value);
+            }
+
+            @Override
+            public void add(HttpResponse target, String name, String value) {
+                target.extendHeader(name, value);
+            }
+        };
+
+        var ages = new ArrayList<String>();
+        for (var i = 0; i < 5; ++i) {
+            var code = engine.preflight("https://a.com", "GET", null, sink, res);
+            assertEquals(CorsEngine.PREFLIGHT | CorsEngine.ALLOWED, code);
+            var captor = ArgumentCaptor.forClass(String.class);
+            verify(res, atLeastOnce()).header(eq(CorsHeaders.ACCESS_CONTROL_MAX_AGE), captor.capture());
+            ages.add(captor.getValue());
+        }
+        assertEquals(List.of("5", "10", "20", "30", "30"), ages);
+
+        // A policy change lowers the max-age back
+        live.add("https://b.com");
+        engine.preflight("https://a.com", "GET", null, sink, res);
+        verify(res, times(2)).header(CorsHeaders.ACCESS_CONTROL_MAX_AGE, "5");
+    }
+
+    private static int slot(String origin) {
+        var hash = origin.hashCode();
+        return (hash ^ (hash >>> 16)) & (AdaptiveMaxAge.DEFAULT_SLOTS - 1);
+    }
+
+    @Test
+    public void corsEngineAdaptsUnsetMaxAgeFromBrowserDefault() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com");
+        builder.allowedMethods().allow(HttpMethod.GET);
+        builder.adaptiveMaxAge(20);
+        var engine = new CorsEngine(builder.build());
+        var ages = new ArrayList<String>();
+        var sink = new HeaderSink<Object>() {
+            @Override
+            public void set(Object target, String name, String value) {
+                if (name.equals(CorsHeaders.ACCESS_CONTROL_MAX_AGE)) {
+                    ages.add(value);
+                }
+            }
+
+            @Override
+            public void add(Object target, String name, String value) {
+            }
+        };
+        engine.preflight("https://a.com", "GET", null, sink, null);
+        engine.preflight("https://a.com", "GET", null, sink, null);
+        // Rejected origins do not lower the max-age of the allowed origins sharing their slot
+        var slot = slot("https://a.com");
+        var i = 0;
+        while (slot("https://x" + i + ".com") != slot) {
+            ++i;
+        }
+        engine.preflight("https://x" + i + ".com", "GET", null, sink, null);
+        engine.preflight("https://a.com", "GET", null, sink, null);
+        // A rejected method of an allowed origin does
+        engine.preflight("https://a.com", "PUT", null, sink, null);
+        engine.preflight("https://a.com", "GET", null, sink, null);
+        assertEquals(List.of("5", "10", "20", "5"), ages);
+    }
+
+    @Test
+    public void corsEngineRendersStableHeaders() throws Exception {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.PUT);
+        builder.allowCredentials(true).maxAge(60).stableHeaders(true);
+        var engine = new CorsEngine(CorsSnapshot.read(CorsSnapshot.write(builder.build())));
+        assertTrue(engine.getConfig().isStableHeaders());
+        var rendered = new ArrayList<String>();
+        var sink = new HeaderSink<Object>() {
+            @Override
+            public void set(Object target, String name, String value) {
+                rendered.add(name + ": " + value);
+            }
+
+            @Override
+            public void add(Object target, String name, String value) {
+                rendered.add(name + ": " + value);
+            }
+        };
+        var vary = "vary: " + ProxyHeaders.CREDENTIALS_PREFLIGHT_VALUE;
+        engine.preflight("https://a.com", "PUT", "X-Token, Content-Type", sink, null);
+        var preflight = List.copyOf(rendered);
+        assertEquals(List.of(
+                "access-control-allow-credentials: true",
+                "access-control-allow-headers: x-token,content-type",
+                "access-control-allow-methods: get,put",
+                "access-control-allow-origin: https://a.com",
+                "access-control-max-age: 60",
+                vary
+        ), preflight);
+        // Equivalent requested headers are echoed byte for byte
+        rendered.clear();
+        engine.preflight("https://a.com", "PUT", "x-token,content-type", sink, null);
+        assertEquals(preflight, rendered);
+        rendered.clear();
+        engine.plain("https://a.com", "GET", sink, null);
+        assertEquals(List.of(
+                "access-control-allow-credentials: true",
+                "access-control-allow-origin: https://a.com",
+                vary
+        ), rendered);
+        // Without credentials, wildcards are rendered
+        builder.allowedOrigins().allow("https://a.com");
+        builder.stableHeaders(true);
+        engine = new CorsEngine(builder.build());
+        rendered.clear();
+        engine.preflight("https://a.com", "DELETE", "x-token", sink, null);
+        assertEquals(List.of(
+                "access-control-allow-headers: *",
+                "access-control-allow-methods: *",
+                "access-control-allow-origin: https://a.com",
+                "vary: " + ProxyHeaders.ORIGIN_VALUE
+        ), rendered);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void corsTaskMetricsCountDecisions() throws Throwable {
+        var context = mock(HttpContext.class);
+        var req = mock(HttpRequest.class);
+        var res = mock(HttpResponse.class);
+
+        when(context.request()).thenReturn(req);
+        when(context.response()).thenReturn(res);
+        when(req.method()).thenReturn(HttpMethod.GET);
+
+        var config = new CorsConfig();
+        config.setAllowedOrigins(Set.of("http://a.com"));
+        config.setAllowedRegexes(List.of(Pattern.compile(".*\\.example\\.org")));
+        config.setAllowedMethods(Set.of(HttpMethod.GET));
+        var metrics = Cors.metrics();
+        var task = new CorsTask(config, HttpMethod::of, HttpMethod.all().values(), metrics);
+
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://a.com");
+        task.run(context, SyncTask.EMPTY);
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://sub.example.org");
+        task.run(context, SyncTask.EMPTY);
+        task.run(context, SyncTask.EMPTY);
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://forbidden.com");
+        task.run(context, SyncTask.EMPTY);
+
+        when(req.method()).thenReturn(HttpMethod.OPTIONS);
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://a.com");
+        when(req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD)).thenReturn("POST");
+        task.run(context, SyncTask.EMPTY);
+
+        var snapshot = metrics.snapshot();
+        assertEquals(3, snapshot.getPlainAllowed());
+        assertEquals(1, snapshot.getPlainRejected());
+        assertEquals(0, snapshot.getPreflightAllowed());
+        assertEquals(1, snapshot.getPreflightRejected());
+        assertEquals(1, snapshot.getRejected(CorsRejection.ORIGIN));
+        assertEquals(1, snapshot.getRejected(CorsRejection.METHOD));
+        assertEquals(2, snapshot.getMatched(MatchStage.EXACT));
+        assertEquals(2, snapshot.getMatched(MatchStage.REGEX));
+        assertEquals(1, snapshot.getMatched(MatchStage.CACHE));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void corsTaskLatencyRecordsSampledStages() throws Throwable {
+        var context = mock(HttpContext.class);
+        var req = mock(HttpRequest.class);
+        var res = mock(HttpResponse.class);
+
+        when(context.request()).thenReturn(req);
+        when(context.response()).thenReturn(res);
+        when(req.method()).thenReturn(HttpMethod.OPTIONS);
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://a.com");
+        when(req.header(CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD)).thenReturn("GET");
+
+        var latency = new CorsLatency(2);
+        var task = new CorsTask(new CorsConfig(), HttpMethod::of, HttpMethod.all().values(), CorsMetrics.noop(), latency);
+        for (var i = 0; i < 10; ++i) {
+            task.run(context, SyncTask.EMPTY);
+        }
+
+        for (var stage : CorsStage.values()) {
+            assertEquals(5, latency.snapshot(stage).getCount());
+        }
+        var total = latency.snapshot(CorsStage.TOTAL);
+        assertTrue(total.getValueAtPercentile(50) <= total.getValueAtPercentile(99.9));
+        assertTrue(total.getValueAtPercentile(99.9) <= total.getMax());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void corsTaskLatencyFinishesFailedRequests() throws Throwable {
+        var context = mock(HttpContext.class);
+        var req = mock(HttpRequest.class);
+        var res = mock(HttpResponse.class);
+
+        when(context.request()).thenReturn(req);
+        when(context.response()).thenReturn(res);
+        when(req.method()).thenReturn(HttpMethod.GET);
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://a.com");
+        doThrow(new IllegalStateException("Closed response")).doNothing().when(res).header(anyString(), anyString());
+
+        var latency = new CorsLatency(1);
+        var task = new CorsTask(new CorsConfig(), HttpMethod::of, HttpMethod.all().values(), CorsMetrics.noop(), latency);
+        assertThrows(IllegalStateException.class, () -> task.run(context, SyncTask.EMPTY));
+        // The failed request is not left open for the next ones to lap into
+        assertNull(latency.current());
+        task.run(context, SyncTask.EMPTY);
+        assertEquals(2, latency.snapshot(CorsStage.TOTAL).getCount());
+        assertEquals(2, latency.snapshot(CorsStage.EXTRACT).getCount());
+
+        var sink = mock(HeaderSink.class);
+        doThrow(new IllegalStateException("Closed sink")).when(sink).set(any(), anyString(), anyString());
+        var engine = new CorsEngine(new CorsConfig(), HttpMethod::of, HttpMethod.all().values(), CorsMetrics.noop(), latency);
+        assertThrows(IllegalStateException.class, () -> engine.process("http://a.com", "GET", null, null, sink, null));
+        assertNull(latency.current());
+        assertEquals(3, latency.snapshot(CorsStage.TOTAL).getCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void corsTaskEmitsFlightRecorderEvents() throws Throwable {
+        var context = mock(HttpContext.class);
+        var req = mock(HttpRequest.class);
+        var res = mock(HttpResponse.class);
+
+        when(context.request()).thenReturn(req);
+        when(context.response()).thenReturn(res);
+        when(req.method()).thenReturn(HttpMethod.GET);
+        when(req.header(CorsHeaders.ORIGIN)).thenReturn("http://forbidden.com");
+
+        var config = new CorsConfig();
+        config.setAllowedOrigins(Set.of("http://a.com"));
+        config.setAllowedRegexes(List.of(Pattern.compile(".*\\.example\\.org")));
+        var task = new CorsTask(config);
+
+        var file = Files.createTempFile("cors", ".jfr");
+        try (var recording = new Recording()) {
+            recording.enable("amaya.cors.Request").withThreshold(Duration.ZERO);
+            recording.enable("amaya.cors.OriginRejected");
+            recording.enable("amaya.cors.CacheMiss").withThreshold(Duration.ZERO);
+            recording.start();
+            task.run(context, SyncTask.EMPTY);
+            recording.stop();
+            recording.dump(file);
+            var names = RecordingFile.readAllEvents(file)
+                    .stream()
+                    .map(e -> e.getEventType().getName())
+                    .collect(Collectors.toSet());
+            assertEquals(Set.of("amaya.cors.Request", "amaya.cors.OriginRejected", "amaya.cors.CacheMiss"), names);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
     static final class TestTask implements Task<HttpContext> {
         private final AtomicBoolean ran = new AtomicBoolean();
 
@@ -0,0 +1,74 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class CorsWarmupTests {
+
+    @Test
+    public void corsWarmupCoversDecisionPaths() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com").addRegex("https://.*\\.b\\.com");
+        builder.allowedMethods().allow(HttpMethod.GET, HttpMethod.PUT);
+        builder.allowedHeaders().allow("X-Token", "Content-Type");
+        var metrics = new AdderCorsMetrics();
+        var engine = new CorsEngine(builder.build(), HttpMethod::of, HttpMethod.all().values(), metrics, null);
+        var warmup = new CorsWarmup(engine);
+        warmup.run(Duration.ofMillis(200));
+        assertTrue(warmup.getRequests() > 0);
+        var snapshot = metrics.snapshot();
+        assertTrue(snapshot.getPlainAllowed() > 0);
+        assertTrue(snapshot.getPreflightAllowed() > 0);
+        assertTrue(snapshot.getRejected(CorsRejection.ORIGIN) > 0);
+        assertTrue(snapshot.getRejected(CorsRejection.METHOD) > 0);
+        assertTrue(snapshot.getRejected(CorsRejection.HEADERS) > 0);
+        assertTrue(snapshot.getMatched(MatchStage.EXACT) > 0);
+        assertTrue(snapshot.getMatched(MatchStage.REGEX) + snapshot.getMatched(MatchStage.CACHE) > 0);
+    }
+
+    @Test
+    public void corsWarmupTwinKeepsMetricsClean() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com");
+        var metrics = new AdderCorsMetrics();
+        var engine = new CorsEngine(builder.build(), HttpMethod::of, HttpMethod.all().values(), metrics, null);
+        var twin = CorsWarmup.twin(engine);
+        assertSame(engine.getConfig(), twin.getConfig());
+        var warmup = new CorsWarmup(twin);
+        warmup.run(Duration.ofMillis(50));
+        assertTrue(warmup.getRequests() > 0);
+        var snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.getPlain() + snapshot.getPreflight());
+    }
+
+    @Test
+    public void corsWarmupSamplesRegexes() {
+        assertEquals("https://a.example.com", CorsWarmup.sample("https://[a-z]+\\.example\\.com"));
+        assertEquals("http://localhost:0", CorsWarmup.sample("http://localhost:\\d+"));
+        assertEquals("https://a.com", CorsWarmup.sample("https://(a|b)\\.com"));
+        assertEquals("https://.test", CorsWarmup.sample("https://.*\\.test"));
+        assertEquals("https://a0.com", CorsWarmup.sample("https://(?:a|b{3})\\d{1,2}\\.com"));
+        assertNull(CorsWarmup.sample("https://(?=a)a"));
+        assertNull(CorsWarmup.sample("https://(a"));
+    }
+
+    @Test
+    public void corsWarmupTwinWarmsServedTables() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com").addRegex("https://[a-z]+\\.b\\.com");
+        builder.allowedHeaders().allow("X-Token");
+        builder.adaptiveMaxAge(600);
+        var engine = new CorsEngine(builder.build());
+        var twin = CorsWarmup.twin(engine);
+        assertSame(engine.cache, twin.cache);
+        assertSame(engine.headerTable, twin.headerTable);
+        assertNotSame(engine.adaptiveMaxAge, twin.adaptiveMaxAge);
+        new CorsWarmup(twin).run(Duration.ofMillis(50));
+        // The derived origin reached the regex path, whose verdict the served engine reuses
+        assertEquals(Boolean.TRUE, engine.cache.get("https://a.b.com"));
+    }
+}
@@ -0,0 +1,245 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.context.HttpContext;
+import io.github.amayaframework.context.HttpRequest;
+import io.github.amayaframework.context.HttpResponse;
+import io.github.amayaframework.http.HttpCode;
+import io.github.amayaframework.http.HttpMethod;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.implementation.ExceptionMethod;
+import net.bytebuddy.implementation.MethodDelegation;
+import net.bytebuddy.matcher.ElementMatcher;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.function.BiConsumer;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+
+/**
+ * Lightweight, allocation-free fakes of {@link HttpContext}, {@link HttpRequest} and {@link HttpResponse}.
+ * <p>
+ * Unlike mocks, the fakes do not record invocations: the request returns preset header values and
+ * the response keeps the last written headers in fixed-size arrays. Only the methods used by CORS
+ * are implemented, the others throw {@link UnsupportedOperationException}.
+ */
+public final class FakeHttp {
+    private static final int MAX_HEADERS = 16;
+
+    private final Request request;
+    private final Response response;
+    private final HttpContext context;
+
+    /**
+     * Creates new fakes with an empty request and response.
+     */
+    public FakeHttp() {
+        this.request = new Request();
+        this.response = new Response();
+        var request = implement(HttpRequest.class, this.request,
+                named("method").and(takesArguments(0))
+                        .or(named("header").and(takesArguments(String.class))));
+        var response = implement(HttpResponse.class, this.response,
+                named("status").and(takesArguments(HttpCode.class))
+                        .or(named("header").and(takesArguments(String.class, String.class)))
+                        .or(named("extendHeader").and(takesArguments(String.class, String.class))));
+        this.context = implement(HttpContext.class, new Context(request, response),
+                named("request").and(takesArguments(0))
+                        .or(named("response").and(takesArguments(0))));
+    }
+
+    private static <T> T implement(Class<T> type, Object target, ElementMatcher<? super MethodDescription> delegated) {
+        try {
+            return new ByteBuddy()
+                    .subclass(type)
+                    .method(isAbstract())
+                    .intercept(ExceptionMethod.throwing(UnsupportedOperationException.class))
+                    .method(isAbstract().and(delegated))
+                    .intercept(MethodDelegation.to(target))
+                    .make()
+                    .load(FakeHttp.class.getClassLoader())
+                    .getLoaded()
+                    .getConstructor()
+                    .newInstance();
+        } catch (NoSuchMethodException | InstantiationException |
+                 IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot implement " + type, e);
+        }
+    }
+
+    /**
+     * Returns the fake context, whose request and response are the fakes of this instance.
+     *
+     * @return the fake {@link HttpContext}
+     */
+    public HttpContext context() {
+        return context;
+    }
+
+    /**
+     * Returns the fake request.
+     *
+     * @return the fake {@link HttpRequest}
+     */
+    public HttpRequest request() {
+        return context.request();
+    }
+
+    /**
+     * Returns the fake response.
+     *
+     * @return the fake {@link HttpResponse}
+     */
+    public HttpResponse response() {
+        return context.response();
+    }
+
+    /**
+     * Sets up the request and clears the response.
+     *
+     * @param method           the request method
+     * @param origin           the {@code Origin} header value, may be {@code null}
+     * @param requestedMethod  the {@code Access-Control-Request-Method} header value, may be {@code null}
+     * @param requestedHeaders the {@code Access-Control-Request-Headers} header value, may be {@code null}
+     * @return this instance
+     */
+    public FakeHttp prepare(HttpMethod method, String origin, String requestedMethod, String requestedHeaders) {
+        request.method = method;
+        request.origin = origin;
+        request.requestedMethod = requestedMethod;
+        request.requestedHeaders = requestedHeaders;
+        clear();
+        return this;
+    }
+
+    /**
+     * Clears the headers and the status written to the response.
+     */
+    public void clear() {
+        response.status = null;
+        response.count = 0;
+    }
+
+    /**
+     * Returns the status written to the response.
+     *
+     * @return the response status, or {@code null} if it was not written
+     */
+    public HttpCode status() {
+        return response.status;
+    }
+
+    /**
+     * Returns the number of header writes made to the response since it was cleared.
+     *
+     * @return the number of written headers
+     */
+    public int headerCount() {
+        return response.count;
+    }
+
+    /**
+     * Returns the last value written to the response header with the given name.
+     *
+     * @param name the header name
+     * @return the header value, or {@code null} if it was not written
+     */
+    public String header(String name) {
+        return response.find(name);
+    }
+
+    /**
+     * Passes the headers written to the response since it was cleared to the given action, in write order.
+     *
+     * @param action the action receiving the name and the value of each written header
+     */
+    public void headers(BiConsumer<String, String> action) {
+        var response = this.response;
+        for (var i = 0; i < response.count; ++i) {
+            action.accept(response.names[i], response.values[i]);
+        }
+    }
+
+    /**
+     * Delegation target of the fake context, public for the generated class.
+     */
+    public static final class Context {
+        private final HttpRequest request;
+        private final HttpResponse response;
+
+        Context(HttpRequest request, HttpResponse response) {
+            this.request = request;
+            this.response = response;
+        }
+
+        public HttpRequest request() {
+            return request;
+        }
+
+        public HttpResponse response() {
+            return response;
+        }
+    }
+
+    /**
+     * Delegation target of the fake request, public for the generated class.
+     */
+    public static final class Request {
+        HttpMethod method;
+        String origin;
+        String requestedMethod;
+        String requestedHeaders;
+
+        public HttpMethod method() {
+            return method;
+        }
+
+        public String header(String name) {
+            if (CorsHeaders.ORIGIN.equalsIgnoreCase(name)) {
+                return origin;
+            }
+            if (CorsHeaders.ACCESS_CONTROL_REQUEST_METHOD.equalsIgnoreCase(name)) {
+                return requestedMethod;
+            }
+            if (CorsHeaders.ACCESS_CONTROL_REQUEST_HEADERS.equalsIgnoreCase(name)) {
+                return requestedHeaders;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Delegation target of the fake response, public for the generated class.
+     */
+    public static final class Response {
+        final String[] names = new String[MAX_HEADERS];
+        final String[] values = new String[MAX_HEADERS];
+        HttpCode status;
+        int count;
+
+        public void status(HttpCode code) {
+            status = code;
+        }
+
+        public void header(String name, String value) {
+            if (count < MAX_HEADERS) {
+                names[count] = name;
+                values[count] = value;
+                ++count;
+            }
+        }
+
+        public void extendHeader(String name, String value) {
+            header(name, value);
+        }
+
+        String find(String name) {
+            for (var i = count - 1; i >= 0; --i) {
+                if (names[i].equalsIgnoreCase(name)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+    }
+}
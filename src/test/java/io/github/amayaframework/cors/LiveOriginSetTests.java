@@ -0,0 +1,39 @@
+package io.github.amayaframework.cors;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class LiveOriginSetTests {
+
+    @Test
+    public void liveOriginSetAppliesDeltas() {
+        var set = new LiveOriginSet(List.of("https://A.com", "https://b.com"), 4);
+        assertEquals(4, set.shards());
+        assertEquals(2, set.size());
+        assertEquals(0, set.generation());
+        assertTrue(set.matches("https://a.com"));
+        assertEquals(1, set.apply(List.of("https://c.com"), List.of("https://b.com")));
+        assertTrue(set.matches("https://c.com"));
+        assertFalse(set.matches("https://b.com"));
+        assertEquals(2, set.size());
+        // Deltas changing nothing do not publish a new generation
+        assertEquals(1, set.add("https://a.com"));
+        assertEquals(1, set.remove("https://d.com"));
+        assertEquals(2, set.remove("https://a.com", "https://c.com"));
+        assertEquals(0, set.size());
+    }
+
+    @Test
+    public void corsTaskSeesLiveOriginSetDeltas() {
+        var live = new LiveOriginSet();
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().matcher(live);
+        var task = new CorsTask(builder.build());
+        assertFalse(task.checkOrigin("https://a.com"));
+        live.add("https://a.com");
+        assertTrue(task.checkOrigin("https://a.com"));
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.amayaframework.cors;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class MappedOriginStoreTests {
+
+    @Test
+    public void mappedOriginStoreMatchesWrittenOrigins() throws IOException {
+        var file = Files.createTempFile("cors", ".origins");
+        try {
+            MappedOriginStore.write(List.of("https://a.com", "https://B.com", "https://b.com", "https://пример.рф"), file);
+            var store = MappedOriginStore.open(file);
+            assertEquals(3, store.size());
+            assertTrue(store.matches("https://a.com"));
+            assertTrue(store.matches("https://b.com"));
+            assertTrue(store.matches("https://пример.рф"));
+            assertFalse(store.matches("https://c.com"));
+            assertFalse(store.matches("https://a.co"));
+            assertFalse(store.refresh());
+            MappedOriginStore.write(List.of("https://c.com"), file);
+            assertTrue(store.refresh());
+            assertFalse(store.matches("https://a.com"));
+            assertTrue(store.matches("https://c.com"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void mappedOriginStoreRejectsCollidingNonAsciiOrigins() throws IOException {
+        var stored = "https://examphitrad-óà.com";
+        // The UTF-8 bytes of the stored origin read as Latin-1, so the hash and length collide
+        var colliding = "https://examphitrad-\u00c3\u00b3\u00c3\u00a0.com";
+        assertEquals(stored.hashCode(), colliding.hashCode());
+        assertEquals(stored.getBytes(StandardCharsets.UTF_8).length, colliding.length());
+        var file = Files.createTempFile("cors", ".origins");
+        try {
+            MappedOriginStore.write(List.of(stored), file);
+            var store = MappedOriginStore.open(file);
+            assertTrue(store.matches(stored));
+            assertFalse(store.matches(colliding));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static void replace(Path file, byte[] bytes) throws IOException {
+        var temp = Files.createTempFile(file.getParent(), "cors", ".tmp");
+        Files.write(temp, bytes);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Test
+    public void mappedOriginStoreRejectsCorruptFiles() throws IOException {
+        var file = Files.createTempFile("cors", ".origins");
+        try {
+            MappedOriginStore.write(List.of("https://a.com", "https://b.com", "https://c.com"), file);
+            var valid = Files.readAllBytes(file);
+            var store = MappedOriginStore.open(file);
+            // Truncated entries
+            replace(file, Arrays.copyOf(valid, valid.length - 4));
+            assertThrows(IOException.class, store::refresh);
+            assertThrows(IOException.class, () -> MappedOriginStore.open(file));
+            assertTrue(store.matches("https://a.com"));
+            // Every slot occupied
+            var full = ByteBuffer.wrap(valid.clone());
+            full.putInt(12, full.getInt(8));
+            replace(file, full.array());
+            assertThrows(IOException.class, () -> MappedOriginStore.open(file));
+            // Entry offset pointing outside the file
+            var outside = ByteBuffer.wrap(valid.clone());
+            for (var slot = 0; slot < outside.getInt(8); ++slot) {
+                if (outside.getInt(16 + slot * 4) != 0) {
+                    outside.putInt(16 + slot * 4, valid.length);
+                    break;
+                }
+            }
+            replace(file, outside.array());
+            assertThrows(IOException.class, () -> MappedOriginStore.open(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void corsTaskConsultsOriginMatcher() {
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com").matcher("https://b.com"::equals);
+        var task = new CorsTask(builder.build());
+        assertTrue(task.checkOrigin("https://a.com"));
+        assertTrue(task.checkOrigin("https://b.com"));
+        assertFalse(task.checkOrigin("https://c.com"));
+        assertEquals("https://b.com", task.renderOrigin("https://b.com"));
+        // A matcher alone restricts origins as well
+        builder.allowedOrigins().matcher("https://b.com"::equals);
+        task = new CorsTask(builder.build());
+        assertTrue(task.checkOrigin("https://b.com"));
+        assertFalse(task.checkOrigin("https://a.com"));
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.amayaframework.cors;
+
+import com.github.romanqed.jconv.Task;
+import io.github.amayaframework.context.HttpContext;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The next task in the chain that does nothing and does not allocate.
+ */
+final class Next implements Task<HttpContext> {
+    static final Next INSTANCE = new Next();
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private Next() {
+    }
+
+    @Override
+    public void run(HttpContext context) {
+    }
+
+    @Override
+    public CompletableFuture<Void> runAsync(HttpContext context) {
+        return DONE;
+    }
+}
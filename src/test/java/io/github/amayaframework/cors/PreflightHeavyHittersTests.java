@@ -0,0 +1,118 @@
+package io.github.amayaframework.cors;
+
+import io.github.amayaframework.http.HttpMethod;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public final class PreflightHeavyHittersTests {
+    private static final HeaderSink<Object> SINK = new HeaderSink<>() {
+        @Override
+        public void set(Object target, String name, String value) {
+        }
+
+        @Override
+        public void add(Object target, String name, String value) {
+        }
+    };
+
+    private static void record(PreflightHeavyHitters hitters, String origin, int count) {
+        for (var i = 0; i < count; ++i) {
+            hitters.record(origin, "GET", null);
+        }
+    }
+
+    @Test
+    public void heavyHittersBoundErrors() {
+        var hitters = new PreflightHeavyHitters(2, 1);
+        record(hitters, "https://a.com", 5);
+        record(hitters, "https://b.com", 3);
+        // Evicts the least counted tuple and inherits its count as the error
+        record(hitters, "https://c.com", 1);
+        var top = hitters.top(10);
+        assertEquals(2, top.size());
+        assertEquals("https://a.com", top.get(0).getOrigin());
+        assertEquals(5, top.get(0).getCount());
+        assertEquals(0, top.get(0).getError());
+        assertEquals("https://c.com", top.get(1).getOrigin());
+        assertEquals(4, top.get(1).getCount());
+        assertEquals(3, top.get(1).getError());
+        assertEquals(1, hitters.top(1).size());
+        hitters.reset();
+        assertTrue(hitters.top(10).isEmpty());
+    }
+
+    private static void recordOn(int stripe, Runnable action) throws InterruptedException {
+        while (true) {
+            var thread = new Thread(action);
+            if ((thread.getId() & 1) == stripe) {
+                thread.start();
+                thread.join();
+                return;
+            }
+        }
+    }
+
+    @Test
+    public void heavyHittersKeepBoundAcrossStripes() throws InterruptedException {
+        var hitters = new PreflightHeavyHitters(2, 2);
+        recordOn(0, () -> {
+            record(hitters, "https://a.com", 5);
+            record(hitters, "https://b.com", 3);
+            record(hitters, "https://c.com", 1);
+        });
+        recordOn(1, () -> {
+            record(hitters, "https://b.com", 4);
+            record(hitters, "https://d.com", 2);
+        });
+        var expected = Map.of("https://a.com", 5L, "https://b.com", 7L, "https://c.com", 1L, "https://d.com", 2L);
+        var top = hitters.top(10);
+        assertEquals(4, top.size());
+        for (var hitter : top) {
+            var count = expected.get(hitter.getOrigin());
+            assertTrue(hitter.getCount() >= count, hitter.getOrigin());
+            assertTrue(hitter.getCount() - hitter.getError() <= count, hitter.getOrigin());
+        }
+        // The tuple evicted from the first stripe still ranks first
+        assertEquals("https://b.com", top.get(0).getOrigin());
+        assertEquals(8, top.get(0).getCount());
+        assertEquals(4, top.get(0).getError());
+    }
+
+    @Test
+    public void corsEngineFeedsHeavyHitters() throws InterruptedException {
+        var hitters = new PreflightHeavyHitters(16, 4);
+        var builder = new CorsConfigBuilder();
+        builder.allowedOrigins().allow("https://a.com");
+        var engine = new CorsEngine(
+                builder.build(), HttpMethod::of, HttpMethod.all().values(), Cors.metrics(hitters), null
+        );
+        var threads = new Thread[4];
+        for (var i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread(() -> {
+                for (var j = 0; j < 1000; ++j) {
+                    engine.preflight("https://a.com", "PUT", "X-Token", SINK, null);
+                    if (j % 10 == 0) {
+                        engine.preflight("https://b.com", "GET", null, SINK, null);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        var top = hitters.top(2);
+        assertEquals(List.of("https://a.com", "https://b.com"),
+                top.stream().map(HeavyHitter::getOrigin).collect(Collectors.toList()));
+        assertEquals(4000, top.get(0).getCount());
+        assertEquals("PUT", top.get(0).getMethod());
+        assertEquals("X-Token", top.get(0).getHeaders());
+        assertEquals(400, top.get(1).getCount());
+        assertNull(top.get(1).getHeaders());
+    }
+}